@@ -229,6 +229,7 @@ class BookingDetailScreen extends StatelessWidget {
       final result = await BookingService.cancelBooking(
         booking['id'],
         username,
+        tripDate: booking['trip']?['tripDate'],
       );
       if (result['success'] == true) {
         AppWidgets.showSuccessSnackBar(context, 'ยกเลิกการจองสำเร็จ');
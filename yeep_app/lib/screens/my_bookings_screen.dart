@@ -90,6 +90,7 @@ class _MyBookingsScreenState extends State<MyBookingsScreen> {
       final result = await BookingService.cancelBooking(
         booking['id'],
         widget.username,
+        tripDate: booking['trip']?['tripDate'],
       );
       if (result['success'] == true) {
         AppWidgets.showSuccessSnackBar(context, 'ยกเลิกการจองสำเร็จ');
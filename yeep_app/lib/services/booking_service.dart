@@ -88,13 +88,15 @@ class BookingService {
     return json.decode(utf8.decode(response.bodyBytes));
   }
 
-  // ยกเลิกการจอง
+  // ยกเลิกการจอง (ส่ง tripDate ให้ backend อ่านเฉพาะข้อมูลของวันนั้น)
   static Future<Map<String, dynamic>> cancelBooking(
     int bookingId,
-    String username,
-  ) async {
+    String username, {
+    String? tripDate,
+  }) async {
+    final dateParam = tripDate != null ? '&tripDate=$tripDate' : '';
     final response = await http.delete(
-      Uri.parse('$baseUrl/bookings/$bookingId?username=$username'),
+      Uri.parse('$baseUrl/bookings/$bookingId?username=$username$dateParam'),
     );
     return json.decode(utf8.decode(response.bodyBytes));
   }
@@ -0,0 +1,127 @@
+-- ==================== PARTITION bus_trips / bookings BY trip_date ====================
+-- สคริปต์ย้ายข้อมูลครั้งเดียว (PostgreSQL 12+) แปลง bus_trips และ bookings เป็นตารางแบ่ง partition รายวันตาม trip_date
+-- ระบบไม่แปลงตารางเองตอนเริ่มทำงาน ถ้ายังไม่ได้รันสคริปต์นี้ PartitionMaintenance จะไม่สร้าง/ลบ partition
+-- และ RetentionService จะไม่ย้ายข้อมูลเก่า
+--
+-- วิธีใช้ (หยุด backend ก่อน ตารางถูกล็อกแบบ ACCESS EXCLUSIVE ตลอดการคัดลอก):
+--   psql -v ON_ERROR_STOP=1 -d yeep_db -f db/partition_by_trip_date.sql
+--
+-- - ทำใน transaction เดียว ถ้าขั้นตอนใดล้มเหลวทุกอย่างถูก rollback ตารางเดิมยังอยู่ครบ
+-- - หยุดทันทีถ้ามีแถวที่ trip_date ว่าง (ใส่ partition ไม่ได้) ให้แก้ข้อมูลก่อนแล้วรันใหม่
+-- - foreign key ที่สร้างใหม่:
+--     bus_trips.route_id            → bus_routes (id)
+--     bookings.user_id              → users (id)
+--     bookings (trip_id, trip_date) → bus_trips (id, trip_date)
+--   primary key ใหม่คือ (id, trip_date) ตารางที่ไม่มีคอลัมน์ trip_date (เช่น waitlist_entries.trip_id)
+--   จึงอ้างถึง bus_trips ด้วย foreign key ไม่ได้ สคริปต์แสดงชื่อ constraint ที่ต้องลบไว้ใน NOTICE
+-- - สคริปต์รันซ้ำได้: ตารางที่แบ่ง partition แล้วจะถูกข้าม
+
+BEGIN;
+
+-- ==================== PRECHECK ====================
+
+-- การจองเดิมที่ยังไม่มี trip_date เติมจากเที่ยวรถ (เหมือน schema.sql)
+UPDATE bookings b SET trip_date = t.trip_date
+  FROM bus_trips t
+ WHERE t.id = b.trip_id AND b.trip_date IS NULL AND t.trip_date IS NOT NULL;
+
+DO $$
+DECLARE
+    missing bigint;
+BEGIN
+    SELECT COUNT(*) INTO missing FROM bookings WHERE trip_date IS NULL;
+    IF missing > 0 THEN
+        RAISE EXCEPTION 'bookings: % row(s) have no trip_date', missing;
+    END IF;
+    SELECT COUNT(*) INTO missing FROM bus_trips WHERE trip_date IS NULL;
+    IF missing > 0 THEN
+        RAISE EXCEPTION 'bus_trips: % row(s) have no trip_date', missing;
+    END IF;
+END $$;
+
+-- ==================== CONVERT ====================
+
+CREATE OR REPLACE FUNCTION pg_temp.partition_by_trip_date(tbl text) RETURNS void AS $$
+DECLARE
+    old text := tbl || '_unpartitioned';
+    d date;
+    con record;
+    copied bigint;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = to_regclass(tbl)) <> 'r' THEN
+        RAISE NOTICE '% is already partitioned, skipped', tbl;
+        RETURN;
+    END IF;
+
+    -- foreign key จากตารางอื่นที่อ้างถึง id อย่างเดียว ใช้กับ primary key (id, trip_date) ไม่ได้
+    FOR con IN
+        SELECT conrelid::regclass AS owner, conname FROM pg_constraint
+         WHERE contype = 'f' AND confrelid = to_regclass(tbl) AND conrelid <> confrelid
+    LOOP
+        RAISE NOTICE 'Dropping foreign key % on % (references %.id only)', con.conname, con.owner, tbl;
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', con.owner, con.conname);
+    END LOOP;
+
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', tbl, old);
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS) '
+                   'PARTITION BY RANGE (trip_date)', tbl, old);
+    FOR d IN EXECUTE format('SELECT DISTINCT trip_date FROM %I', old) LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       tbl || '_p' || to_char(d, 'YYYYMMDD'), tbl, d, d + 1);
+    END LOOP;
+    EXECUTE format('INSERT INTO %I SELECT * FROM %I', tbl, old);
+    GET DIAGNOSTICS copied = ROW_COUNT;
+
+    -- ลบตารางเดิม (พร้อม index และ foreign key ขาออก) ก่อนสร้างใหม่ด้วยชื่อเดิมบนตาราง partitioned
+    EXECUTE format('DROP TABLE %I', old);
+    EXECUTE format('ALTER TABLE %I ALTER COLUMN trip_date SET NOT NULL', tbl);
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, trip_date)', tbl);
+    RAISE NOTICE 'Partitioned % (% rows)', tbl, copied;
+END $$ LANGUAGE plpgsql;
+
+-- bookings ก่อน bus_trips: bookings ต้องอ้างถึง bus_trips ด้วย (trip_id, trip_date) หลังแปลงแล้ว
+SELECT pg_temp.partition_by_trip_date('bookings');
+SELECT pg_temp.partition_by_trip_date('bus_trips');
+
+-- ==================== CONSTRAINTS AND INDEXES ====================
+
+ALTER TABLE bus_trips DROP CONSTRAINT IF EXISTS uk_bus_trips_route_date_number;
+ALTER TABLE bus_trips ADD CONSTRAINT uk_bus_trips_route_date_number UNIQUE (route_id, trip_date, trip_number);
+
+ALTER TABLE bus_trips DROP CONSTRAINT IF EXISTS fk_bus_trips_route;
+ALTER TABLE bus_trips ADD CONSTRAINT fk_bus_trips_route FOREIGN KEY (route_id) REFERENCES bus_routes (id);
+
+ALTER TABLE bookings DROP CONSTRAINT IF EXISTS fk_bookings_user;
+ALTER TABLE bookings ADD CONSTRAINT fk_bookings_user FOREIGN KEY (user_id) REFERENCES users (id);
+
+-- การจองต้องมีเที่ยวรถของวันเดียวกัน (PartitionMaintenance ลบ partition ของ bookings ก่อน bus_trips)
+ALTER TABLE bookings DROP CONSTRAINT IF EXISTS fk_bookings_trip;
+ALTER TABLE bookings ADD CONSTRAINT fk_bookings_trip
+    FOREIGN KEY (trip_id, trip_date) REFERENCES bus_trips (id, trip_date);
+
+-- ตรงกับ schema.sql (สร้างซ้ำบนตาราง partitioned ทุก partition ได้ index ของตัวเอง)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_bookings_trip_seat_confirmed
+    ON bookings (trip_id, trip_date, seat_number) WHERE status = 'confirmed';
+CREATE UNIQUE INDEX IF NOT EXISTS uk_bookings_code_trip_date ON bookings (booking_code, trip_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_booked_at ON bookings (user_id, booked_at, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_status ON bookings (user_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_seat ON bookings (user_id, seat_number, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_route ON bookings (user_id, route_id, id);
+
+-- PostgreSQL รายงานการจองที่นั่งซ้ำด้วยชื่อ index ของ partition
+-- ตั้งชื่อให้ขึ้นต้นด้วย uk_bookings_trip_seat_confirmed ที่ BookingService ใช้แยก error ที่นั่งซ้ำ
+DO $$
+DECLARE
+    part record;
+BEGIN
+    FOR part IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = to_regclass('bookings')
+    LOOP
+        EXECUTE format('ALTER INDEX IF EXISTS %I RENAME TO %I',
+                       part.relname || '_trip_id_trip_date_seat_number_idx',
+                       'uk_bookings_trip_seat_confirmed' || substring(part.relname FROM '_p[0-9]{8}$'));
+    END LOOP;
+END $$;
+
+COMMIT;
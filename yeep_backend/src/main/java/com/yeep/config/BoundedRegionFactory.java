@@ -0,0 +1,206 @@
+package com.yeep.config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * BoundedRegionFactory - second-level cache ของ Hibernate เก็บในหน่วยความจำของ process
+ * (ตั้งเป็น hibernate.cache.region.factory_class)
+ *
+ * - แต่ละ region จำกัดจำนวนรายการ (ตัดรายการที่ใช้ล่าสุดนานที่สุดออกเมื่อเต็ม) และอายุของรายการ
+ *   ตั้งค่าผ่าน spring.jpa.properties.app.cache.regions.&lt;region&gt;.max-entries / .ttl-seconds
+ *   region ที่ไม่ได้ตั้งค่าใช้ค่าของ app.cache.regions.default (0 = ไม่จำกัด)
+ * - region ของ update timestamps ไม่จำกัดจำนวนและไม่หมดอายุ (ถ้าเวลาแก้ไขตารางหายไป
+ *   ผลของ query ที่ cache ไว้ก่อนการแก้ไขจะถูกนำกลับมาใช้)
+ * - สถิติ hit/miss ต่อ region อยู่ใน Hibernate Statistics คลาสนี้เก็บขนาด การตัดออก และการหมดอายุ
+ */
+public class BoundedRegionFactory extends RegionFactoryTemplate {
+
+    public static final String CONFIG_PREFIX = "app.cache.regions.";
+    public static final String DEFAULT_REGION = "default";
+
+    private static final String MAX_ENTRIES = ".max-entries";
+    private static final String TTL_SECONDS = ".ttl-seconds";
+
+    private Map<String, Object> configValues = Map.of();
+    private final Map<String, BoundedStorage> storages = new ConcurrentHashMap<>();
+
+    // ==================== LIFECYCLE ====================
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        this.configValues = configValues;
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(BoundedStorage::release);
+        storages.clear();
+    }
+
+    // ==================== STORAGE ====================
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        return createStorage(regionConfig.getRegionName(), false);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, false);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        return createStorage(regionName, true);
+    }
+
+    /**
+     * ขนาดและการตั้งค่าของทุก region เรียงตามชื่อ
+     */
+    public Map<String, Map<String, Object>> getRegionStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        storages.forEach((name, storage) -> stats.put(name, storage.getStats()));
+        return stats;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private BoundedStorage createStorage(String regionName, boolean timestamps) {
+        int maxEntries = timestamps ? 0 : intSetting(regionName, MAX_ENTRIES);
+        long ttlMillis = timestamps ? 0 : intSetting(regionName, TTL_SECONDS) * 1000L;
+        BoundedStorage storage = new BoundedStorage(maxEntries, ttlMillis);
+        storages.put(regionName, storage);
+        return storage;
+    }
+
+    private int intSetting(String regionName, String suffix) {
+        Object value = configValues.get(CONFIG_PREFIX + regionName + suffix);
+        if (value == null) {
+            value = configValues.get(CONFIG_PREFIX + DEFAULT_REGION + suffix);
+        }
+        return value == null ? 0 : Integer.parseInt(value.toString().trim());
+    }
+
+    /**
+     * รายการของ region หนึ่ง: LinkedHashMap แบบ access order (LRU) พร้อมเวลาหมดอายุต่อรายการ
+     */
+    private static class BoundedStorage implements DomainDataStorageAccess {
+
+        private final int maxEntries;
+        private final long ttlMillis;
+        private final Map<Object, Entry> entries;
+
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong expirations = new AtomicLong();
+
+        BoundedStorage(int maxEntries, long ttlMillis) {
+            this.maxEntries = maxEntries;
+            this.ttlMillis = ttlMillis;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                    if (BoundedStorage.this.maxEntries > 0 && size() > BoundedStorage.this.maxEntries) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.isExpired(System.currentTimeMillis())) {
+                    entries.remove(key);
+                    expirations.incrementAndGet();
+                    return null;
+                }
+                return entry.value;
+            }
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+            synchronized (entries) {
+                entries.put(key, new Entry(value, expiresAt));
+            }
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return getFromCache(key, null) != null;
+        }
+
+        @Override
+        public void evictData() {
+            synchronized (entries) {
+                entries.clear();
+            }
+        }
+
+        @Override
+        public void evictData(Object key) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+        }
+
+        @Override
+        public void release() {
+            evictData();
+        }
+
+        Map<String, Object> getStats() {
+            long now = System.currentTimeMillis();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            synchronized (entries) {
+                // ลบรายการที่หมดอายุแล้วก่อนนับขนาด
+                Iterator<Entry> it = entries.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().isExpired(now)) {
+                        it.remove();
+                        expirations.incrementAndGet();
+                    }
+                }
+                stats.put("size", entries.size());
+            }
+            stats.put("maxEntries", maxEntries);
+            stats.put("ttlSeconds", ttlMillis / 1000);
+            stats.put("evictions", evictions.get());
+            stats.put("expirations", expirations.get());
+            return stats;
+        }
+    }
+
+    private record Entry(Object value, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.yeep.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * เปิดใช้งาน @Scheduled สำหรับงานเบื้องหลัง (เช่นซ่อมจำนวนที่นั่งของเที่ยวรถ)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
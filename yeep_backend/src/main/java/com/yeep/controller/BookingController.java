@@ -1,22 +1,35 @@
 package com.yeep.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.yeep.dto.BookingResponse;
 import com.yeep.dto.SeatResponse;
@@ -24,16 +37,35 @@ import com.yeep.dto.TripResponse;
 import com.yeep.entity.Booking;
 import com.yeep.entity.BusRoute;
 import com.yeep.entity.BusTrip;
+import com.yeep.entity.WaitlistEntry;
+import com.yeep.repository.BookingRow;
+import com.yeep.service.BookingSequencer;
 import com.yeep.service.BookingService;
+import com.yeep.service.BookingService.BookingPage;
+import com.yeep.service.BookingTicketService;
+import com.yeep.service.BookingTicketService.BookingTicket;
 import com.yeep.service.BusRouteService;
 import com.yeep.service.BusTripService;
+import com.yeep.service.IdempotencyStore;
+import com.yeep.service.JourneyPlanner;
+import com.yeep.service.RetentionService;
+import com.yeep.service.SeatHoldService.SeatHold;
+import com.yeep.service.SeatStreamService;
+import com.yeep.service.SecondLevelCacheService;
+import com.yeep.service.TripAvailabilityCache;
+import com.yeep.service.TripMaterializer;
+import com.yeep.service.VersionRegistry;
+import com.yeep.service.WaitlistService;
 import com.yeep.util.EntityMapper;
-import com.yeep.util.RouteScheduleConfig;
+import com.yeep.util.SeatLayout;
 
 @RestController
 @RequestMapping("/api/booking")
 public class BookingController {
     
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    
     @Autowired
     private BusRouteService busRouteService;
     
@@ -42,29 +74,99 @@ public class BookingController {
     
     @Autowired
     private BookingService bookingService;
+    
+    @Autowired
+    private BookingSequencer bookingSequencer;
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private WaitlistService waitlistService;
+    
+    @Autowired
+    private BookingTicketService bookingTicketService;
+    
+    @Autowired
+    private TripMaterializer tripMaterializer;
+    
+    @Autowired
+    private TripAvailabilityCache availabilityCache;
+    
+    @Autowired
+    private SecondLevelCacheService secondLevelCacheService;
+    
+    @Autowired
+    private VersionRegistry versionRegistry;
+    
+    @Autowired
+    private SeatStreamService seatStreamService;
+    
+    @Autowired
+    private JourneyPlanner journeyPlanner;
+    
+    @Autowired
+    private RetentionService retentionService;
+    
+    @Value("${app.booking.sequencer.timeout-seconds:10}")
+    private long sequencerTimeoutSeconds;
+    
+    @Value("${app.booking.async.stream-timeout-seconds:30}")
+    private long ticketStreamTimeoutSeconds;
 
     // ==================== LOCATION & ROUTE ENDPOINTS ====================
     
+    // GET ที่อ่านข้อมูลสายรถ/เที่ยวรถใช้ ETag จาก VersionRegistry:
+    // ถ้า If-None-Match ตรงกับเวอร์ชันปัจจุบันจะตอบ 304 ก่อนเรียก service/repository
+    
     @GetMapping("/locations")
-    public ResponseEntity<Map<String, Object>> getLocations() {
+    public ResponseEntity<Map<String, Object>> getLocations(WebRequest request) {
+        if (request.checkNotModified(versionRegistry.catalogEtag())) {
+            return null;
+        }
         return successResponse("locations", busRouteService.getAllLocations());
     }
     
+    /**
+     * แนะนำชื่อสถานที่ระหว่างพิมพ์ เช่น q=s16 → ["หอพัก S16-S18"]
+     */
+    @GetMapping("/locations/autocomplete")
+    public ResponseEntity<Map<String, Object>> autocompleteLocations(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest request) {
+        if (request.checkNotModified(versionRegistry.catalogEtag())) {
+            return null;
+        }
+        int boundedLimit = Math.max(1, Math.min(limit, 50));
+        return successResponse("locations", busRouteService.autocompleteLocations(q, boundedLimit));
+    }
+    
     @GetMapping("/routes")
-    public ResponseEntity<Map<String, Object>> getRoutes() {
+    public ResponseEntity<Map<String, Object>> getRoutes(WebRequest request) {
+        if (request.checkNotModified(versionRegistry.catalogEtag())) {
+            return null;
+        }
         return successResponse("routes", busRouteService.getAllRoutes());
     }
     
     @GetMapping("/search-route")
     public ResponseEntity<Map<String, Object>> searchRoutes(
             @RequestParam(required = false) String origin,
-            @RequestParam(required = false) String destination) {
+            @RequestParam(required = false) String destination,
+            WebRequest request) {
+        if (request.checkNotModified(versionRegistry.catalogEtag())) {
+            return null;
+        }
         List<BusRoute> routes = busRouteService.searchRoutes(origin, destination);
         return successResponse("routes", routes);
     }
     
     @GetMapping("/routes/{id}")
-    public ResponseEntity<Map<String, Object>> getRouteById(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> getRouteById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(versionRegistry.catalogEtag())) {
+            return null;
+        }
         Optional<BusRoute> route = busRouteService.getRouteById(id);
         if (route.isEmpty()) {
             return errorResponse("ไม่พบสายรถ");
@@ -77,40 +179,41 @@ public class BookingController {
     @GetMapping("/trips")
     public ResponseEntity<Map<String, Object>> getTrips(
             @RequestParam Long routeId,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest request) {
+        if (request.checkNotModified(versionRegistry.routeDateEtag(routeId, date))) {
+            return null;
+        }
+        
         // Ensure route exists
-        Optional<BusRoute> routeOpt = busRouteService.getRouteById(routeId);
-        if (routeOpt.isEmpty()) {
+        if (busRouteService.getRouteById(routeId).isEmpty()) {
             return errorResponse("ไม่พบสายรถ");
         }
-        BusRoute route = routeOpt.get();
 
+        // อ่านอย่างเดียว: เที่ยวรถมีเฉพาะวันที่ TripMaterializer สร้างล่วงหน้าไว้ (วันนี้ถึง app.trips.days-ahead)
+        // วันที่นอกช่วงได้รายการว่าง ไม่สร้างเที่ยวรถหรือ partition จากคำขอ GET
         var trips = busTripService.getTripsWithAvailability(routeId, date);
 
-        // If no trips exist for the requested date and this route normally has trips,
-        // generate trips for that date on-demand using the schedule config.
-        if (trips.isEmpty() && Boolean.TRUE.equals(route.getHasTrips())) {
-            var times = RouteScheduleConfig.getTripTimes(route.getColor());
-            if (!times.isEmpty()) {
-                busTripService.createTripsForRoute(route, date, times);
-                trips = busTripService.getTripsWithAvailability(routeId, date);
-            }
-        }
-
         List<TripResponse> tripList = EntityMapper.toTripResponseList(trips);
         return successResponse("trips", tripList);
     }
     
     @GetMapping("/trips/{tripId}/seats")
-    public ResponseEntity<Map<String, Object>> getTripSeats(@PathVariable Long tripId) {
+    public ResponseEntity<Map<String, Object>> getTripSeats(@PathVariable Long tripId, WebRequest request) {
+        if (request.checkNotModified(versionRegistry.tripEtag(tripId))) {
+            return null;
+        }
+        
         Optional<BusTrip> tripOpt = busTripService.getTripById(tripId);
         if (tripOpt.isEmpty()) {
             return errorResponse("ไม่พบเที่ยวรถ");
         }
         
         BusTrip trip = tripOpt.get();
-        List<String> bookedSeats = bookingService.getBookedSeats(tripId);
-        List<SeatResponse> seats = EntityMapper.generateSeatResponses(bookedSeats);
+        // ที่นั่งที่ถูกกันไว้ชั่วคราวแสดงเป็นที่นั่งไม่ว่างด้วย
+        int occupiedMask = bookingService.getUnavailableMask(tripId);
+        List<String> bookedSeats = SeatLayout.toSeatNumbers(occupiedMask);
+        List<SeatResponse> seats = EntityMapper.generateSeatResponses(occupiedMask);
         TripResponse tripInfo = EntityMapper.toTripResponse(trip);
         
         Map<String, Object> response = new HashMap<>();
@@ -120,27 +223,225 @@ public class BookingController {
         response.put("bookedSeats", bookedSeats);
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * ผังที่นั่งแบบย่อ: เวอร์ชันของผังที่นั่ง + bitmask ของที่นั่งไม่ว่างเป็น hex
+     * เช่น {"tripId":12,"layout":1,"occupied":"00003"} (ที่นั่ง 1A และ 1B ไม่ว่าง)
+     */
+    @GetMapping("/trips/{tripId}/seatmap")
+    public ResponseEntity<?> getTripSeatMap(@PathVariable Long tripId, WebRequest request) {
+        if (request.checkNotModified(versionRegistry.tripEtag(tripId))) {
+            return null;
+        }
+        if (!bookingService.tripExists(tripId)) {
+            return errorResponse("ไม่พบเที่ยวรถ");
+        }
+        int occupiedMask = bookingService.getUnavailableMask(tripId);
+        return ResponseEntity.ok(EntityMapper.toSeatMapResponse(tripId, occupiedMask));
+    }
+
+    /**
+     * stream การเปลี่ยนแปลงของที่นั่งของเที่ยวรถ (Server-Sent Events)
+     * event "snapshot" = ผังที่นั่งทั้งหมด, "seats" = bitmask ใหม่พร้อมที่นั่งที่เปลี่ยน (added/removed)
+     * เชื่อมต่อใหม่ด้วย Last-Event-ID ที่ยังเป็นปัจจุบันจะไม่ได้ snapshot ซ้ำ
+     */
+    @GetMapping(value = "/trips/{tripId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTripSeats(
+            @PathVariable Long tripId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) throws IOException {
+        if (!bookingService.tripExists(tripId)) {
+            return errorStream("ไม่พบเที่ยวรถ");
+        }
+        return seatStreamService.subscribeTrip(tripId, lastEventId);
+    }
+    
+    /**
+     * stream จำนวนที่นั่งว่างของเที่ยวรถทั้งหมดของสายรถในวันที่กำหนด (Server-Sent Events)
+     * event "snapshot" = รายการเที่ยวรถทั้งหมด, "availability" = จำนวนที่นั่งว่างของเที่ยวรถที่เปลี่ยน
+     */
+    @GetMapping(value = "/trips/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTrips(
+            @RequestParam Long routeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) throws IOException {
+        if (busRouteService.getRouteById(routeId).isEmpty()) {
+            return errorStream("ไม่พบสายรถ");
+        }
+        return seatStreamService.subscribeRouteDate(routeId, date, lastEventId);
+    }
+
+    // ==================== JOURNEY ENDPOINTS ====================
+    
+    /**
+     * วางแผนการเดินทางหลายต่อ เช่น from=หอพัก S4&to=อาคารขนส่ง&date=2025-01-15&after=07:00
+     * คืนเส้นทางที่ถึงเร็วที่สุดของแต่ละจำนวนต่อรถ พร้อมที่นั่งว่างของแต่ละเที่ยว
+     */
+    @GetMapping("/journeys")
+    public ResponseEntity<Map<String, Object>> planJourney(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime after,
+            @RequestParam(defaultValue = "1") int seats,
+            @RequestParam(defaultValue = "2") int maxTransfers) {
+        try {
+            // ไม่ระบุเวลา: วันนี้ใช้เวลาปัจจุบัน วันอื่นใช้ตั้งแต่เริ่มวัน
+            LocalTime departAfter = after != null ? after
+                    : date.equals(LocalDate.now()) ? LocalTime.now() : LocalTime.MIN;
+            int boundedSeats = Math.max(1, Math.min(seats, SeatLayout.TOTAL_SEATS));
+            int boundedTransfers = Math.max(0, Math.min(maxTransfers, 3));
+            return successResponse("journeys",
+                    journeyPlanner.plan(from, to, date, departAfter, boundedSeats, boundedTransfers));
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
 
     // ==================== BOOKING ENDPOINTS ====================
     
     @PostMapping("/book")
-    public ResponseEntity<Map<String, Object>> bookSeats(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<Map<String, Object>> bookSeats(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        // คำขอซ้ำที่มี Idempotency-Key เดิมจะได้ผลลัพธ์เดิมโดยไม่จองซ้ำ
+        // ถ้าคำขอแรกยังอยู่ในคิว คำขอซ้ำจะรอผลของคำขอแรกแทนการจองใหม่
+        return idempotencyStore.execute(idempotencyKey, "POST /book", String.valueOf(request.get("username")),
+                request, () -> doBookSeats(request), sequencerWaitMillis(), this::sequencerTimeoutResponse);
+    }
+    
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> doBookSeats(Map<String, Object> request) {
         try {
             Long tripId = Long.valueOf(request.get("tripId").toString());
             String username = request.get("username").toString();
             @SuppressWarnings("unchecked")
             List<String> seatNumbers = (List<String>) request.get("seatNumbers");
             
-            List<Booking> bookings = seatNumbers.size() == 1
-                    ? List.of(bookingService.createBooking(tripId, username, seatNumbers.get(0)))
-                    : bookingService.createMultipleBookings(tripId, username, seatNumbers);
+            // ส่งเข้าคิวของเที่ยวรถ (single writer ต่อเที่ยวรถ) ผลลัพธ์พร้อมหลัง commit
+            return bookingSequencer.submitBooking(tripId, username, seatNumbers).handle((bookings, error) -> {
+                if (error != null) {
+                    return errorResponse(causeOf(error).getMessage());
+                }
+                List<BookingResponse> bookingList = EntityMapper.toBookingResponseList(bookings);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "จองที่นั่งสำเร็จ");
+                response.put("bookings", bookingList);
+                return ResponseEntity.ok(response);
+            });
+            
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResponse(e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/book/async")
+    public ResponseEntity<Map<String, Object>> bookSeatsAsync(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "POST /book/async", String.valueOf(request.get("username")),
+                request, () -> CompletableFuture.completedFuture(doBookSeatsAsync(request)), sequencerWaitMillis(),
+                this::sequencerTimeoutResponse);
+    }
+    
+    private ResponseEntity<Map<String, Object>> doBookSeatsAsync(Map<String, Object> request) {
+        BookingTicket ticket;
+        try {
+            Long tripId = Long.valueOf(request.get("tripId").toString());
+            String username = request.get("username").toString();
+            @SuppressWarnings("unchecked")
+            List<String> seatNumbers = (List<String>) request.get("seatNumbers");
+            
+            // รับคำขอแล้วคืน ticket ทันที ผลการจองดูได้จาก /book/tickets/{ticketId}
+            ticket = bookingTicketService.submit(tripId, username, seatNumbers);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        
+        Map<String, Object> response = ticketResponse(ticket);
+        response.put("message", "รับคำขอจองแล้ว กำลังดำเนินการ");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @GetMapping("/book/tickets/{ticketId}")
+    public ResponseEntity<Map<String, Object>> getBookingTicket(
+            @PathVariable String ticketId,
+            @RequestParam String username) {
+        try {
+            return ResponseEntity.ok(ticketResponse(bookingTicketService.getTicket(ticketId, username)));
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    @GetMapping(value = "/book/tickets/{ticketId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBookingTicket(
+            @PathVariable String ticketId,
+            @RequestParam String username) throws IOException {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(ticketStreamTimeoutSeconds));
+        BookingTicket ticket;
+        try {
+            ticket = bookingTicketService.getTicket(ticketId, username);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            emitter.send(SseEmitter.event().name("error").data(response));
+            emitter.complete();
+            return emitter;
+        }
+        
+        // ส่งสถานะปัจจุบันทันที แล้วส่งผลอีกครั้งเมื่อ ticket เสร็จ
+        emitter.send(SseEmitter.event().name("status").data(ticketResponse(ticket)));
+        ticket.whenDone().whenComplete((done, error) -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(ticketResponse(done)));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+    
+    @PostMapping("/hold")
+    public ResponseEntity<Map<String, Object>> holdSeats(@RequestBody Map<String, Object> request) {
+        try {
+            Long tripId = Long.valueOf(request.get("tripId").toString());
+            String username = request.get("username").toString();
+            @SuppressWarnings("unchecked")
+            List<String> seatNumbers = (List<String>) request.get("seatNumbers");
             
-            List<BookingResponse> bookingList = EntityMapper.toBookingResponseList(bookings);
+            SeatHold hold = bookingService.holdSeats(tripId, username, seatNumbers);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "กันที่นั่งสำเร็จ");
+            response.put("holdId", hold.getHoldId());
+            response.put("tripId", hold.getTripId());
+            response.put("seatNumbers", hold.getSeatNumbers());
+            response.put("expiresAt", hold.getExpiresAt().toString());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    @PostMapping("/hold/{holdId}/confirm")
+    public ResponseEntity<Map<String, Object>> confirmHold(
+            @PathVariable String holdId,
+            @RequestParam String username) {
+        try {
+            List<Booking> bookings = bookingService.confirmHold(holdId, username);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "จองที่นั่งสำเร็จ");
-            response.put("bookings", bookingList);
+            response.put("bookings", EntityMapper.toBookingResponseList(bookings));
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
@@ -148,16 +449,86 @@ public class BookingController {
         }
     }
     
+    @DeleteMapping("/hold/{holdId}")
+    public ResponseEntity<Map<String, Object>> releaseHold(
+            @PathVariable String holdId,
+            @RequestParam String username) {
+        try {
+            SeatHold hold = bookingService.releaseHold(holdId, username);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "ยกเลิกการกันที่นั่งสำเร็จ");
+            response.put("seatNumbers", hold.getSeatNumbers());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
     @DeleteMapping("/bookings/{bookingId}")
     public ResponseEntity<Map<String, Object>> cancelBooking(
             @PathVariable Long bookingId,
+            @RequestParam String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tripDate,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyStore.execute(idempotencyKey, "DELETE /bookings/" + bookingId, username, bookingId,
+                () -> doCancelBooking(bookingId, tripDate, username), sequencerWaitMillis(),
+                this::sequencerTimeoutResponse);
+    }
+    
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> doCancelBooking(Long bookingId, LocalDate tripDate,
+            String username) {
+        try {
+            return bookingSequencer.submitCancel(bookingId, tripDate, username).handle((booking, error) -> {
+                if (error != null) {
+                    return errorResponse(causeOf(error).getMessage());
+                }
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "ยกเลิกการจองสำเร็จ");
+                response.put("bookingCode", booking.getBookingCode());
+                return ResponseEntity.ok(response);
+            });
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResponse(e.getMessage()));
+        }
+    }
+    
+    // ==================== WAITLIST ENDPOINTS ====================
+    
+    @PostMapping("/trips/{tripId}/waitlist")
+    public ResponseEntity<Map<String, Object>> joinWaitlist(
+            @PathVariable Long tripId,
             @RequestParam String username) {
         try {
-            Booking booking = bookingService.cancelBooking(bookingId, username);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "ยกเลิกการจองสำเร็จ");
-            response.put("bookingCode", booking.getBookingCode());
+            WaitlistEntry entry = waitlistService.join(tripId, username);
+            Map<String, Object> response = waitlistResponse(entry);
+            response.put("message", "เข้าคิวรอที่นั่งสำเร็จ");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/waitlist/{entryId}")
+    public ResponseEntity<Map<String, Object>> getWaitlistEntry(
+            @PathVariable Long entryId,
+            @RequestParam String username) {
+        try {
+            return ResponseEntity.ok(waitlistResponse(waitlistService.getEntry(entryId, username)));
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    @DeleteMapping("/waitlist/{entryId}")
+    public ResponseEntity<Map<String, Object>> leaveWaitlist(
+            @PathVariable Long entryId,
+            @RequestParam String username) {
+        try {
+            WaitlistEntry entry = waitlistService.leave(entryId, username);
+            Map<String, Object> response = waitlistResponse(entry);
+            response.put("message", "ออกจากคิวรอสำเร็จ");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return errorResponse(e.getMessage());
@@ -166,36 +537,143 @@ public class BookingController {
     
     @GetMapping("/user/{username}/bookings")
     public ResponseEntity<Map<String, Object>> getUserBookings(@PathVariable String username) {
-        List<Booking> bookings = bookingService.getUserBookings(username);
+        List<BookingRow> bookings = bookingService.getUserBookings(username);
         List<BookingResponse> bookingList = EntityMapper.toBookingResponseListWithTrips(bookings);
         return successResponse("bookings", bookingList);
     }
     
     @GetMapping("/user/{username}/history")
     public ResponseEntity<Map<String, Object>> getUserBookingHistory(@PathVariable String username) {
-        List<Booking> bookings = bookingService.getUserBookingHistory(username);
+        List<BookingRow> bookings = bookingService.getUserBookingHistory(username);
         List<BookingResponse> bookingList = EntityMapper.toBookingResponseListWithTrips(bookings);
         return successResponse("bookings", bookingList);
     }
 
+    /**
+     * ประวัติการจองทีละหน้า ส่ง nextCursor ของหน้าก่อนกลับมาเป็น cursor เพื่ออ่านหน้าถัดไป
+     */
+    @GetMapping("/user/{username}/history/page")
+    public ResponseEntity<Map<String, Object>> getUserBookingHistoryPage(
+            @PathVariable String username,
+            @RequestParam(defaultValue = BookingService.SORT_BY_DATE) String sortBy,
+            @RequestParam(defaultValue = BookingService.ORDER_DESC) String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            BookingPage page = bookingService.getUserBookingHistoryPage(username, sortBy, order, cursor,
+                    Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE)));
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("bookings", EntityMapper.toBookingResponseListWithTrips(page.bookings()));
+            response.put("nextCursor", page.nextCursor());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+
     // ==================== DRIVER ENDPOINTS ====================
     
     @GetMapping("/driver/bookings")
     public ResponseEntity<Map<String, Object>> getBookingsByRoute(
             @RequestParam Long routeId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        List<Booking> bookings = bookingService.getBookingsByRouteAndDate(routeId, date);
+        List<BookingRow> bookings = bookingService.getBookingsByRouteAndDate(routeId, date);
         List<BookingResponse> bookingList = EntityMapper.toBookingResponseListWithTrips(bookings);
         return successResponse("bookings", bookingList);
     }
 
+    // ==================== OPERATOR ENDPOINTS ====================
+    
+    // การยกเลิกทั้งชุด commit ก่อนเริ่มส่งคำตอบ booking code ที่ได้รับจึงถูกยกเลิกจริงทั้งหมด
+    // และการตัดการเชื่อมต่อระหว่างส่งไม่ทำให้การยกเลิกถูก rollback
+    
+    /**
+     * ยกเลิกเที่ยวรถและการจองทั้งหมดของเที่ยวรถ ตอบกลับเป็น booking code ที่ถูกยกเลิกบรรทัดละหนึ่งรายการ
+     * หลังจากนี้เที่ยวรถไม่รับการจอง การกันที่นั่ง และการเข้าคิวรอ
+     */
+    @PostMapping("/operator/trips/{tripId}/cancel")
+    public ResponseEntity<?> cancelTripBookings(@PathVariable Long tripId) {
+        try {
+            return streamBookingCodes(bookingService.cancelAllForTrip(tripId));
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    /**
+     * ยกเลิกทุกเที่ยวของสายรถในวันที่กำหนดและการจองทั้งหมด ตอบกลับเป็น booking code ที่ถูกยกเลิกบรรทัดละหนึ่งรายการ
+     */
+    @PostMapping("/operator/routes/{routeId}/cancel")
+    public ResponseEntity<?> cancelRouteBookings(
+            @PathVariable Long routeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        if (busRouteService.getRouteById(routeId).isEmpty()) {
+            return errorResponse("ไม่พบสายรถ");
+        }
+        return streamBookingCodes(bookingService.cancelAllForRouteAndDate(routeId, date));
+    }
+
+    @GetMapping("/operator/cache/availability")
+    public ResponseEntity<Map<String, Object>> getAvailabilityCacheStats() {
+        return successResponse("stats", availabilityCache.getStats());
+    }
+
+    /**
+     * สถิติของ second-level cache (สายรถและ query cache ของสายรถ) แยกตาม region
+     */
+    @GetMapping("/operator/cache/entities")
+    public ResponseEntity<Map<String, Object>> getEntityCacheStats() {
+        return successResponse("stats", secondLevelCacheService.getStats());
+    }
+
+    /**
+     * ย้ายการจองและเที่ยวรถก่อนวันที่ before ไปเก็บในไฟล์ archive (ไม่ระบุ = ตาม app.retention.days)
+     */
+    @PostMapping("/operator/retention/run")
+    public ResponseEntity<Map<String, Object>> runRetention(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        try {
+            Map<String, Object> result = before != null
+                    ? retentionService.archiveBefore(before)
+                    : retentionService.archiveExpired();
+            return successResponse("result", result);
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    /**
+     * อ่านประวัติการจอง/เที่ยวรถที่ถูกย้ายไปเก็บในไฟล์ archive แล้ว (kind = bookings หรือ trips)
+     * bookings ต้องระบุ username และได้เฉพาะการจองของผู้ใช้นั้น
+     */
+    @GetMapping("/archive/{kind}")
+    public ResponseEntity<Map<String, Object>> getArchive(
+            @PathVariable String kind,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String username) {
+        try {
+            return successResponse("rows", retentionService.readArchive(kind, from, to, username));
+        } catch (Exception e) {
+            return errorResponse(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/operator/streams")
+    public ResponseEntity<Map<String, Object>> getStreamStats() {
+        return successResponse("stats", seatStreamService.getStats());
+    }
+
     // ==================== DATA INITIALIZATION ====================
     
     @PostMapping("/init-data")
     public ResponseEntity<Map<String, Object>> initializeData() {
         try {
             busRouteService.initializeRoutes();
-            createTripsForRoutes(LocalDate.now(), LocalDate.now().plusDays(1));
+            tripMaterializer.materializeAhead();
             return successResponse("message", "สร้างข้อมูลเริ่มต้นสำเร็จ");
         } catch (Exception e) {
             return errorResponse("เกิดข้อผิดพลาด: " + e.getMessage());
@@ -212,7 +690,7 @@ public class BookingController {
             
             // สร้างข้อมูลใหม่
             busRouteService.initializeRoutes();
-            createTripsForRoutes(LocalDate.now(), LocalDate.now().plusDays(1));
+            tripMaterializer.materializeAhead();
             
             return successResponse("message", "รีเซ็ตข้อมูลสำเร็จ");
         } catch (Exception e) {
@@ -222,20 +700,52 @@ public class BookingController {
 
     // ==================== PRIVATE HELPER METHODS ====================
     
-    private void createTripsForRoutes(LocalDate... dates) {
-        List<BusRoute> routes = busRouteService.getAllRoutes();
-        
-        for (BusRoute route : routes) {
-            if (Boolean.TRUE.equals(route.getHasTrips())) {
-                var times = RouteScheduleConfig.getTripTimes(route.getColor());
-                
-                for (LocalDate date : dates) {
-                    if (busTripService.getTripsWithAvailability(route.getId(), date).isEmpty()) {
-                        busTripService.createTripsForRoute(route, date, times);
-                    }
-                }
+    private ResponseEntity<StreamingResponseBody> streamBookingCodes(List<String> bookingCodes) {
+        StreamingResponseBody body = out -> {
+            for (String bookingCode : bookingCodes) {
+                out.write((bookingCode + "\n").getBytes(StandardCharsets.UTF_8));
             }
-        }
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(body);
+    }
+    
+    private Map<String, Object> ticketResponse(BookingTicket ticket) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", !BookingTicketService.STATUS_FAILED.equals(ticket.getStatus()));
+        response.put("ticketId", ticket.getTicketId());
+        response.put("tripId", ticket.getTripId());
+        response.put("status", ticket.getStatus());
+        response.put("message", ticket.getMessage());
+        response.put("bookings", EntityMapper.toBookingResponseList(ticket.getBookings()));
+        return response;
+    }
+    
+    private Map<String, Object> waitlistResponse(WaitlistEntry entry) {
+        Long tripId = entry.getTrip().getId();
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("entryId", entry.getId());
+        response.put("tripId", tripId);
+        response.put("status", entry.getStatus());
+        response.put("position", waitlistService.getPosition(tripId, entry.getId()));
+        response.put("bookingCode", entry.getBookingCode());
+        return response;
+    }
+    
+    private long sequencerWaitMillis() {
+        return TimeUnit.SECONDS.toMillis(sequencerTimeoutSeconds);
+    }
+    
+    // รอผลจาก BookingSequencer เกินเวลา: คำสั่งยังอยู่ในคิวและจะทำต่อ
+    // คำขอซ้ำที่มี Idempotency-Key เดิมจะได้ผลของคำสั่งนั้น
+    private ResponseEntity<Map<String, Object>> sequencerTimeoutResponse() {
+        return errorResponse("ระบบกำลังมีผู้ใช้งานจำนวนมาก กรุณาตรวจสอบการจองอีกครั้ง");
+    }
+    
+    private static Throwable causeOf(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
     
     private ResponseEntity<Map<String, Object>> successResponse(String key, Object data) {
@@ -251,4 +761,15 @@ public class BookingController {
         response.put("message", message);
         return ResponseEntity.badRequest().body(response);
     }
+    
+    // stream ที่เปิดไม่ได้: ส่ง event "error" แล้วปิดทันที
+    private SseEmitter errorStream(String message) throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().name("error").data(response));
+        emitter.complete();
+        return emitter;
+    }
 }
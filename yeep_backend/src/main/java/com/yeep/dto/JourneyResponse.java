@@ -0,0 +1,40 @@
+package com.yeep.dto;
+
+import java.util.List;
+
+/**
+ * DTO for journey planner response
+ * legs = trips in riding order (transfers = legs - 1)
+ */
+public class JourneyResponse {
+    private String departureTime;
+    private String arrivalTime;
+    private Integer durationMinutes;
+    private Integer transfers;
+    private List<TripResponse> legs;
+
+    public JourneyResponse() {}
+
+    public JourneyResponse(String departureTime, String arrivalTime, Integer durationMinutes, List<TripResponse> legs) {
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.durationMinutes = durationMinutes;
+        this.transfers = legs.size() - 1;
+        this.legs = legs;
+    }
+
+    public String getDepartureTime() { return departureTime; }
+    public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
+
+    public String getArrivalTime() { return arrivalTime; }
+    public void setArrivalTime(String arrivalTime) { this.arrivalTime = arrivalTime; }
+
+    public Integer getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+
+    public Integer getTransfers() { return transfers; }
+    public void setTransfers(Integer transfers) { this.transfers = transfers; }
+
+    public List<TripResponse> getLegs() { return legs; }
+    public void setLegs(List<TripResponse> legs) { this.legs = legs; }
+}
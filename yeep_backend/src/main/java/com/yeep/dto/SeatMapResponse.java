@@ -0,0 +1,28 @@
+package com.yeep.dto;
+
+/**
+ * DTO for compact seat map
+ * occupied = bitmask of unavailable seats in hex (bit i = seat i of the seat layout)
+ */
+public class SeatMapResponse {
+    private Long tripId;
+    private int layout;
+    private String occupied;
+
+    public SeatMapResponse() {}
+
+    public SeatMapResponse(Long tripId, int layout, String occupied) {
+        this.tripId = tripId;
+        this.layout = layout;
+        this.occupied = occupied;
+    }
+
+    public Long getTripId() { return tripId; }
+    public void setTripId(Long tripId) { this.tripId = tripId; }
+
+    public int getLayout() { return layout; }
+    public void setLayout(int layout) { this.layout = layout; }
+
+    public String getOccupied() { return occupied; }
+    public void setOccupied(String occupied) { this.occupied = occupied; }
+}
@@ -12,6 +12,7 @@ public class TripResponse {
     private Integer totalSeats;
     private Integer availableSeats;
     private Integer bookedSeats;
+    private Boolean cancelled;
     private String routeName;
     private String routeColor;
     private String origin;
@@ -42,6 +43,9 @@ public class TripResponse {
     public Integer getBookedSeats() { return bookedSeats; }
     public void setBookedSeats(Integer bookedSeats) { this.bookedSeats = bookedSeats; }
 
+    public Boolean getCancelled() { return cancelled; }
+    public void setCancelled(Boolean cancelled) { this.cancelled = cancelled; }
+
     public String getRouteName() { return routeName; }
     public void setRouteName(String routeName) { this.routeName = routeName; }
 
@@ -8,15 +8,19 @@ import java.time.LocalDateTime;
  * ใช้หลักการ Inheritance เพื่อลดการซ้ำซ้อนของ code
  * 
  * ทุก Entity ที่สืบทอดจะมี:
- * - id: Primary Key
+ * - id: Primary Key (จาก sequence yeep_id_seq แบบ pooled ครั้งละ 50 ค่า
+ *   ทำให้ Hibernate รู้ id ก่อน insert และรวม insert เป็น JDBC batch ได้)
  * - createdAt: วันที่สร้าง
  * - updatedAt: วันที่อัพเดทล่าสุด
  */
 @MappedSuperclass
 public abstract class BaseEntity {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "yeep_id_gen")
+    @SequenceGenerator(name = "yeep_id_gen", sequenceName = "yeep_id_seq", allocationSize = ID_ALLOCATION_SIZE)
     protected Long id;
 
     @Column(name = "created_at", updatable = false)
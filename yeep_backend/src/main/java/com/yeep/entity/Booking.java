@@ -1,9 +1,13 @@
 package com.yeep.entity;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -11,19 +15,32 @@ import jakarta.persistence.Table;
 /**
  * Booking Entity - สืบทอดจาก BaseEntity
  * ใช้หลักการ Inheritance เพื่อ reuse fields และ methods จาก parent class
+ *
+ * ตาราง bookings แบ่ง partition ตาม trip_date (ดู PartitionMaintenance) จึงเก็บวันที่ของเที่ยวรถซ้ำไว้ในการจอง
+ * booking code มาจาก booking_code_seq และ Database บังคับไม่ให้ซ้ำด้วย unique index (booking_code, trip_date)
  */
 @Entity
 @Table(name = "bookings")
 public class Booking extends BaseEntity {
 
-    @Column(name = "booking_code", unique = true, nullable = false)
+    @Column(name = "booking_code", nullable = false)
     private String bookingCode; // P0001, P0002...
 
-    @ManyToOne
-    @JoinColumn(name = "trip_id", nullable = false)
+    // ไม่มี foreign key ใน Database: partition ของ bus_trips ต้องถอด/ลบได้โดยไม่ติด bookings
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "trip_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private BusTrip trip;
 
-    @ManyToOne
+    // วันที่ของเที่ยวรถ (partition key) ตั้งพร้อม trip
+    // nullable ใน mapping เพื่อให้ ddl-auto เพิ่มคอลัมน์ในตารางที่มีข้อมูลได้ PartitionMaintenance เติมค่าและตั้ง NOT NULL
+    @Column(name = "trip_date")
+    private LocalDate tripDate;
+
+    // สายรถของเที่ยวรถ ตั้งพร้อม trip (ใช้ index (user_id, route_id, id) ของประวัติการจองที่เรียงตามสายรถ)
+    @Column(name = "route_id")
+    private Long routeId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -50,6 +67,8 @@ public class Booking extends BaseEntity {
         super();
         this.bookingCode = bookingCode;
         this.trip = trip;
+        this.tripDate = trip.getTripDate();
+        this.routeId = trip.getRoute().getId();
         this.user = user;
         this.seatNumber = seatNumber;
         this.status = "confirmed";
@@ -71,6 +90,16 @@ public class Booking extends BaseEntity {
 
     public void setTrip(BusTrip trip) {
         this.trip = trip;
+        this.tripDate = trip != null ? trip.getTripDate() : null;
+        this.routeId = trip != null ? trip.getRoute().getId() : null;
+    }
+
+    public LocalDate getTripDate() {
+        return tripDate;
+    }
+
+    public Long getRouteId() {
+        return routeId;
     }
 
     public User getUser() {
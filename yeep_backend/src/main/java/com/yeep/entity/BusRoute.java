@@ -1,5 +1,9 @@
 package com.yeep.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
@@ -7,9 +11,12 @@ import jakarta.persistence.Table;
 /**
  * BusRoute Entity - สืบทอดจาก BaseEntity
  * ใช้หลักการ Inheritance เพื่อ reuse fields และ methods จาก parent class
+ * เก็บใน second-level cache region "routes" (สายรถแทบไม่เปลี่ยน)
  */
 @Entity
 @Table(name = "bus_routes")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "routes")
 public class BusRoute extends BaseEntity {
 
     @Column(nullable = false)
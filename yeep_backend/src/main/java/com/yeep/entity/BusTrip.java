@@ -1,23 +1,30 @@
 package com.yeep.entity;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 /**
  * BusTrip Entity - สืบทอดจาก BaseEntity
  * ใช้หลักการ Inheritance เพื่อ reuse fields และ methods จาก parent class
+ * ไม่เก็บใน second-level cache: bookedSeats เปลี่ยนทุกการจอง (ใช้ TripAvailabilityCache สำหรับหน้ารายการเที่ยวรถ)
  */
 @Entity
-@Table(name = "bus_trips")
+@Table(name = "bus_trips", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_bus_trips_route_date_number", columnNames = { "route_id", "trip_date", "trip_number" })
+})
 public class BusTrip extends BaseEntity {
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "route_id", nullable = false)
     private BusRoute route;
 
@@ -36,6 +43,18 @@ public class BusTrip extends BaseEntity {
     @Column(name = "total_seats")
     private Integer totalSeats = 20; // จำนวนที่นั่งทั้งหมด (20 ที่: 1A-10A, 1B-10B)
 
+    // จำนวนที่นั่งที่จองแล้ว (อัปเดตแบบ atomic พร้อมการจอง/ยกเลิก ไม่ต้องนับจาก bookings ตอนอ่าน)
+    @Column(name = "booked_seats", nullable = false, columnDefinition = "integer not null default 0")
+    private Integer bookedSeats = 0;
+
+    // เวลาที่เที่ยวรถถูกยกเลิกทั้งเที่ยว (null = ยังเปิดให้จอง) ตั้งด้วย UPDATE ใน BusTripRepositoryCustom
+    @Column(name = "cancelled_at")
+    private LocalDateTime cancelledAt;
+
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint not null default 0")
+    private Long version;
+
     // Constructors
     public BusTrip() {
         super();
@@ -100,4 +119,28 @@ public class BusTrip extends BaseEntity {
     public void setTotalSeats(Integer totalSeats) {
         this.totalSeats = totalSeats;
     }
+
+    public Integer getBookedSeats() {
+        return bookedSeats;
+    }
+
+    public void setBookedSeats(Integer bookedSeats) {
+        this.bookedSeats = bookedSeats;
+    }
+
+    public LocalDateTime getCancelledAt() {
+        return cancelledAt;
+    }
+
+    public void setCancelledAt(LocalDateTime cancelledAt) {
+        this.cancelledAt = cancelledAt;
+    }
+
+    public boolean isCancelled() {
+        return cancelledAt != null;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
 }
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 /**
  * User Entity - สืบทอดจาก BaseEntity
  * ใช้หลักการ Inheritance เพื่อ reuse fields และ methods จาก parent class
+ * ไม่เก็บใน second-level cache (มีรหัสผ่าน)
  */
 @Entity
 @Table(name = "users")
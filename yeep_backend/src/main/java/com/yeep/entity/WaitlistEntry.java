@@ -0,0 +1,96 @@
+package com.yeep.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+/**
+ * WaitlistEntry Entity - สืบทอดจาก BaseEntity
+ * คิวรอที่นั่งของเที่ยวรถที่เต็มแล้ว (หนึ่งรายการต่อหนึ่งที่นั่ง)
+ * ลำดับคิวคือลำดับของ id
+ */
+@Entity
+@Table(name = "waitlist_entries", indexes = {
+        @Index(name = "idx_waitlist_status_trip", columnList = "status, trip_id")
+})
+public class WaitlistEntry extends BaseEntity {
+
+    // ไม่มี foreign key ใน Database (bus_trips แบ่ง partition) PartitionMaintenance ลบคิวก่อนลบ partition ของเที่ยวรถ
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "trip_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private BusTrip trip;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private String status = "waiting"; // waiting, promoted, cancelled, trip_cancelled
+
+    @Column(name = "booking_code")
+    private String bookingCode; // booking code ที่ได้เมื่อได้ที่นั่งแล้ว
+
+    @Column(name = "promoted_at")
+    private LocalDateTime promotedAt;
+
+    // Constructors
+    public WaitlistEntry() {
+        super();
+    }
+
+    public WaitlistEntry(BusTrip trip, User user) {
+        super();
+        this.trip = trip;
+        this.user = user;
+        this.status = "waiting";
+    }
+
+    // Getters and Setters
+    public BusTrip getTrip() {
+        return trip;
+    }
+
+    public void setTrip(BusTrip trip) {
+        this.trip = trip;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getBookingCode() {
+        return bookingCode;
+    }
+
+    public void setBookingCode(String bookingCode) {
+        this.bookingCode = bookingCode;
+    }
+
+    public LocalDateTime getPromotedAt() {
+        return promotedAt;
+    }
+
+    public void setPromotedAt(LocalDateTime promotedAt) {
+        this.promotedAt = promotedAt;
+    }
+}
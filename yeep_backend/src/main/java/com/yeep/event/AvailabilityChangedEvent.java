@@ -0,0 +1,47 @@
+package com.yeep.event;
+
+import java.time.LocalDate;
+
+/**
+ * AvailabilityChangedEvent - ที่นั่งหรือรายการเที่ยวรถของสายรถในวันหนึ่งเปลี่ยนไป
+ *
+ * ส่งจาก BookingService (จอง/ยกเลิก), SeatHoldService (กัน/คืนที่นั่งชั่วคราว)
+ * และ TripMaterializer (สร้างเที่ยวรถใหม่) ผู้รับใช้ invalidate ข้อมูลที่ cache ไว้
+ * - tripId = null หมายถึงรายการเที่ยวรถของสายรถและวันนั้นเปลี่ยน
+ * - routeId และ tripDate = null หมายถึงข้อมูลทั้งหมดเปลี่ยน (เช่นรีเซ็ตข้อมูล)
+ */
+public class AvailabilityChangedEvent {
+
+    private final Long tripId;
+    private final Long routeId;
+    private final LocalDate tripDate;
+
+    public AvailabilityChangedEvent(Long tripId, Long routeId, LocalDate tripDate) {
+        this.tripId = tripId;
+        this.routeId = routeId;
+        this.tripDate = tripDate;
+    }
+
+    /**
+     * ข้อมูลทั้งหมดเปลี่ยน
+     */
+    public static AvailabilityChangedEvent all() {
+        return new AvailabilityChangedEvent(null, null, null);
+    }
+
+    public Long getTripId() {
+        return tripId;
+    }
+
+    public Long getRouteId() {
+        return routeId;
+    }
+
+    public LocalDate getTripDate() {
+        return tripDate;
+    }
+
+    public boolean isAll() {
+        return routeId == null || tripDate == null;
+    }
+}
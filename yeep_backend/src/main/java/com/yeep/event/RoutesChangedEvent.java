@@ -0,0 +1,8 @@
+package com.yeep.event;
+
+/**
+ * RoutesChangedEvent - ข้อมูลสายรถ (และรายการสถานที่) เปลี่ยนไป
+ * ส่งจาก BusRouteService เมื่อสร้างหรือลบสายรถ
+ */
+public class RoutesChangedEvent {
+}
@@ -0,0 +1,21 @@
+package com.yeep.event;
+
+/**
+ * SeatsReleasedEvent - ที่นั่งของเที่ยวรถว่างลงใน SeatInventory
+ *
+ * ส่งจาก SeatInventory ทุกครั้งที่คืนที่นั่ง (ยกเลิกการจอง, hold หมดอายุหรือถูกยกเลิก,
+ * ยกเลิกทั้งเที่ยวรถ, โหลดใหม่จาก Database) หลังจากสถานะในหน่วยความจำเปลี่ยนแล้ว
+ * BookingSequencer ใช้ส่งที่นั่งให้คนในคิวรอ (เที่ยวรถที่ถูกยกเลิกไม่มีคิวรอแล้ว)
+ */
+public class SeatsReleasedEvent {
+
+    private final Long tripId;
+
+    public SeatsReleasedEvent(Long tripId) {
+        this.tripId = tripId;
+    }
+
+    public Long getTripId() {
+        return tripId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.yeep.repository;
+
+import java.time.LocalDate;
+
+/**
+ * แถวข้อมูลเก่าที่อ่านออกมาเพื่อเก็บลงไฟล์ archive ก่อนลบจาก Database
+ *
+ * @param id       id ของแถว (ใช้ทำ keyset และลบ)
+ * @param tripDate วันที่ของเที่ยวรถ (ใช้แบ่งไฟล์ archive ตามวัน)
+ * @param routeId  สายรถของเที่ยวรถ
+ * @param values   ค่าของแต่ละคอลัมน์ ตามลำดับ ARCHIVE_COLUMNS ของ repository
+ */
+public record ArchiveRow(long id, LocalDate tripDate, Long routeId, Object[] values) {
+}
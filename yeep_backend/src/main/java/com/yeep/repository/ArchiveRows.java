@@ -0,0 +1,30 @@
+package com.yeep.repository;
+
+import java.sql.Date;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * ตัวช่วยร่วมของ repository fragment สำหรับอ่านข้อมูลที่ archive
+ */
+final class ArchiveRows {
+
+    private ArchiveRows() {} // Prevent instantiation
+
+    /**
+     * RowMapper ที่อ่านทุกคอลัมน์เป็น ArchiveRow (คอลัมน์แรกต้องเป็น id)
+     *
+     * @param tripDateColumn ลำดับคอลัมน์ trip_date (เริ่มที่ 1)
+     * @param routeIdColumn  ลำดับคอลัมน์ route_id (เริ่มที่ 1, ค่าว่างได้)
+     */
+    static RowMapper<ArchiveRow> mapper(int columnCount, int tripDateColumn, int routeIdColumn) {
+        return (rs, rowNum) -> {
+            Object[] values = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = rs.getObject(i + 1);
+            }
+            Date tripDate = rs.getDate(tripDateColumn);
+            return new ArchiveRow(rs.getLong(1), tripDate.toLocalDate(), rs.getObject(routeIdColumn, Long.class), values);
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package com.yeep.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,42 +12,63 @@ import org.springframework.stereotype.Repository;
 
 import com.yeep.entity.Booking;
 import com.yeep.entity.BusTrip;
-import com.yeep.entity.User;
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingRepositoryCustom {
     
-    // หาการจองของ user
-    List<Booking> findByUserOrderByBookedAtDesc(User user);
+    // ส่วน SELECT ของรายการจองแบบ BookingRow (join bus_trips ด้วย trip_date ด้วย จึงจับคู่ partition วันเดียวกัน)
+    String BOOKING_ROW_SELECT = "SELECT new com.yeep.repository.BookingRow("
+            + "b.id, b.bookingCode, b.seatNumber, b.status, b.bookedAt, b.cancelledAt, "
+            + "t.id, t.tripNumber, t.departureTime, t.arrivalTime, t.tripDate, t.totalSeats, "
+            + "r.id, r.name, r.color, r.origin, r.destination) "
+            + "FROM Booking b JOIN b.trip t ON t.tripDate = b.tripDate JOIN t.route r ";
     
-    // หาการจองของ user ที่ยังไม่ยกเลิก
-    List<Booking> findByUserAndStatusOrderByBookedAtDesc(User user, String status);
+    // หาการจองของ user (ประวัติทั้งหมด)
+    @Query(BOOKING_ROW_SELECT + "WHERE b.user.username = :username ORDER BY b.bookedAt DESC")
+    List<BookingRow> findRowsByUsername(@Param("username") String username);
+    
+    // หาการจองของ user ตามสถานะ
+    @Query(BOOKING_ROW_SELECT + "WHERE b.user.username = :username AND b.status = :status ORDER BY b.bookedAt DESC")
+    List<BookingRow> findRowsByUsernameAndStatus(@Param("username") String username, @Param("status") String status);
+    
+    // หาการจองพร้อมเที่ยวรถและผู้จองด้วย query เดียว (ใช้ยกเลิกการจอง อ่านเฉพาะ partition ของวันนั้น)
+    @Query("SELECT b FROM Booking b JOIN FETCH b.trip t JOIN FETCH b.user "
+            + "WHERE b.id = :id AND b.tripDate = :tripDate AND t.tripDate = :tripDate")
+    Optional<Booking> findWithTripAndUserById(@Param("id") Long id, @Param("tripDate") LocalDate tripDate);
+    
+    // หาการจองหลายรายการของวันเดียวกัน (ใช้ยกเลิกทั้ง batch ของเที่ยวรถ)
+    @Query("SELECT b FROM Booking b WHERE b.id IN :ids AND b.tripDate = :tripDate")
+    List<Booking> findAllByIdAndTripDate(@Param("ids") Collection<Long> ids, @Param("tripDate") LocalDate tripDate);
     
     // หาการจองของเที่ยวรถ
     List<Booking> findByTripAndStatus(BusTrip trip, String status);
     
     // หาที่นั่งที่จองแล้วของเที่ยวรถ
-    @Query("SELECT b.seatNumber FROM Booking b WHERE b.trip.id = :tripId AND b.status = 'confirmed'")
-    List<String> findBookedSeatsByTripId(@Param("tripId") Long tripId);
+    @Query("SELECT b.seatNumber FROM Booking b "
+            + "WHERE b.trip.id = :tripId AND b.tripDate = :tripDate AND b.status = 'confirmed'")
+    List<String> findBookedSeatsByTripId(@Param("tripId") Long tripId, @Param("tripDate") LocalDate tripDate);
     
     // นับจำนวนที่นั่งที่จองแล้ว
     @Query("SELECT COUNT(b) FROM Booking b WHERE b.trip.id = :tripId AND b.status = 'confirmed'")
     int countBookedSeatsByTripId(@Param("tripId") Long tripId);
     
-    // ตรวจสอบว่าที่นั่งถูกจองแล้วหรือยัง
-    boolean existsByTripAndSeatNumberAndStatus(BusTrip trip, String seatNumber, String status);
+    // หา trip id ของการจอง (ใช้เลือกคิวของ BookingSequencer อ่านเฉพาะ partition ของวันนั้น)
+    @Query("SELECT b.trip.id FROM Booking b WHERE b.id = :bookingId AND b.tripDate = :tripDate")
+    Optional<Long> findTripIdById(@Param("bookingId") Long bookingId, @Param("tripDate") LocalDate tripDate);
     
-    // หาจาก booking code
-    Optional<Booking> findByBookingCode(String bookingCode);
+    // หา trip id ของการจองเมื่อไม่รู้วันที่ (ค้นทุก partition ใช้กับ client เก่าที่ไม่ส่ง tripDate)
+    @Query("SELECT b.trip.id FROM Booking b WHERE b.id = :bookingId")
+    Optional<Long> findTripIdById(@Param("bookingId") Long bookingId);
     
-    // หา booking code ล่าสุด
-    @Query("SELECT b.bookingCode FROM Booking b ORDER BY b.id DESC LIMIT 1")
-    Optional<String> findLastBookingCode();
+    // หาจาก booking code (ไม่ซ้ำภายในวันเดียวกัน ถ้ามีหลายวันใช้การจองของวันล่าสุด)
+    Optional<Booking> findFirstByBookingCodeOrderByTripDateDesc(String bookingCode);
     
-    // ลบ bookings ก่อนวันที่กำหนด (ผ่าน trip.tripDate)
-    int deleteByTripTripDateBefore(java.time.LocalDate date);
+    // จองช่วงเลข booking code ถัดไปจาก sequence (คืนค่าเลขสุดท้ายของช่วง)
+    @Query(value = "SELECT nextval('booking_code_seq')", nativeQuery = true)
+    long nextBookingCodeBlock();
     
-    // หาการจองตามสายรถและวันที่ (สำหรับคนขับ)
-    @Query("SELECT b FROM Booking b WHERE b.trip.route.id = :routeId AND b.trip.tripDate = :date AND b.status = 'confirmed' ORDER BY b.trip.departureTime, b.seatNumber")
-    List<Booking> findByRouteIdAndDate(@Param("routeId") Long routeId, @Param("date") java.time.LocalDate date);
+    // หาการจองตามสายรถและวันที่ (สำหรับคนขับ) b.tripDate ทำให้อ่านเฉพาะ partition ของวันนั้น
+    @Query(BOOKING_ROW_SELECT + "WHERE b.tripDate = :date AND t.tripDate = :date AND r.id = :routeId "
+            + "AND b.status = 'confirmed' ORDER BY t.departureTime, b.seatNumber")
+    List<BookingRow> findRowsByRouteIdAndDate(@Param("routeId") Long routeId, @Param("date") LocalDate date);
 }
@@ -0,0 +1,73 @@
+package com.yeep.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * คำสั่ง SQL ที่ Spring Data สร้างให้ไม่ได้ (ใช้ร่วมกับ BookingRepository)
+ */
+public interface BookingRepositoryCustom {
+
+    /**
+     * ยกเลิกการจองที่ยืนยันแล้วทั้งหมดของเที่ยวรถด้วย UPDATE เดียว (tripDate เลือก partition)
+     *
+     * @param cancelled รับการจองแต่ละรายการที่ถูกยกเลิกทันทีที่อ่านได้จาก Database
+     * @return จำนวนการจองที่ถูกยกเลิก
+     */
+    int cancelConfirmedByTrip(Long tripId, LocalDate tripDate, Consumer<CancelledBooking> cancelled);
+
+    /**
+     * ยกเลิกการจองที่ยืนยันแล้วทั้งหมดของสายรถในวันที่กำหนดด้วย UPDATE เดียว
+     *
+     * @param cancelled รับการจองแต่ละรายการที่ถูกยกเลิกทันทีที่อ่านได้จาก Database
+     * @return จำนวนการจองที่ถูกยกเลิก
+     */
+    int cancelConfirmedByRouteAndDate(Long routeId, LocalDate date, Consumer<CancelledBooking> cancelled);
+
+    /**
+     * การจองหนึ่งรายการที่ถูกยกเลิกทั้งชุด (ที่นั่งใช้คืนเฉพาะที่นั่งนั้นใน SeatInventory)
+     */
+    record CancelledBooking(String bookingCode, Long tripId, String seatNumber) {
+    }
+
+    /**
+     * แบบการเรียงของประวัติการจอง แต่ละแบบมี index (user_id, คอลัมน์, id) ใน schema.sql
+     */
+    enum HistoryOrder {
+        DATE("b.booked_at"),
+        STATUS("b.status"),
+        SEAT("b.seat_number"),
+        ROUTE("b.route_id");
+
+        private final String column;
+
+        HistoryOrder(String column) {
+            this.column = column;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    /**
+     * อ่านประวัติการจองของผู้ใช้หนึ่งหน้าแบบ keyset เรียงตาม (คอลัมน์ของ order, id)
+     * ถัดจากแถว (afterValue, afterId) ของหน้าก่อน (afterId = null คือหน้าแรก)
+     *
+     * ROUTE อ่านเฉพาะสายรถ afterValue (route id) เรียงตาม id ผู้เรียกไล่สายรถตามลำดับชื่อเอง
+     */
+    List<BookingRow> findHistoryPage(Long userId, HistoryOrder order, boolean descending, Object afterValue,
+            Long afterId, int limit);
+
+    /**
+     * คอลัมน์ของ ArchiveRow.values ที่ findArchiveChunkOn คืน
+     */
+    String[] ARCHIVE_COLUMNS = { "id", "booking_code", "trip_id", "route_id", "trip_date", "departure_time",
+            "user_id", "username", "seat_number", "status", "booked_at", "cancelled_at" };
+
+    /**
+     * อ่านการจองของเที่ยวรถวันที่กำหนด (partition เดียว) ทีละชุด เรียงตาม id (keyset: id > afterId)
+     */
+    List<ArchiveRow> findArchiveChunkOn(LocalDate tripDate, long afterId, int limit);
+}
@@ -0,0 +1,144 @@
+package com.yeep.repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * BookingRepositoryImpl - implementation ของ BookingRepositoryCustom ด้วย JdbcTemplate
+ *
+ * ใช้ UPDATE ... RETURNING ของ PostgreSQL ยกเลิกการจองทั้งชุดในคำสั่งเดียว
+ * และอ่านการจองที่ถูกยกเลิกทีละแถวจาก result set (ไม่โหลด entity และไม่สร้าง list ในหน่วยความจำ)
+ *
+ * ทุกคำสั่งระบุ trip_date ของการจอง PostgreSQL จึงอ่านเฉพาะ partition ของวันนั้น
+ * (ยกเว้นประวัติการจองของผู้ใช้ ซึ่งใช้ index (user_id, คอลัมน์ที่เรียง, id) ของแต่ละ partition)
+ * การอ่านเพื่อ archive ทำทีละชุดด้วย keyset (id > afterId) ภายใน partition ของวันเดียว
+ * และใช้ LEFT JOIN ให้การจองที่ไม่มีเที่ยวรถหรือผู้ใช้แล้วยังถูก archive (ข้อมูลเที่ยวรถ/ผู้ใช้เป็นค่าว่าง)
+ */
+public class BookingRepositoryImpl implements BookingRepositoryCustom {
+
+    private static final int FETCH_SIZE = 500;
+
+    private static final String CANCEL_BY_TRIP_SQL =
+            "UPDATE bookings SET status = 'cancelled', cancelled_at = now() "
+            + "WHERE trip_id = ? AND trip_date = ? AND status = 'confirmed' "
+            + "RETURNING booking_code, trip_id, seat_number";
+
+    private static final String CANCEL_BY_ROUTE_AND_DATE_SQL =
+            "UPDATE bookings b SET status = 'cancelled', cancelled_at = now() "
+            + "FROM bus_trips t "
+            + "WHERE b.trip_id = t.id AND b.trip_date = t.trip_date AND t.route_id = ? AND t.trip_date = ? "
+            + "AND b.trip_date = ? AND b.status = 'confirmed' "
+            + "RETURNING b.booking_code, b.trip_id, b.seat_number";
+
+    private static final String ARCHIVE_CHUNK_SQL =
+            "SELECT b.id, b.booking_code, b.trip_id, t.route_id, b.trip_date, t.departure_time, "
+            + "b.user_id, u.username, b.seat_number, b.status, b.booked_at, b.cancelled_at "
+            + "FROM bookings b LEFT JOIN bus_trips t ON t.id = b.trip_id AND t.trip_date = ? "
+            + "LEFT JOIN users u ON u.id = b.user_id "
+            + "WHERE b.trip_date = ? AND b.id > ? ORDER BY b.id LIMIT ?";
+
+    private static final String HISTORY_SELECT_SQL =
+            "SELECT b.id, b.booking_code, b.seat_number, b.status, b.booked_at, b.cancelled_at, "
+            + "t.id, t.trip_number, t.departure_time, t.arrival_time, t.trip_date, t.total_seats, "
+            + "r.id, r.name, r.color, r.origin, r.destination "
+            + "FROM bookings b JOIN bus_trips t ON t.id = b.trip_id AND t.trip_date = b.trip_date "
+            + "JOIN bus_routes r ON r.id = t.route_id "
+            + "WHERE b.user_id = ? ";
+
+    private static final RowMapper<BookingRow> BOOKING_ROW_MAPPER = (rs, rowNum) -> new BookingRow(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getObject(5, LocalDateTime.class),
+            rs.getObject(6, LocalDateTime.class),
+            rs.getLong(7),
+            rs.getObject(8, Integer.class),
+            rs.getObject(9, LocalTime.class),
+            rs.getObject(10, LocalTime.class),
+            rs.getObject(11, LocalDate.class),
+            rs.getObject(12, Integer.class),
+            rs.getLong(13),
+            rs.getString(14),
+            rs.getString(15),
+            rs.getString(16),
+            rs.getString(17));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int cancelConfirmedByTrip(Long tripId, LocalDate tripDate, Consumer<CancelledBooking> cancelled) {
+        return stream(CANCEL_BY_TRIP_SQL, cancelled, tripId, Date.valueOf(tripDate));
+    }
+
+    @Override
+    public int cancelConfirmedByRouteAndDate(Long routeId, LocalDate date, Consumer<CancelledBooking> cancelled) {
+        return stream(CANCEL_BY_ROUTE_AND_DATE_SQL, cancelled, routeId, Date.valueOf(date), Date.valueOf(date));
+    }
+
+    @Override
+    public List<BookingRow> findHistoryPage(Long userId, HistoryOrder order, boolean descending, Object afterValue,
+            Long afterId, int limit) {
+        String direction = descending ? " DESC" : " ASC";
+        String seek = descending ? " < " : " > ";
+        StringBuilder sql = new StringBuilder(HISTORY_SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+
+        if (order == HistoryOrder.ROUTE) {
+            // สายรถเดียว เรียงตาม id ภายในสาย (index (user_id, route_id, id))
+            sql.append("AND b.route_id = ? ");
+            args.add(afterValue);
+            if (afterId != null) {
+                sql.append("AND b.id").append(seek).append("? ");
+                args.add(afterId);
+            }
+            sql.append("ORDER BY b.id").append(direction);
+        } else {
+            // row comparison ตรงกับลำดับของ index จึงเริ่มอ่านจาก cursor ได้ทันที
+            if (afterId != null) {
+                sql.append("AND (").append(order.column()).append(", b.id)").append(seek).append("(?, ?) ");
+                args.add(afterValue);
+                args.add(afterId);
+            }
+            sql.append("ORDER BY ").append(order.column()).append(direction).append(", b.id").append(direction);
+        }
+        sql.append(" LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), BOOKING_ROW_MAPPER, args.toArray());
+    }
+
+    @Override
+    public List<ArchiveRow> findArchiveChunkOn(LocalDate tripDate, long afterId, int limit) {
+        return jdbcTemplate.query(ARCHIVE_CHUNK_SQL, ArchiveRows.mapper(ARCHIVE_COLUMNS.length, 5, 4),
+                Date.valueOf(tripDate), Date.valueOf(tripDate), afterId, limit);
+    }
+
+    private int stream(String sql, Consumer<CancelledBooking> cancelled, Object... args) {
+        int[] count = new int[1];
+        RowCallbackHandler handler = rs -> {
+            cancelled.accept(new CancelledBooking(rs.getString(1), rs.getLong(2), rs.getString(3)));
+            count[0]++;
+        };
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, handler);
+        return count[0];
+    }
+}
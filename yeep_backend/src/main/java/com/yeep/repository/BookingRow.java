@@ -0,0 +1,29 @@
+package com.yeep.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * การจองพร้อมข้อมูลเที่ยวรถและสายรถสำหรับแสดงในรายการ (JPQL constructor projection)
+ * อ่านเฉพาะคอลัมน์ที่ BookingResponse/TripResponse ใช้ด้วย join query เดียว ไม่สร้าง entity
+ */
+public record BookingRow(
+        Long id,
+        String bookingCode,
+        String seatNumber,
+        String status,
+        LocalDateTime bookedAt,
+        LocalDateTime cancelledAt,
+        Long tripId,
+        Integer tripNumber,
+        LocalTime departureTime,
+        LocalTime arrivalTime,
+        LocalDate tripDate,
+        Integer totalSeats,
+        Long routeId,
+        String routeName,
+        String routeColor,
+        String origin,
+        String destination) {
+}
@@ -3,16 +3,28 @@ package com.yeep.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yeep.entity.BusRoute;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface BusRouteRepository extends JpaRepository<BusRoute, Long> {
     
+    // สายรถทั้งหมด (ผลอยู่ใน query cache "routes-query" จนกว่าตาราง bus_routes จะถูกแก้ผ่าน JPA)
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "routes-query")
+    })
+    List<BusRoute> findAll();
+    
     // หาสายรถจากต้นทาง-ปลายทาง
     Optional<BusRoute> findByOriginAndDestination(String origin, String destination);
     
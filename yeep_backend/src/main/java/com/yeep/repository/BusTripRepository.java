@@ -2,7 +2,9 @@ package com.yeep.repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,21 +14,33 @@ import com.yeep.entity.BusRoute;
 import com.yeep.entity.BusTrip;
 
 @Repository
-public interface BusTripRepository extends JpaRepository<BusTrip, Long> {
+public interface BusTripRepository extends JpaRepository<BusTrip, Long>, BusTripRepositoryCustom {
+
+    // BusTrip.route เป็น LAZY: query ที่คืนเที่ยวรถไปแสดงผลหรือเก็บใน cache โหลดสายรถมาด้วยใน query เดียวกัน
+    // (เที่ยวรถที่อยู่ใน cache ถูกใช้นอก transaction จึงต้องมีสายรถครบตั้งแต่ตอนโหลด)
+    // query จาก id ส่ง trip_date ไปด้วยเสมอ (อ่านเฉพาะ partition ของวันนั้น ดู TripDateIndex)
+
+    // หาเที่ยวรถจาก ID และวันที่พร้อมสายรถ
+    @Query("SELECT t FROM BusTrip t JOIN FETCH t.route WHERE t.id = :id AND t.tripDate = :tripDate")
+    Optional<BusTrip> findWithRouteById(@Param("id") Long id, @Param("tripDate") LocalDate tripDate);
+
+    // หาวันที่ของเที่ยวรถจาก ID (ค้นทุก partition ใช้เฉพาะเมื่อยังไม่รู้วันที่)
+    @Query("SELECT t.tripDate FROM BusTrip t WHERE t.id = :id")
+    Optional<LocalDate> findTripDateById(@Param("id") Long id);
 
     // หาเที่ยวรถจากสายรถและวันที่ (พร้อม ORDER BY - สำหรับใช้งานทั่วไป)
+    @EntityGraph(attributePaths = "route")
     List<BusTrip> findByRouteAndTripDateOrderByDepartureTime(BusRoute route, LocalDate tripDate);
 
     // หาเที่ยวรถจากสายรถและวันที่ (ไม่มี ORDER BY - สำหรับ Selection Sort)
+    @EntityGraph(attributePaths = "route")
     List<BusTrip> findByRouteAndTripDate(BusRoute route, LocalDate tripDate);
 
     // หาเที่ยวรถจาก route id และวันที่ (ไม่มี ORDER BY - สำหรับ Selection Sort)
-    @Query("SELECT t FROM BusTrip t WHERE t.route.id = :routeId AND t.tripDate = :tripDate")
+    @Query("SELECT t FROM BusTrip t JOIN FETCH t.route WHERE t.route.id = :routeId AND t.tripDate = :tripDate")
     List<BusTrip> findByRouteIdAndTripDate(@Param("routeId") Long routeId, @Param("tripDate") LocalDate tripDate);
 
     // หาเที่ยวรถจาก route id
+    @EntityGraph(attributePaths = "route")
     List<BusTrip> findByRouteIdOrderByDepartureTime(Long routeId);
-
-    // ลบเที่ยวรถก่อนวันที่กำหนด
-    int deleteByTripDateBefore(LocalDate date);
 }
@@ -0,0 +1,105 @@
+package com.yeep.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.yeep.entity.BusTrip;
+
+/**
+ * คำสั่ง SQL ที่ Spring Data สร้างให้ไม่ได้ (ใช้ร่วมกับ BusTripRepository)
+ */
+public interface BusTripRepositoryCustom {
+
+    /**
+     * ปรับจำนวนที่นั่งที่จองแล้วแบบ atomic (ใช้ใน transaction เดียวกับการจอง/ยกเลิก)
+     * เป็น SQL ตรงแทน JPQL bulk update ซึ่งทำให้ Hibernate ล้าง cache ของเที่ยวรถทั้ง region
+     * ผู้เรียกต้องส่ง AvailabilityChangedEvent ของเที่ยวรถนี้ (TripAvailabilityCache ล้างรายการที่นั่งว่าง)
+     * tripDate ทำให้ UPDATE ไปที่ partition ของวันนั้นโดยตรง
+     *
+     * delta ที่เป็นบวกใช้ได้เฉพาะเที่ยวรถที่ยังไม่ถูกยกเลิก (คืน 0 ถ้าเที่ยวรถถูกยกเลิกแล้ว)
+     * UPDATE นี้รอ lock ของแถวเที่ยวรถ การจองที่ commit หลังการยกเลิกทั้งเที่ยวจึงเห็นสถานะยกเลิกเสมอ
+     */
+    int adjustBookedSeats(Long tripId, LocalDate tripDate, int delta);
+
+    /**
+     * ล็อกแถวของเที่ยวรถ (FOR UPDATE) จนจบ transaction แล้วบอกว่ายังเปิดให้จองอยู่หรือไม่
+     * ใช้ก่อนแก้การจองเดิมหรือส่งที่นั่งให้คิวรอ: การยกเลิกทั้งเที่ยวล็อกแถวเดียวกันก่อนเสมอ
+     * จึงไม่ deadlock กัน และไม่มีการจองจากคิวรอหลุดเข้าเที่ยวรถที่ถูกยกเลิกแล้ว
+     *
+     * @return false ถ้าเที่ยวรถถูกยกเลิกแล้วหรือไม่มีเที่ยวรถนี้
+     */
+    boolean lockTrip(Long tripId, LocalDate tripDate);
+
+    /**
+     * ปิดเที่ยวรถไม่ให้จองอีก (ตั้ง cancelled_at ถ้ายังไม่ได้ตั้ง) ต้องเรียกก่อนยกเลิกการจองใน transaction เดียวกัน
+     *
+     * @return 1 ถ้าเพิ่งถูกปิด, 0 ถ้าถูกปิดไปแล้วหรือไม่มีเที่ยวรถนี้
+     */
+    int markCancelled(Long tripId, LocalDate tripDate);
+
+    /**
+     * ปิดทุกเที่ยวของสายรถในวันที่กำหนดไม่ให้จองอีก
+     *
+     * @return id ของทุกเที่ยวรถของสายในวันนั้น (รวมเที่ยวที่ถูกปิดไปแล้ว) เรียงตาม id
+     */
+    List<Long> markCancelledByRouteAndDate(Long routeId, LocalDate date);
+
+    /**
+     * ซ่อมจำนวนที่นั่งที่จองแล้วให้ตรงกับ bookings ของเที่ยวรถตั้งแต่วันที่กำหนดหนึ่งชุด
+     * (id > afterId เรียงตาม id ไม่เกิน limit เที่ยว) ต้องเรียกภายใน transaction
+     *
+     * ล็อกเที่ยวรถในชุดด้วย FOR UPDATE SKIP LOCKED: เที่ยวที่กำลังมีการจองอยู่จะถูกข้ามในรอบนี้
+     * แทนที่จะรอ และการจองไม่ต้องรอการซ่อมทั้งตาราง
+     */
+    ReconcileBatch reconcileBookedSeatsBatch(LocalDate fromDate, long afterId, int limit);
+
+    record RepairedTrip(Long id, Long routeId, LocalDate tripDate) {
+    }
+
+    /**
+     * ผลของการซ่อมหนึ่งชุด
+     *
+     * @param scanned  จำนวนเที่ยวรถที่ล็อกและตรวจในชุดนี้ (0 = ไม่มีเที่ยวรถเหลือ)
+     * @param lastId   id สุดท้ายที่ตรวจ (afterId ของชุดถัดไป)
+     * @param repaired เที่ยวรถที่ถูกแก้
+     */
+    record ReconcileBatch(int scanned, long lastId, List<RepairedTrip> repaired) {
+    }
+
+    /**
+     * insert เที่ยวรถใหม่เป็น JDBC batch โดยข้ามเที่ยวที่มีอยู่แล้ว (route, วันที่, เที่ยวที่ ซ้ำ)
+     * เรียกซ้ำหรือเรียกพร้อมกันหลายที่ได้โดยไม่เกิดเที่ยวรถซ้ำ
+     *
+     * @return จำนวนเที่ยวรถที่ถูก insert จริง
+     */
+    int insertTripsIfAbsent(List<BusTrip> trips);
+
+    /**
+     * แก้เวลาออก/ถึงของเที่ยวรถที่มีอยู่แล้วให้ตรงกับ trips (จับคู่ด้วย route, วันที่, เที่ยวที่)
+     * แก้เฉพาะเที่ยวที่ยังไม่มีการจองที่ยืนยันแล้ว เที่ยวที่มีการจองคงเวลาเดิม (ผู้โดยสารจองตามเวลานั้น)
+     *
+     * @param from    วันแรกของ trips
+     * @param through วันสุดท้ายของ trips
+     */
+    TimetableSync updateTripTimes(List<BusTrip> trips, LocalDate from, LocalDate through);
+
+    /**
+     * ผลของ updateTripTimes
+     *
+     * @param updated       จำนวนเที่ยวรถที่ถูกแก้เวลา
+     * @param skippedBooked จำนวนเที่ยวรถที่เวลาไม่ตรงกับตารางแต่มีการจองแล้ว (ไม่ถูกแก้)
+     */
+    record TimetableSync(int updated, int skippedBooked) {
+    }
+
+    /**
+     * คอลัมน์ของ ArchiveRow.values ที่ findArchiveChunkOn คืน
+     */
+    String[] ARCHIVE_COLUMNS = { "id", "route_id", "trip_number", "trip_date", "departure_time", "arrival_time",
+            "total_seats", "booked_seats" };
+
+    /**
+     * อ่านเที่ยวรถของวันที่กำหนด (partition เดียว) ทีละชุด เรียงตาม id (keyset: id > afterId)
+     */
+    List<ArchiveRow> findArchiveChunkOn(LocalDate tripDate, long afterId, int limit);
+}
@@ -0,0 +1,218 @@
+package com.yeep.repository;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.yeep.entity.BaseEntity;
+import com.yeep.entity.BusTrip;
+
+/**
+ * BusTripRepositoryImpl - implementation ของ BusTripRepositoryCustom ด้วย JdbcTemplate
+ *
+ * id มาจาก yeep_id_seq แบบเดียวกับ Hibernate (pooled): nextval หนึ่งครั้งได้ id ช่วง
+ * (ค่า - ID_ALLOCATION_SIZE, ค่า] ที่ไม่มีใครใช้ซ้ำ ความไม่ซ้ำของเที่ยวรถมาจาก
+ * unique constraint uk_bus_trips_route_date_number ร่วมกับ ON CONFLICT DO NOTHING
+ * (partition ของวันที่ต้องมีก่อน insert ดู PartitionMaintenance.ensurePartitions)
+ */
+public class BusTripRepositoryImpl implements BusTripRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO bus_trips (id, route_id, trip_number, departure_time, arrival_time, trip_date, "
+            + "total_seats, booked_seats, version, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0, ?, ?) "
+            + "ON CONFLICT DO NOTHING";
+
+    private static final String TRIP_TIMES_SQL =
+            "SELECT route_id, trip_date, trip_number, departure_time, arrival_time FROM bus_trips "
+            + "WHERE trip_date BETWEEN ? AND ?";
+
+    // แก้เฉพาะเที่ยวที่ยังไม่มีการจอง (ตรวจกับ bookings ไม่ใช้ booked_seats ซึ่งอาจยังไม่ถูกซ่อม)
+    private static final String UPDATE_TRIP_TIMES_SQL =
+            "UPDATE bus_trips t SET departure_time = ?, arrival_time = ?, version = t.version + 1, updated_at = ? "
+            + "WHERE t.route_id = ? AND t.trip_date = ? AND t.trip_number = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM bookings b WHERE b.trip_id = t.id AND b.trip_date = t.trip_date "
+            + "                AND b.trip_date = ? AND b.status = 'confirmed')";
+
+    private static final String ADJUST_BOOKED_SEATS_SQL =
+            "UPDATE bus_trips SET booked_seats = booked_seats + ?, version = version + 1 "
+            + "WHERE id = ? AND trip_date = ? AND (? <= 0 OR cancelled_at IS NULL)";
+
+    private static final String LOCK_TRIP_SQL =
+            "SELECT cancelled_at IS NULL FROM bus_trips WHERE id = ? AND trip_date = ? FOR UPDATE";
+
+    private static final String MARK_CANCELLED_SQL =
+            "UPDATE bus_trips SET cancelled_at = now(), version = version + 1 "
+            + "WHERE id = ? AND trip_date = ? AND cancelled_at IS NULL";
+
+    // ล็อกเที่ยวรถเรียงตาม id ก่อน UPDATE (ลำดับเดียวกับ BookedSeatsReconciler จึงไม่ deadlock กัน)
+    private static final String MARK_CANCELLED_BY_ROUTE_AND_DATE_SQL =
+            "WITH locked AS ("
+            + "  SELECT id FROM bus_trips WHERE route_id = ? AND trip_date = ? ORDER BY id FOR UPDATE) "
+            + "UPDATE bus_trips t SET cancelled_at = COALESCE(t.cancelled_at, now()), version = t.version + 1 "
+            + "FROM locked l WHERE t.id = l.id AND t.trip_date = ? "
+            + "RETURNING t.id";
+
+    // ล็อกชุดของเที่ยวรถ (ข้ามเที่ยวที่ถูกล็อกอยู่) นับการจองของชุดนั้น แก้เฉพาะเที่ยวที่ไม่ตรง
+    // แล้วคืนทุกเที่ยวในชุด (route_id = null คือไม่ได้แก้) เพื่อให้รู้ id สุดท้ายของชุด
+    private static final String RECONCILE_BATCH_SQL =
+            "WITH batch AS ("
+            + "  SELECT id, trip_date FROM bus_trips WHERE trip_date >= ? AND id > ? "
+            + "  ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED), "
+            + "counted AS ("
+            + "  SELECT bt.id, bt.trip_date, COUNT(b.id) AS booked FROM batch bt "
+            + "  LEFT JOIN bookings b ON b.trip_id = bt.id AND b.trip_date = bt.trip_date "
+            + "       AND b.trip_date >= ? AND b.status = 'confirmed' "
+            + "  GROUP BY bt.id, bt.trip_date), "
+            + "repaired AS ("
+            + "  UPDATE bus_trips t SET booked_seats = c.booked, version = t.version + 1 FROM counted c "
+            + "  WHERE t.id = c.id AND t.trip_date = c.trip_date AND t.trip_date >= ? AND t.booked_seats <> c.booked "
+            + "  RETURNING t.id, t.route_id, t.trip_date) "
+            + "SELECT bt.id, r.route_id, r.trip_date FROM batch bt LEFT JOIN repaired r ON r.id = bt.id "
+            + "ORDER BY bt.id";
+
+    private static final String ARCHIVE_CHUNK_SQL =
+            "SELECT t.id, t.route_id, t.trip_number, t.trip_date, t.departure_time, t.arrival_time, "
+            + "t.total_seats, t.booked_seats "
+            + "FROM bus_trips t "
+            + "WHERE t.trip_date = ? AND t.id > ? "
+            + "ORDER BY t.id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int adjustBookedSeats(Long tripId, LocalDate tripDate, int delta) {
+        return jdbcTemplate.update(ADJUST_BOOKED_SEATS_SQL, delta, tripId, Date.valueOf(tripDate), delta);
+    }
+
+    @Override
+    public boolean lockTrip(Long tripId, LocalDate tripDate) {
+        List<Boolean> open = jdbcTemplate.queryForList(LOCK_TRIP_SQL, Boolean.class, tripId, Date.valueOf(tripDate));
+        return !open.isEmpty() && open.get(0);
+    }
+
+    @Override
+    public int markCancelled(Long tripId, LocalDate tripDate) {
+        return jdbcTemplate.update(MARK_CANCELLED_SQL, tripId, Date.valueOf(tripDate));
+    }
+
+    @Override
+    public List<Long> markCancelledByRouteAndDate(Long routeId, LocalDate date) {
+        List<Long> tripIds = jdbcTemplate.queryForList(MARK_CANCELLED_BY_ROUTE_AND_DATE_SQL, Long.class,
+                routeId, Date.valueOf(date), Date.valueOf(date));
+        tripIds.sort(null);
+        return tripIds;
+    }
+
+    @Override
+    public ReconcileBatch reconcileBookedSeatsBatch(LocalDate fromDate, long afterId, int limit) {
+        Date from = Date.valueOf(fromDate);
+        List<RepairedTrip> repaired = new ArrayList<>();
+        int[] scanned = new int[1];
+        long[] lastId = { afterId };
+        jdbcTemplate.query(RECONCILE_BATCH_SQL, (RowCallbackHandler) rs -> {
+            scanned[0]++;
+            lastId[0] = rs.getLong(1);
+            long routeId = rs.getLong(2);
+            if (!rs.wasNull()) {
+                repaired.add(new RepairedTrip(lastId[0], routeId, rs.getDate(3).toLocalDate()));
+            }
+        }, from, afterId, limit, from, from);
+        return new ReconcileBatch(scanned[0], lastId[0], repaired);
+    }
+
+    @Override
+    public int insertTripsIfAbsent(List<BusTrip> trips) {
+        if (trips.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(trips.size());
+        long nextId = 0;
+        long lastId = -1;
+        for (BusTrip trip : trips) {
+            if (nextId > lastId) {
+                lastId = jdbcTemplate.queryForObject("SELECT nextval('yeep_id_seq')", Long.class);
+                nextId = lastId - BaseEntity.ID_ALLOCATION_SIZE + 1;
+            }
+            rows.add(new Object[] {
+                    nextId++,
+                    trip.getRoute().getId(),
+                    trip.getTripNumber(),
+                    Time.valueOf(trip.getDepartureTime()),
+                    trip.getArrivalTime() != null ? Time.valueOf(trip.getArrivalTime()) : null,
+                    Date.valueOf(trip.getTripDate()),
+                    trip.getTotalSeats(),
+                    now,
+                    now
+            });
+        }
+
+        int inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(INSERT_SQL, rows)) {
+            inserted += Math.max(count, 0);
+        }
+        return inserted;
+    }
+
+    @Override
+    public TimetableSync updateTripTimes(List<BusTrip> trips, LocalDate from, LocalDate through) {
+        Map<String, LocalTime[]> stored = new HashMap<>();
+        jdbcTemplate.query(TRIP_TIMES_SQL, (RowCallbackHandler) rs -> stored.put(
+                tripKey(rs.getLong(1), rs.getDate(2).toLocalDate(), rs.getInt(3)),
+                new LocalTime[] { rs.getObject(4, LocalTime.class), rs.getObject(5, LocalTime.class) }),
+                Date.valueOf(from), Date.valueOf(through));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (BusTrip trip : trips) {
+            LocalTime[] times = stored.get(tripKey(trip.getRoute().getId(), trip.getTripDate(), trip.getTripNumber()));
+            if (times == null || (trip.getDepartureTime().equals(times[0])
+                    && Objects.equals(trip.getArrivalTime(), times[1]))) {
+                continue;
+            }
+            rows.add(new Object[] {
+                    Time.valueOf(trip.getDepartureTime()),
+                    trip.getArrivalTime() != null ? Time.valueOf(trip.getArrivalTime()) : null,
+                    now,
+                    trip.getRoute().getId(),
+                    Date.valueOf(trip.getTripDate()),
+                    trip.getTripNumber(),
+                    Date.valueOf(trip.getTripDate())
+            });
+        }
+        if (rows.isEmpty()) {
+            return new TimetableSync(0, 0);
+        }
+
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPDATE_TRIP_TIMES_SQL, rows)) {
+            updated += Math.max(count, 0);
+        }
+        return new TimetableSync(updated, rows.size() - updated);
+    }
+
+    @Override
+    public List<ArchiveRow> findArchiveChunkOn(LocalDate tripDate, long afterId, int limit) {
+        return jdbcTemplate.query(ARCHIVE_CHUNK_SQL, ArchiveRows.mapper(ARCHIVE_COLUMNS.length, 4, 2),
+                Date.valueOf(tripDate), afterId, limit);
+    }
+
+    private static String tripKey(long routeId, LocalDate tripDate, int tripNumber) {
+        return routeId + ":" + tripDate + ":" + tripNumber;
+    }
+}
@@ -0,0 +1,34 @@
+package com.yeep.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.yeep.entity.BusTrip;
+import com.yeep.entity.User;
+import com.yeep.entity.WaitlistEntry;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    // คิวที่ยังรออยู่ทั้งหมด [entry id, trip id] เรียงตามลำดับคิว (ใช้สร้างคิวในหน่วยความจำตอนเริ่มระบบ)
+    @Query("SELECT w.id, w.trip.id FROM WaitlistEntry w WHERE w.status = 'waiting' ORDER BY w.id")
+    List<Object[]> findWaitingQueue();
+
+    // หารายการคิวรอพร้อมผู้ใช้ (ตรวจเจ้าของรายการได้นอก transaction)
+    @EntityGraph(attributePaths = "user")
+    Optional<WaitlistEntry> findWithUserById(Long id);
+
+    // ตรวจสอบว่าผู้ใช้อยู่ในคิวของเที่ยวรถนี้แล้วหรือยัง
+    boolean existsByTripAndUserAndStatus(BusTrip trip, User user, String status);
+
+    // เปลี่ยนสถานะของทุกคนที่ยังรออยู่ในคิวของเที่ยวรถ (ใช้เมื่อเที่ยวรถถูกยกเลิก)
+    @Modifying
+    @Query("UPDATE WaitlistEntry w SET w.status = :status WHERE w.trip.id = :tripId AND w.status = 'waiting'")
+    int updateWaitingStatusByTripId(Long tripId, String status);
+}
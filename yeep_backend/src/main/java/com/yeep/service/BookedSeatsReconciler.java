@@ -0,0 +1,74 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.repository.BusTripRepository;
+import com.yeep.repository.BusTripRepositoryCustom.ReconcileBatch;
+import com.yeep.repository.BusTripRepositoryCustom.RepairedTrip;
+
+/**
+ * BookedSeatsReconciler - ซ่อม BusTrip.bookedSeats ให้ตรงกับตาราง bookings เป็นระยะ
+ *
+ * ปกติจำนวนที่นั่งถูกปรับใน transaction เดียวกับการจอง/ยกเลิก แต่ถ้ามีการแก้ข้อมูลจากนอกระบบ
+ * (เช่นแก้ตรงใน Database) จำนวนอาจเพี้ยนได้ งานนี้นับใหม่เฉพาะเที่ยวรถตั้งแต่วันนี้เป็นต้นไป
+ *
+ * ทำทีละชุด (app.booking.reconcile-batch-size เที่ยว) ชุดละหนึ่ง transaction เรียงตาม id
+ * ล็อกเที่ยวรถของชุดก่อนนับ: การจองที่ยังไม่ commit จะรอ lock แล้วบวกจำนวนต่อจากค่าที่ซ่อมแล้ว
+ * จึงไม่ถูกนับซ้ำหรือหายไป เที่ยวที่ถูกล็อกโดยการจองอยู่แล้วจะถูกข้าม (SKIP LOCKED) และซ่อมในรอบถัดไป
+ * เที่ยวรถที่ถูกแก้ส่ง AvailabilityChangedEvent (ล้างรายการที่นั่งว่างใน TripAvailabilityCache)
+ */
+@Service
+public class BookedSeatsReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(BookedSeatsReconciler.class);
+
+    @Autowired
+    private BusTripRepository busTripRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.booking.reconcile-batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${app.booking.reconcile-interval-ms:300000}",
+            fixedDelayString = "${app.booking.reconcile-interval-ms:300000}")
+    public int reconcile() {
+        LocalDate today = LocalDate.now();
+        long afterId = 0;
+        int repaired = 0;
+        while (true) {
+            long from = afterId;
+            ReconcileBatch batch = transactionTemplate.execute(status -> {
+                ReconcileBatch result = busTripRepository.reconcileBookedSeatsBatch(today, from, batchSize);
+                for (RepairedTrip trip : result.repaired()) {
+                    eventPublisher.publishEvent(
+                            new AvailabilityChangedEvent(trip.id(), trip.routeId(), trip.tripDate()));
+                }
+                return result;
+            });
+            if (batch == null || batch.scanned() == 0) {
+                break;
+            }
+            repaired += batch.repaired().size();
+            afterId = batch.lastId();
+        }
+        if (repaired > 0) {
+            log.info("Repaired booked seat count of {} trip(s)", repaired);
+        }
+        return repaired;
+    }
+}
@@ -0,0 +1,48 @@
+package com.yeep.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.yeep.repository.BookingRepository;
+
+/**
+ * BookingCodeGenerator - สร้าง booking code แบบจองเป็นช่วง (block allocation)
+ *
+ * แต่ละ node ดึงช่วงเลขจาก sequence booking_code_seq ครั้งละ BLOCK_SIZE เลข
+ * แล้วแจก code จากหน่วยความจำ ทำให้การจองปกติไม่ต้อง query เลย
+ * และ node ต่างกันไม่มีทางได้ code ซ้ำกัน
+ *
+ * รูปแบบ code: P0001, P0002, ... P9999, P10000, ... (ขยายหลักได้เรื่อยๆ)
+ */
+@Service
+public class BookingCodeGenerator {
+
+    /** จำนวน code ต่อหนึ่งช่วง (ต้องตรงกับ INCREMENT BY ของ booking_code_seq ใน schema.sql) */
+    public static final int BLOCK_SIZE = 100;
+
+    private static final String BOOKING_CODE_PREFIX = "P";
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private long next = 1;
+    private long last = 0; // next > last หมายถึงยังไม่มีช่วงที่ใช้ได้
+
+    /**
+     * ดึง booking code ถัดไป
+     */
+    public synchronized String nextCode() {
+        if (next > last) {
+            last = bookingRepository.nextBookingCodeBlock();
+            next = last - BLOCK_SIZE + 1;
+        }
+        return format(next++);
+    }
+
+    /**
+     * แปลงเลขเป็น booking code
+     */
+    public static String format(long number) {
+        return String.format("%s%04d", BOOKING_CODE_PREFIX, number);
+    }
+}
@@ -0,0 +1,330 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.yeep.entity.Booking;
+import com.yeep.event.SeatsReleasedEvent;
+import com.yeep.repository.BookingRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * BookingSequencer - ส่งคำสั่งจอง/ยกเลิกของแต่ละเที่ยวรถเข้าคิวของเที่ยวรถนั้น
+ *
+ * แต่ละเที่ยวรถมีคิวในหน่วยความจำและมี worker ทำงานได้ทีละตัว (single writer)
+ * worker ดึงคำสั่งจากคิวครั้งละไม่เกิน batch-size คำสั่ง ตัดสินเรื่องที่นั่งโดยไม่ต้องใช้ lock
+ * แล้ว commit ทั้ง batch ใน transaction เดียว ทำให้เที่ยวรถยอดนิยมไม่ต้องแย่ง row/connection กัน
+ *
+ * เมื่อที่นั่งว่างลง (SeatsReleasedEvent) และมีคนในคิวรอ จะส่งคำสั่งให้ที่นั่งกับคิวรอเข้าคิวเดียวกัน
+ *
+ * lane ของเที่ยวรถถูกลบออกจาก lanes เมื่อไม่มีคำสั่งค้าง (สร้างใหม่เมื่อมีคำสั่งเข้ามา)
+ * lane ที่ถูกลบแล้วไม่รับคำสั่งอีก ผู้ส่งจะสร้าง lane ใหม่แทน จึงไม่มีสอง worker ทำงานกับเที่ยวรถเดียวกัน
+ */
+@Service
+public class BookingSequencer {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private TripDateIndex tripDateIndex;
+
+    @Value("${app.booking.sequencer.batch-size:32}")
+    private int batchSize;
+
+    @Value("${app.booking.sequencer.threads:4}")
+    private int threads;
+
+    private final ConcurrentHashMap<Long, TripLane> lanes = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "booking-sequencer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * ส่งคำสั่งจองที่นั่งเข้าคิวของเที่ยวรถ
+     */
+    public CompletableFuture<List<Booking>> submitBooking(Long tripId, String username, List<String> seatNumbers) {
+        TripCommand command = TripCommand.book(username, seatNumbers);
+        enqueue(tripId, command);
+        return command.bookingsFuture;
+    }
+
+    /**
+     * ส่งคำสั่งยกเลิกการจองเข้าคิวของเที่ยวรถที่การจองนั้นอยู่
+     *
+     * @param tripDate วันที่ของเที่ยวรถ (อ่านเฉพาะ partition ของวันนั้น) null = ค้นทุก partition
+     */
+    public CompletableFuture<Booking> submitCancel(Long bookingId, LocalDate tripDate, String username)
+            throws Exception {
+        Optional<Long> found = tripDate != null
+                ? bookingRepository.findTripIdById(bookingId, tripDate)
+                : bookingRepository.findTripIdById(bookingId);
+        Long tripId = found.orElseThrow(() -> new Exception("ไม่พบการจอง"));
+        TripCommand command = TripCommand.cancel(bookingId, username);
+        enqueue(tripId, command);
+        return command.cancelFuture;
+    }
+
+    /**
+     * ที่นั่งว่างลง (ยกเลิกการจอง, hold หมดอายุ) ให้คนในคิวรอได้ที่นั่งนั้น
+     * เที่ยวรถที่ถูกยกเลิกทั้งเที่ยวไม่มีคิวรอแล้ว และ BookingService ไม่ส่งที่นั่งให้คิวรอของเที่ยวที่ถูกยกเลิก
+     * ทำใน worker ของเที่ยวรถ ไม่ทำใน thread ที่คืนที่นั่ง (เช่น thread ของ HashedTimingWheel)
+     */
+    @EventListener
+    public void onSeatsReleased(SeatsReleasedEvent event) {
+        if (waitlistService.hasWaiting(event.getTripId())) {
+            enqueue(event.getTripId(), TripCommand.promote());
+        }
+    }
+
+    /**
+     * ลบ lane ที่ไม่มีคำสั่งค้างของเที่ยวรถที่วันที่ก่อน cutoff (ใช้ก่อนลบ partition ของวันนั้น)
+     * lane ที่ยังทำงานอยู่จะถูกลบเองเมื่อทำคำสั่งหมด
+     */
+    public void retireLanesBefore(LocalDate cutoff) {
+        for (TripLane lane : lanes.values()) {
+            if (tripDateIndex.dateOf(lane.tripId).map(date -> date.isBefore(cutoff)).orElse(true)) {
+                lane.retireIfIdle();
+            }
+        }
+    }
+
+    /**
+     * จำนวน lane ที่มีอยู่
+     */
+    public int laneCount() {
+        return lanes.size();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private void enqueue(Long tripId, TripCommand command) {
+        TripLane lane;
+        do {
+            lane = lanes.computeIfAbsent(tripId, TripLane::new);
+        } while (!lane.offer(command));
+        lane.schedule();
+    }
+
+    // คิวของเที่ยวรถหนึ่งเที่ยว
+    private class TripLane {
+        private final Long tripId;
+        private final ConcurrentLinkedQueue<TripCommand> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // คำสั่งที่ค้างจาก batch ก่อน (ใช้เฉพาะ worker ที่ถือ lane อยู่)
+        private List<TripCommand> carryOver = new ArrayList<>();
+        // ถูกลบออกจาก lanes แล้ว (อ่าน/เขียนภายใต้ lock ของ lane)
+        private boolean retired;
+
+        TripLane(Long tripId) {
+            this.tripId = tripId;
+        }
+
+        /**
+         * รับคำสั่งเข้าคิว (false = lane ถูกลบไปแล้ว ต้องส่งเข้า lane ใหม่)
+         */
+        synchronized boolean offer(TripCommand command) {
+            if (retired) {
+                return false;
+            }
+            inbox.add(command);
+            return true;
+        }
+
+        /**
+         * ลบ lane ออกจาก lanes ถ้าไม่มีคำสั่งค้างและไม่มี worker ทำงานอยู่
+         * ตรวจซ้ำภายใต้ lock เดียวกับ offer จึงไม่มีคำสั่งที่เข้ามาหลังตรวจแล้วตกค้างใน lane ที่ถูกลบ
+         */
+        synchronized void retireIfIdle() {
+            if (!retired && !scheduled.get() && inbox.isEmpty() && carryOver.isEmpty()) {
+                retired = true;
+                lanes.remove(tripId, this);
+            }
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            List<TripCommand> batch = new ArrayList<>(carryOver);
+            carryOver = new ArrayList<>();
+            TripCommand command;
+            while (batch.size() < batchSize && (command = inbox.poll()) != null) {
+                batch.add(command);
+            }
+
+            if (!batch.isEmpty()) {
+                processBatch(batch);
+            }
+
+            // ปล่อย lane แล้วตรวจอีกครั้งว่ามีคำสั่งใหม่เข้ามาระหว่างนั้นหรือไม่
+            scheduled.set(false);
+            if (!carryOver.isEmpty() || !inbox.isEmpty()) {
+                schedule();
+            } else {
+                retireIfIdle();
+            }
+        }
+
+        private void processBatch(List<TripCommand> batch) {
+            int processed;
+            try {
+                processed = bookingService.applyBatch(tripId, batch);
+            } catch (Exception e) {
+                // ทั้ง batch ถูก rollback (เช่นชน constraint จาก node อื่น) ให้ทำทีละคำสั่งแทน
+                batch.forEach(this::applySingle);
+                return;
+            }
+
+            for (int i = 0; i < processed; i++) {
+                batch.get(i).complete();
+            }
+            carryOver = new ArrayList<>(batch.subList(processed, batch.size()));
+        }
+
+        private void applySingle(TripCommand command) {
+            try {
+                if (command.isCancel()) {
+                    command.cancelFuture.complete(bookingService.cancelBooking(tripId, command.bookingId, command.username));
+                } else if (command.isPromote()) {
+                    command.bookingsFuture.complete(bookingService.promoteWaitlist(tripId));
+                } else {
+                    command.bookingsFuture.complete(
+                            bookingService.createMultipleBookings(tripId, command.username, command.seatNumbers));
+                }
+            } catch (Exception e) {
+                command.fail(e);
+            }
+        }
+    }
+
+    // ==================== COMMAND ====================
+
+    /**
+     * คำสั่งจอง ยกเลิก หรือให้ที่นั่งว่างกับคิวรอ ของเที่ยวรถหนึ่งเที่ยว
+     * ผลลัพธ์ถูกเก็บไว้ระหว่าง transaction และส่งให้ผู้เรียกหลังจาก commit แล้วเท่านั้น
+     */
+    public static class TripCommand {
+        private final String username;
+        private final List<String> seatNumbers;
+        private final Long bookingId;
+        private final boolean promote;
+        private final CompletableFuture<List<Booking>> bookingsFuture;
+        private final CompletableFuture<Booking> cancelFuture;
+
+        private List<Booking> bookings;
+        private Booking cancelledBooking;
+        private Exception error;
+
+        private TripCommand(String username, List<String> seatNumbers, Long bookingId, boolean promote) {
+            this.username = username;
+            this.seatNumbers = seatNumbers;
+            this.bookingId = bookingId;
+            this.promote = promote;
+            this.bookingsFuture = bookingId == null ? new CompletableFuture<>() : null;
+            this.cancelFuture = bookingId != null ? new CompletableFuture<>() : null;
+        }
+
+        static TripCommand book(String username, List<String> seatNumbers) {
+            return new TripCommand(username, seatNumbers, null, false);
+        }
+
+        static TripCommand cancel(Long bookingId, String username) {
+            return new TripCommand(username, null, bookingId, false);
+        }
+
+        static TripCommand promote() {
+            return new TripCommand(null, null, null, true);
+        }
+
+        public boolean isCancel() {
+            return bookingId != null;
+        }
+
+        public boolean isPromote() {
+            return promote;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public List<String> getSeatNumbers() {
+            return seatNumbers;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        void setBookings(List<Booking> bookings) {
+            this.bookings = bookings;
+        }
+
+        void setCancelledBooking(Booking cancelledBooking) {
+            this.cancelledBooking = cancelledBooking;
+        }
+
+        void setError(Exception error) {
+            this.error = error;
+        }
+
+        private void complete() {
+            if (error != null) {
+                fail(error);
+            } else if (isCancel()) {
+                cancelFuture.complete(cancelledBooking);
+            } else {
+                bookingsFuture.complete(bookings);
+            }
+        }
+
+        private void fail(Exception e) {
+            if (isCancel()) {
+                cancelFuture.completeExceptionally(e);
+            } else {
+                bookingsFuture.completeExceptionally(e);
+            }
+        }
+    }
+}
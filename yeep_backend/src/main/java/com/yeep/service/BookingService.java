@@ -1,23 +1,41 @@
 package com.yeep.service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.yeep.entity.Booking;
+import com.yeep.entity.BusRoute;
 import com.yeep.entity.BusTrip;
 import com.yeep.entity.User;
+import com.yeep.entity.WaitlistEntry;
+import com.yeep.event.AvailabilityChangedEvent;
 import com.yeep.repository.BookingRepository;
+import com.yeep.repository.BookingRepositoryCustom.HistoryOrder;
+import com.yeep.repository.BookingRow;
 import com.yeep.repository.BusTripRepository;
 import com.yeep.repository.UserRepository;
+import com.yeep.service.BookingSequencer.TripCommand;
+import com.yeep.service.SeatHoldService.SeatHold;
+import com.yeep.util.SeatLayout;
 
 /**
  * BookingService - ใช้หลักการ Data Sorting
@@ -30,7 +48,10 @@ public class BookingService {
 
     private static final String STATUS_CONFIRMED = "confirmed";
     private static final String STATUS_CANCELLED = "cancelled";
-    private static final String BOOKING_CODE_PREFIX = "P";
+    private static final String SEAT_UNIQUE_INDEX = "uk_bookings_trip_seat_confirmed";
+    // PostgreSQL: Key (trip_id, trip_date, seat_number)=(12, 2025-01-15, 3A) already exists.
+    private static final Pattern SEAT_CONFLICT_PATTERN = Pattern.compile(
+            "\\(trip_id, trip_date, seat_number\\)=\\(\\d+, [^,]+, ([^)]+)\\)");
 
     // ==================== SORTING CONSTANTS ====================
     public static final String SORT_BY_DATE = "date";
@@ -49,76 +70,327 @@ public class BookingService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private BusTripService busTripService;
+
+    @Autowired
+    private TripDateIndex tripDateIndex;
+
+    @Autowired
+    private BookingCodeGenerator bookingCodeGenerator;
+
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // ==================== PUBLIC METHODS ====================
 
     /**
      * จองที่นั่งเดียว
      */
-    @Transactional
+    @Transactional(rollbackFor = Exception.class)
     public Booking createBooking(Long tripId, String username, String seatNumber) throws Exception {
-        BusTrip trip = findTripOrThrow(tripId);
+        BusTrip trip = findOpenTripOrThrow(tripId);
         User user = findUserOrThrow(username);
-        validateSeatAvailable(trip, seatNumber);
+        reserveSeats(trip, List.of(seatNumber));
 
-        return saveBooking(trip, user, seatNumber);
+        return saveBookings(trip, user, List.of(seatNumber)).get(0);
     }
 
     /**
      * จองหลายที่นั่งพร้อมกัน
      */
-    @Transactional
+    @Transactional(rollbackFor = Exception.class)
     public List<Booking> createMultipleBookings(Long tripId, String username, List<String> seatNumbers)
             throws Exception {
-        BusTrip trip = findTripOrThrow(tripId);
+        BusTrip trip = findOpenTripOrThrow(tripId);
         User user = findUserOrThrow(username);
 
-        // ตรวจสอบที่นั่งทั้งหมดก่อน
-        for (String seatNumber : seatNumbers) {
-            validateSeatAvailable(trip, seatNumber);
-        }
+        // จองที่นั่งทั้งหมดใน SeatInventory ก่อน (ทั้งหมดหรือไม่ได้เลย)
+        reserveSeats(trip, seatNumbers);
 
-        // สร้างการจองทั้งหมด
-        List<Booking> bookings = new ArrayList<>();
-        for (String seatNumber : seatNumbers) {
-            bookings.add(saveBooking(trip, user, seatNumber));
+        // สร้างการจองทั้งหมดใน JDBC batch เดียว
+        return saveBookings(trip, user, seatNumbers);
+    }
+
+    // ==================== SEAT HOLD METHODS ====================
+
+    /**
+     * กันที่นั่งไว้ชั่วคราวระหว่างเลือกที่นั่ง (หมดอายุอัตโนมัติ)
+     */
+    public SeatHold holdSeats(Long tripId, String username, List<String> seatNumbers) throws Exception {
+        BusTrip trip = findOpenTripOrThrow(tripId);
+        findUserOrThrow(username);
+        return seatHoldService.hold(trip, username, seatNumbers);
+    }
+
+    /**
+     * ยืนยันการจองจากที่นั่งที่กันไว้
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<Booking> confirmHold(String holdId, String username) throws Exception {
+        SeatHold hold = seatHoldService.take(holdId, username);
+        try {
+            BusTrip trip = findOpenTripOrThrow(hold.getTripId());
+            User user = findUserOrThrow(username);
+            seatInventory.confirmHold(trip.getId(), hold.getSeatMask());
+            return saveBookings(trip, user, hold.getSeatNumbers());
+        } catch (Exception e) {
+            seatInventory.releaseHold(hold.getTripId(), hold.getSeatMask());
+            seatHoldService.publishChanged(hold);
+            throw e;
         }
+    }
 
-        return bookings;
+    /**
+     * ยกเลิกที่นั่งที่กันไว้
+     */
+    public SeatHold releaseHold(String holdId, String username) throws Exception {
+        return seatHoldService.release(holdId, username);
     }
 
     /**
      * ยกเลิกการจอง
      */
-    @Transactional
-    public Booking cancelBooking(Long bookingId, String username) throws Exception {
-        Booking booking = bookingRepository.findById(bookingId)
+    @Transactional(rollbackFor = Exception.class)
+    public Booking cancelBooking(Long tripId, Long bookingId, String username) throws Exception {
+        LocalDate tripDate = tripDateIndex.dateOf(tripId)
+                .orElseThrow(() -> new Exception("ไม่พบการจอง"));
+        Booking booking = bookingRepository.findWithTripAndUserById(bookingId, tripDate)
                 .orElseThrow(() -> new Exception("ไม่พบการจอง"));
 
-        validateBookingOwner(booking, username);
-        validateBookingNotCancelled(booking);
+        boolean open = busTripRepository.lockTrip(booking.getTrip().getId(), tripDate);
+        if (applyCancel(booking, username, open)) {
+            busTripRepository.adjustBookedSeats(booking.getTrip().getId(), tripDate, -1);
+        }
+        return booking;
+    }
 
-        booking.setStatus(STATUS_CANCELLED);
-        booking.setCancelledAt(LocalDateTime.now());
+    // ==================== BULK CANCEL METHODS (OPERATOR) ====================
+
+    /**
+     * ยกเลิกเที่ยวรถ (เช่นรถเสีย) และการจองทั้งหมดของเที่ยวรถด้วย UPDATE เดียว ไม่โหลดการจองทีละรายการ
+     *
+     * เที่ยวรถถูกปิดก่อน (ล็อกแถวเที่ยวรถ) หลังจากนั้นไม่รับการจอง การกันที่นั่ง และการเข้าคิวรอ
+     * คนในคิวรอได้สถานะ trip_cancelled แทนการได้ที่นั่ง
+     *
+     * @return booking code ที่ถูกยกเลิก (commit แล้วเมื่อ method คืนค่า)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<String> cancelAllForTrip(Long tripId) throws Exception {
+        BusTrip trip = findTripOrThrow(tripId);
+        busTripRepository.markCancelled(tripId, trip.getTripDate());
+        waitlistService.cancelAllForTrip(tripId);
+
+        List<String> bookingCodes = new ArrayList<>();
+        int[] freedMask = new int[1];
+        int count = bookingRepository.cancelConfirmedByTrip(tripId, trip.getTripDate(), cancelled -> {
+            bookingCodes.add(cancelled.bookingCode());
+            freedMask[0] |= seatBit(cancelled.seatNumber());
+        });
+        releaseCancelledSeats(tripId, trip.getRoute().getId(), trip.getTripDate(), count, freedMask[0]);
+        return bookingCodes;
+    }
+
+    /**
+     * ยกเลิกทุกเที่ยวของสายรถในวันที่กำหนด และการจองทั้งหมดของเที่ยวเหล่านั้นด้วย UPDATE เดียว
+     * ล็อกเที่ยวรถเรียงตาม id ก่อน (ลำดับเดียวกับ BookedSeatsReconciler จึงไม่ deadlock กัน)
+     *
+     * @return booking code ที่ถูกยกเลิก (commit แล้วเมื่อ method คืนค่า)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<String> cancelAllForRouteAndDate(Long routeId, LocalDate date) {
+        List<Long> tripIds = busTripRepository.markCancelledByRouteAndDate(routeId, date);
+        tripIds.forEach(waitlistService::cancelAllForTrip);
+
+        // [จำนวนการจองที่ถูกยกเลิก, ที่นั่งที่ว่างลง] ของแต่ละเที่ยว
+        List<String> bookingCodes = new ArrayList<>();
+        Map<Long, int[]> cancelledPerTrip = new HashMap<>();
+        bookingRepository.cancelConfirmedByRouteAndDate(routeId, date, cancelled -> {
+            int[] seats = cancelledPerTrip.computeIfAbsent(cancelled.tripId(), id -> new int[2]);
+            seats[0]++;
+            seats[1] |= seatBit(cancelled.seatNumber());
+            bookingCodes.add(cancelled.bookingCode());
+        });
+        for (Long tripId : tripIds) {
+            int[] seats = cancelledPerTrip.getOrDefault(tripId, new int[2]);
+            releaseCancelledSeats(tripId, routeId, date, seats[0], seats[1]);
+        }
+        return bookingCodes;
+    }
 
-        return bookingRepository.save(booking);
+    // ==================== BATCH METHODS (BookingSequencer) ====================
+
+    /**
+     * ทำคำสั่งจอง/ยกเลิกของเที่ยวรถเดียวกันทั้ง batch ใน transaction เดียว
+     * เรียกจาก worker ของ BookingSequencer เท่านั้น (หนึ่ง worker ต่อเที่ยวรถ จึงไม่มีการแย่งที่นั่งกันเอง)
+     * ล็อกแถวเที่ยวรถตลอด batch ถ้าเที่ยวรถถูกยกเลิกแล้ว คำสั่งจองจะได้ error และไม่ส่งที่นั่งให้คิวรอ
+     *
+     * คำสั่งที่ไม่ผ่านการตรวจสอบจะถูกบันทึก error ไว้ในคำสั่ง ไม่ทำให้ทั้ง batch ล้ม
+     * ถ้าคำสั่งจองต้องใช้ที่นั่งที่เพิ่งถูกยกเลิกใน batch เดียวกัน จะหยุด batch ไว้ก่อนคำสั่งนั้น
+     * (ที่นั่งจะว่างจริงหลัง commit) แล้วให้ batch ถัดไปทำต่อ
+     *
+     * @return จำนวนคำสั่งที่ทำแล้ว (นับจากต้น batch)
+     * @throws Exception ถ้าบันทึกไม่สำเร็จ ทั้ง batch จะถูก rollback
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int applyBatch(Long tripId, List<TripCommand> batch) throws Exception {
+        BusTrip trip = findTripOrThrow(tripId);
+        boolean open = busTripRepository.lockTrip(tripId, trip.getTripDate());
+
+        // โหลดผู้ใช้และการจองที่ต้องยกเลิกทั้งหมดด้วย query เดียวต่อประเภท
+        Set<String> usernames = new HashSet<>();
+        List<Long> cancelIds = new ArrayList<>();
+        for (TripCommand command : batch) {
+            if (command.getUsername() != null) {
+                usernames.add(command.getUsername());
+            }
+            if (command.isCancel()) {
+                cancelIds.add(command.getBookingId());
+            }
+        }
+        Map<String, User> users = new HashMap<>();
+        for (User user : userRepository.findByUsernameIn(usernames)) {
+            users.put(user.getUsername(), user);
+        }
+        Map<Long, Booking> cancelTargets = new HashMap<>();
+        for (Booking booking : bookingRepository.findAllByIdAndTripDate(cancelIds, trip.getTripDate())) {
+            cancelTargets.put(booking.getId(), booking);
+        }
+
+        List<Booking> newBookings = new ArrayList<>();
+        int freedMask = 0;
+        int freedCount = 0;
+        int processed = 0;
+        for (TripCommand command : batch) {
+            try {
+                if (command.isCancel()) {
+                    Booking booking = cancelTargets.get(command.getBookingId());
+                    if (booking == null) {
+                        throw new Exception("ไม่พบการจอง");
+                    }
+                    if (applyCancel(booking, command.getUsername(), open)) {
+                        freedMask |= 1 << SeatLayout.indexOf(booking.getSeatNumber());
+                        freedCount++;
+                    }
+                    command.setCancelledBooking(booking);
+                } else if (command.isPromote()) {
+                    List<Booking> promoted = open ? promoteWaiting(trip) : List.of();
+                    command.setBookings(promoted);
+                    newBookings.addAll(promoted);
+                } else if (!open) {
+                    throw new Exception("เที่ยวรถนี้ถูกยกเลิกแล้ว");
+                } else {
+                    int mask = SeatInventory.toMask(command.getSeatNumbers());
+                    if ((mask & freedMask) != 0) {
+                        break;
+                    }
+                    User user = users.get(command.getUsername());
+                    if (user == null) {
+                        throw new Exception("ไม่พบผู้ใช้");
+                    }
+                    seatInventory.reserve(trip.getId(), mask);
+                    List<Booking> bookings = new ArrayList<>();
+                    for (String seatNumber : command.getSeatNumbers()) {
+                        bookings.add(newBooking(trip, user, seatNumber));
+                    }
+                    command.setBookings(bookings);
+                    newBookings.addAll(bookings);
+                }
+            } catch (Exception e) {
+                command.setError(e);
+            }
+            processed++;
+        }
+
+        bookingRepository.saveAllAndFlush(newBookings);
+
+        // ปรับจำนวนที่นั่งของเที่ยวรถครั้งเดียวต่อ batch
+        int delta = newBookings.size() - freedCount;
+        if (delta != 0) {
+            busTripRepository.adjustBookedSeats(trip.getId(), trip.getTripDate(), delta);
+        }
+        if (!newBookings.isEmpty()) {
+            publishChanged(trip);
+        }
+        return processed;
     }
 
     /**
-     * ดึงการจองที่ยืนยันแล้วของ user
+     * ให้ที่นั่งว่างของเที่ยวรถกับคนในคิวรอตามลำดับ (ใช้เมื่อ applyBatch ทั้ง batch ล้ม)
      */
-    public List<Booking> getUserBookings(String username) {
-        return findUserByUsername(username)
-                .map(user -> bookingRepository.findByUserAndStatusOrderByBookedAtDesc(user, STATUS_CONFIRMED))
-                .orElse(List.of());
+    @Transactional(rollbackFor = Exception.class)
+    public List<Booking> promoteWaitlist(Long tripId) throws Exception {
+        BusTrip trip = findTripOrThrow(tripId);
+        if (!busTripRepository.lockTrip(tripId, trip.getTripDate())) {
+            return List.of();
+        }
+        List<Booking> promoted = promoteWaiting(trip);
+        if (!promoted.isEmpty()) {
+            bookingRepository.saveAllAndFlush(promoted);
+            busTripRepository.adjustBookedSeats(trip.getId(), trip.getTripDate(), promoted.size());
+            publishChanged(trip);
+        }
+        return promoted;
     }
 
     /**
-     * ดึงประวัติการจองทั้งหมดของ user
+     * ดึงการจองที่ยืนยันแล้วของ user (พร้อมข้อมูลเที่ยวรถ อ่านด้วย query เดียว)
      */
-    public List<Booking> getUserBookingHistory(String username) {
-        return findUserByUsername(username)
-                .map(bookingRepository::findByUserOrderByBookedAtDesc)
-                .orElse(List.of());
+    public List<BookingRow> getUserBookings(String username) {
+        return bookingRepository.findRowsByUsernameAndStatus(username, STATUS_CONFIRMED);
+    }
+
+    /**
+     * ดึงประวัติการจองทั้งหมดของ user (พร้อมข้อมูลเที่ยวรถ อ่านด้วย query เดียว)
+     */
+    public List<BookingRow> getUserBookingHistory(String username) {
+        return bookingRepository.findRowsByUsername(username);
+    }
+
+    // ==================== HISTORY PAGING METHODS ====================
+
+    /**
+     * ประวัติการจองของ user ทีละหน้า เรียงใน Database (date, status, route, seat) ด้วย keyset pagination
+     *
+     * แต่ละหน้าอ่านต่อจากแถวสุดท้ายของหน้าก่อนผ่าน index ของแบบการเรียงนั้น (ไม่ใช้ OFFSET)
+     * เวลาต่อหน้าจึงเท่ากันไม่ว่าผู้ใช้จะมีประวัติยาวแค่ไหน
+     *
+     * @param cursor nextCursor ของหน้าก่อน (null = หน้าแรก) ต้องใช้กับ sortBy และ order เดิม
+     */
+    public BookingPage getUserBookingHistoryPage(String username, String sortBy, String order, String cursor,
+            int limit) throws Exception {
+        User user = findUserOrThrow(username);
+        HistoryOrder historyOrder = toHistoryOrder(sortBy);
+        boolean descending = ORDER_DESC.equalsIgnoreCase(order);
+        HistoryCursor after = cursor == null || cursor.isBlank() ? null
+                : HistoryCursor.decode(cursor, historyOrder, descending);
+
+        // อ่านเกินหนึ่งแถวเพื่อรู้ว่ามีหน้าถัดไปหรือไม่
+        List<BookingRow> rows;
+        if (historyOrder == HistoryOrder.ROUTE) {
+            rows = findRouteHistoryPage(user.getId(), descending, after, limit + 1);
+        } else {
+            rows = bookingRepository.findHistoryPage(user.getId(), historyOrder, descending,
+                    after != null ? after.sortValue() : null, after != null ? after.id() : null, limit + 1);
+        }
+
+        if (rows.size() <= limit) {
+            return new BookingPage(rows, null);
+        }
+        rows = rows.subList(0, limit);
+        return new BookingPage(rows, HistoryCursor.after(rows.get(limit - 1), historyOrder, descending).encode());
     }
 
     // ==================== DATA SORTING METHODS ====================
@@ -131,8 +403,8 @@ public class BookingService {
      * @param order    ลำดับ: asc หรือ desc
      * @return รายการจองที่เรียงลำดับแล้ว
      */
-    public List<Booking> getUserBookingsSorted(String username, String sortBy, String order) {
-        List<Booking> bookings = getUserBookingHistory(username);
+    public List<BookingRow> getUserBookingsSorted(String username, String sortBy, String order) {
+        List<BookingRow> bookings = getUserBookingHistory(username);
         return sortBookings(bookings, sortBy, order);
     }
 
@@ -147,14 +419,14 @@ public class BookingService {
      * Time Complexity: O(n²)
      * Space Complexity: O(1)
      */
-    public List<Booking> sortBookings(List<Booking> bookings, String sortBy, String order) {
+    public List<BookingRow> sortBookings(List<BookingRow> bookings, String sortBy, String order) {
         if (bookings == null || bookings.size() <= 1) {
             return bookings;
         }
 
         // สร้าง copy เพื่อไม่แก้ไข list ต้นฉบับ
-        List<Booking> result = new ArrayList<>(bookings);
-        Comparator<Booking> comparator = getComparator(sortBy);
+        List<BookingRow> result = new ArrayList<>(bookings);
+        Comparator<BookingRow> comparator = getComparator(sortBy);
 
         // กลับลำดับถ้าเป็น DESC
         if (ORDER_DESC.equalsIgnoreCase(order)) {
@@ -176,7 +448,7 @@ public class BookingService {
 
             // สลับค่า (Swap)
             if (minIndex != i) {
-                Booking temp = result.get(i);
+                BookingRow temp = result.get(i);
                 result.set(i, result.get(minIndex));
                 result.set(minIndex, temp);
             }
@@ -188,17 +460,17 @@ public class BookingService {
     /**
      * สร้าง Comparator ตามฟิลด์ที่ระบุ
      */
-    private Comparator<Booking> getComparator(String sortBy) {
+    private Comparator<BookingRow> getComparator(String sortBy) {
         switch (sortBy != null ? sortBy.toLowerCase() : SORT_BY_DATE) {
             case SORT_BY_STATUS:
-                return Comparator.comparing(Booking::getStatus);
+                return Comparator.comparing(BookingRow::status);
             case SORT_BY_ROUTE:
-                return Comparator.comparing(b -> b.getTrip().getRoute().getName());
+                return Comparator.comparing(BookingRow::routeName);
             case SORT_BY_SEAT:
-                return Comparator.comparing(Booking::getSeatNumber);
+                return Comparator.comparing(BookingRow::seatNumber);
             case SORT_BY_DATE:
             default:
-                return Comparator.comparing(Booking::getBookedAt,
+                return Comparator.comparing(BookingRow::bookedAt,
                         Comparator.nullsLast(Comparator.naturalOrder()));
         }
     }
@@ -206,9 +478,9 @@ public class BookingService {
     /**
      * ดึงการจองตามสายรถและวันที่ พร้อมเรียงลำดับ
      */
-    public List<Booking> getBookingsByRouteAndDateSorted(Long routeId, LocalDate date,
+    public List<BookingRow> getBookingsByRouteAndDateSorted(Long routeId, LocalDate date,
             String sortBy, String order) {
-        List<Booking> bookings = bookingRepository.findByRouteIdAndDate(routeId, date);
+        List<BookingRow> bookings = bookingRepository.findRowsByRouteIdAndDate(routeId, date);
         return sortBookings(bookings, sortBy, order);
     }
 
@@ -216,14 +488,35 @@ public class BookingService {
      * ดึงที่นั่งที่จองแล้วของเที่ยวรถ
      */
     public List<String> getBookedSeats(Long tripId) {
-        return bookingRepository.findBookedSeatsByTripId(tripId);
+        return seatInventory.getBookedSeats(tripId);
+    }
+
+    /**
+     * ดึงที่นั่งที่ไม่ว่างของเที่ยวรถ (จองแล้ว + ถูกกันไว้ชั่วคราว)
+     */
+    public List<String> getUnavailableSeats(Long tripId) {
+        return SeatLayout.toSeatNumbers(getUnavailableMask(tripId));
+    }
+
+    /**
+     * ดึง bitmask ของที่นั่งที่ไม่ว่างของเที่ยวรถ (bit ตาม SeatLayout)
+     */
+    public int getUnavailableMask(Long tripId) {
+        return seatInventory.getOccupiedMask(tripId);
+    }
+
+    /**
+     * เที่ยวรถนี้มีอยู่หรือไม่ (ไม่ query Database ถ้ารู้วันที่ของเที่ยวรถแล้ว)
+     */
+    public boolean tripExists(Long tripId) {
+        return tripDateIndex.dateOf(tripId).isPresent();
     }
 
     /**
      * ดึงการจองจาก booking code
      */
     public Optional<Booking> getBookingByCode(String bookingCode) {
-        return bookingRepository.findByBookingCode(bookingCode);
+        return bookingRepository.findFirstByBookingCodeOrderByTripDateDesc(bookingCode);
     }
 
     /**
@@ -231,44 +524,183 @@ public class BookingService {
      */
     @Transactional
     public void deleteAll() {
+        waitlistService.deleteAll();
         bookingRepository.deleteAll();
+        seatHoldService.clear();
+        seatInventory.clear();
+        eventPublisher.publishEvent(AvailabilityChangedEvent.all());
     }
 
     /**
-     * ลบ bookings ก่อนวันที่กำหนด
+     * ดึงรายการจองตามสายรถและวันที่ (สำหรับคนขับ)
      */
-    @Transactional
-    public int deleteBookingsBeforeDate(LocalDate date) {
-        return bookingRepository.deleteByTripTripDateBefore(date);
+    public List<BookingRow> getBookingsByRouteAndDate(Long routeId, LocalDate date) {
+        return bookingRepository.findRowsByRouteIdAndDate(routeId, date);
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private static HistoryOrder toHistoryOrder(String sortBy) {
+        switch (sortBy != null ? sortBy.toLowerCase() : SORT_BY_DATE) {
+            case SORT_BY_STATUS:
+                return HistoryOrder.STATUS;
+            case SORT_BY_ROUTE:
+                return HistoryOrder.ROUTE;
+            case SORT_BY_SEAT:
+                return HistoryOrder.SEAT;
+            case SORT_BY_DATE:
+            default:
+                return HistoryOrder.DATE;
+        }
     }
 
     /**
-     * ดึงรายการจองตามสายรถและวันที่ (สำหรับคนขับ)
+     * เรียงตามชื่อสายรถ: ไล่สายรถตามลำดับชื่อ (มีไม่กี่สาย) แล้วอ่านการจองของแต่ละสายด้วย index (user_id, route_id, id)
+     * หนึ่งหน้าใช้ไม่เกินหนึ่ง query ต่อสายรถ
      */
-    public List<Booking> getBookingsByRouteAndDate(Long routeId, LocalDate date) {
-        return bookingRepository.findByRouteIdAndDate(routeId, date);
-    }
+    private List<BookingRow> findRouteHistoryPage(Long userId, boolean descending, HistoryCursor after, int limit)
+            throws Exception {
+        Comparator<BusRoute> byName = Comparator.comparing(BusRoute::getName).thenComparing(BusRoute::getId);
+        List<Long> routeIds = locationIndex.getRoutes().stream()
+                .sorted(descending ? byName.reversed() : byName)
+                .map(BusRoute::getId)
+                .toList();
+
+        int start = 0;
+        Long afterId = null;
+        if (after != null) {
+            start = routeIds.indexOf((Long) after.sortValue());
+            if (start < 0) {
+                throw new Exception("cursor ไม่ถูกต้อง");
+            }
+            afterId = after.id();
+        }
 
-    // ==================== PRIVATE HELPER METHODS ====================
+        List<BookingRow> rows = new ArrayList<>();
+        for (int i = start; i < routeIds.size() && rows.size() < limit; i++) {
+            rows.addAll(bookingRepository.findHistoryPage(userId, HistoryOrder.ROUTE, descending, routeIds.get(i),
+                    i == start ? afterId : null, limit - rows.size()));
+        }
+        return rows;
+    }
 
     private BusTrip findTripOrThrow(Long tripId) throws Exception {
-        return busTripRepository.findById(tripId)
+        return busTripService.getTripById(tripId)
                 .orElseThrow(() -> new Exception("ไม่พบเที่ยวรถ"));
     }
 
+    // เที่ยวรถที่ยังเปิดให้จอง (ตรวจซ้ำใน Database ตอนเพิ่มจำนวนที่นั่ง ดู saveBookings)
+    private BusTrip findOpenTripOrThrow(Long tripId) throws Exception {
+        BusTrip trip = findTripOrThrow(tripId);
+        if (trip.isCancelled()) {
+            throw new Exception("เที่ยวรถนี้ถูกยกเลิกแล้ว");
+        }
+        return trip;
+    }
+
     private User findUserOrThrow(String username) throws Exception {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new Exception("ไม่พบผู้ใช้"));
     }
 
-    private Optional<User> findUserByUsername(String username) {
-        return userRepository.findByUsername(username);
+    private void reserveSeats(BusTrip trip, List<String> seatNumbers) throws Exception {
+        seatInventory.reserve(trip.getId(), SeatInventory.toMask(seatNumbers));
     }
 
-    private void validateSeatAvailable(BusTrip trip, String seatNumber) throws Exception {
-        if (bookingRepository.existsByTripAndSeatNumberAndStatus(trip, seatNumber, STATUS_CONFIRMED)) {
-            throw new Exception("ที่นั่ง " + seatNumber + " ถูกจองแล้ว");
+    /**
+     * ยกเลิกการจองที่โหลดมาแล้ว ถ้ามีคนรอในคิวของเที่ยวรถนี้จะส่งที่นั่งให้คนแรกใน transaction เดียวกัน
+     * ถ้าไม่มีจะคืนที่นั่งใน SeatInventory หลังจาก commit สำเร็จ
+     *
+     * @param open ผลของ lockTrip (ผู้เรียกล็อกเที่ยวรถแล้ว) เที่ยวรถที่ถูกยกเลิกไม่ส่งที่นั่งให้คิวรอ
+     * @return true ถ้าที่นั่งว่างลง, false ถ้าที่นั่งถูกส่งต่อให้คนในคิวรอ
+     */
+    private boolean applyCancel(Booking booking, String username, boolean open) throws Exception {
+        validateBookingOwner(booking, username);
+        validateBookingNotCancelled(booking);
+
+        booking.setStatus(STATUS_CANCELLED);
+        booking.setCancelledAt(LocalDateTime.now());
+
+        BusTrip trip = booking.getTrip();
+        if (open && waitlistService.hasWaiting(trip.getId())) {
+            // flush การยกเลิกก่อน เพราะ Hibernate ทำ insert ก่อน update ตอน flush
+            // การจองใหม่ของที่นั่งเดิมจะชน uk_bookings_trip_seat_confirmed
+            bookingRepository.saveAndFlush(booking);
+            if (promoteFromWaitlist(trip, booking.getSeatNumber())) {
+                publishChanged(trip);
+                return false;
+            }
+        } else {
+            bookingRepository.save(booking);
+        }
+
+        // คืนที่นั่งใน SeatInventory หลังจาก commit สำเร็จ
+        int index = SeatLayout.indexOf(booking.getSeatNumber());
+        if (index >= 0) {
+            seatInventory.releaseAfterCommit(trip.getId(), 1 << index);
         }
+        // ส่ง event หลังลงทะเบียนคืนที่นั่ง ผู้รับจึงเห็น SeatInventory ที่คืนที่นั่งแล้ว
+        publishChanged(trip);
+        return true;
+    }
+
+    /**
+     * จองที่นั่งที่เพิ่งว่างให้คนแรกในคิวรอ (ที่นั่งใน SeatInventory ยังคงเป็นจองแล้ว)
+     */
+    private boolean promoteFromWaitlist(BusTrip trip, String seatNumber) {
+        Optional<WaitlistEntry> next = waitlistService.pollNext(trip.getId());
+        if (next.isEmpty()) {
+            return false;
+        }
+
+        WaitlistEntry entry = next.get();
+        Booking promoted = bookingRepository.save(newBooking(trip, entry.getUser(), seatNumber));
+        waitlistService.markPromoted(entry, promoted);
+        return true;
+    }
+
+    /**
+     * จองที่นั่งที่ว่างอยู่ใน SeatInventory ให้คนในคิวรอ คนละหนึ่งที่ จนกว่าที่นั่งหรือคิวจะหมด
+     * (ยังไม่บันทึก ผู้เรียกบันทึกการจองที่คืนมา) ถ้า transaction ถูก rollback ที่นั่งและคิวจะกลับสู่สถานะเดิม
+     */
+    private List<Booking> promoteWaiting(BusTrip trip) {
+        List<Booking> promoted = new ArrayList<>();
+        Long tripId = trip.getId();
+        while (waitlistService.hasWaiting(tripId)) {
+            int free = ~seatInventory.getOccupiedMask(tripId) & SeatLayout.ALL_SEATS_MASK;
+            if (free == 0) {
+                break;
+            }
+            Optional<WaitlistEntry> next = waitlistService.pollNext(tripId);
+            if (next.isEmpty()) {
+                break;
+            }
+
+            // ที่นั่งอาจถูก hold ตัดหน้าระหว่างนี้ ลองที่ว่างถัดไปจนกว่าจะได้
+            WaitlistEntry entry = next.get();
+            int seat = reserveAny(tripId, free);
+            if (seat < 0) {
+                waitlistService.putBack(entry);
+                continue;
+            }
+            Booking booking = newBooking(trip, entry.getUser(), SeatLayout.seatNumberOf(seat));
+            waitlistService.markPromoted(entry, booking);
+            promoted.add(booking);
+        }
+        return promoted;
+    }
+
+    private int reserveAny(Long tripId, int free) {
+        for (int remaining = free; remaining != 0; remaining &= remaining - 1) {
+            int bit = Integer.lowestOneBit(remaining);
+            try {
+                seatInventory.reserve(tripId, bit);
+                return Integer.numberOfTrailingZeros(bit);
+            } catch (Exception e) {
+                // ถูกจอง/กันไปแล้ว
+            }
+        }
+        return -1;
     }
 
     private void validateBookingOwner(Booking booking, String username) throws Exception {
@@ -283,24 +715,142 @@ public class BookingService {
         }
     }
 
-    private Booking saveBooking(BusTrip trip, User user, String seatNumber) {
+    /**
+     * บันทึกการจองทั้งหมดด้วย saveAllAndFlush
+     * id มาจาก sequence แบบ pooled จึงไม่ต้อง insert ทีละแถว Hibernate รวมเป็น batch เดียวตอน flush
+     *
+     * ความถูกต้องมาจาก partial unique index uk_bookings_trip_seat_confirmed ใน Database
+     * (insert ก่อน แล้วแปลง constraint violation เป็นข้อความ "ที่นั่ง X ถูกจองแล้ว")
+     * จึงไม่ขึ้นกับ isolation level และไม่ต้อง query ตรวจสอบก่อน insert
+     * จากนั้นเพิ่ม BusTrip.bookedSeats ด้วย UPDATE แบบ atomic
+     */
+    private List<Booking> saveBookings(BusTrip trip, User user, List<String> seatNumbers) throws Exception {
+        List<Booking> bookings = new ArrayList<>(seatNumbers.size());
+        for (String seatNumber : seatNumbers) {
+            bookings.add(newBooking(trip, user, seatNumber));
+        }
+
+        List<Booking> saved;
+        try {
+            saved = bookingRepository.saveAllAndFlush(bookings);
+        } catch (DataIntegrityViolationException e) {
+            String message = String.valueOf(e.getMostSpecificCause().getMessage());
+            if (!message.contains(SEAT_UNIQUE_INDEX)) {
+                throw e;
+            }
+            // SeatInventory ไม่ตรงกับ Database (เช่นจองจาก node อื่น) ให้โหลดใหม่หลังจบ transaction
+            seatInventory.refreshAfterCompletion(trip.getId());
+
+            Matcher matcher = SEAT_CONFLICT_PATTERN.matcher(message);
+            String seatNumber = matcher.find() ? matcher.group(1) : String.join(", ", seatNumbers);
+            throw new Exception("ที่นั่ง " + seatNumber + " ถูกจองแล้ว");
+        }
+
+        // อัปเดตจำนวนที่นั่งของเที่ยวรถใน transaction เดียวกับการจอง
+        // (ไม่มีแถวถูกแก้ = เที่ยวรถถูกยกเลิกระหว่างจอง ทั้ง transaction ถูก rollback)
+        if (busTripRepository.adjustBookedSeats(trip.getId(), trip.getTripDate(), saved.size()) == 0) {
+            throw new Exception("เที่ยวรถนี้ถูกยกเลิกแล้ว");
+        }
+        publishChanged(trip);
+        return saved;
+    }
+
+    /**
+     * คืนที่นั่งของการจองที่ถูกยกเลิกทั้งชุดหลัง commit (เฉพาะที่นั่งเหล่านั้น ที่นั่งที่กำลังจองอยู่ไม่ถูกแตะ)
+     * และแจ้งว่าที่นั่งของเที่ยวรถเปลี่ยน (แม้ไม่มีการจอง รายการเที่ยวรถต้องแสดงว่าถูกยกเลิก)
+     */
+    private void releaseCancelledSeats(Long tripId, Long routeId, LocalDate date, int count, int mask) {
+        if (count > 0) {
+            busTripRepository.adjustBookedSeats(tripId, date, -count);
+        }
+        if (mask != 0) {
+            seatInventory.releaseAfterCommit(tripId, mask);
+        }
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(tripId, routeId, date));
+    }
+
+    private static int seatBit(String seatNumber) {
+        int index = SeatLayout.indexOf(seatNumber);
+        return index >= 0 ? 1 << index : 0;
+    }
+
+    /**
+     * แจ้งว่าที่นั่งของเที่ยวรถเปลี่ยน (ผู้รับทำงานหลัง transaction commit)
+     */
+    private void publishChanged(BusTrip trip) {
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(trip.getId(), trip.getRoute().getId(),
+                trip.getTripDate()));
+    }
+
+    private Booking newBooking(BusTrip trip, User user, String seatNumber) {
         Booking booking = new Booking();
-        booking.setBookingCode(generateBookingCode());
+        booking.setBookingCode(bookingCodeGenerator.nextCode());
         booking.setTrip(trip);
         booking.setUser(user);
-        booking.setSeatNumber(seatNumber);
+        // เก็บรูปแบบมาตรฐาน ("1a"/"01A" -> "1A") ให้ unique index ของที่นั่งเทียบกันได้ตรง
+        booking.setSeatNumber(SeatLayout.normalize(seatNumber));
         booking.setStatus(STATUS_CONFIRMED);
         booking.setBookedAt(LocalDateTime.now());
+        return booking;
+    }
 
-        return bookingRepository.save(booking);
+    // ==================== HISTORY PAGE ====================
+
+    /**
+     * ประวัติการจองหนึ่งหน้า (nextCursor = null คือหน้าสุดท้าย)
+     */
+    public record BookingPage(List<BookingRow> bookings, String nextCursor) {
     }
 
-    private String generateBookingCode() {
-        return bookingRepository.findLastBookingCode()
-                .map(lastCode -> {
-                    int number = Integer.parseInt(lastCode.substring(1));
-                    return String.format("%s%04d", BOOKING_CODE_PREFIX, number + 1);
-                })
-                .orElse(BOOKING_CODE_PREFIX + "0001");
+    /**
+     * ตำแหน่งของแถวสุดท้ายในหน้า เข้ารหัสเป็น base64url ของ "order|a/d|id|ค่าที่ใช้เรียง"
+     * เก็บแบบการเรียงไว้ด้วยเพื่อปฏิเสธ cursor ที่ใช้ข้ามแบบการเรียง
+     */
+    private record HistoryCursor(HistoryOrder order, boolean descending, long id, String value) {
+
+        static HistoryCursor after(BookingRow row, HistoryOrder order, boolean descending) {
+            String value = switch (order) {
+                case DATE -> row.bookedAt().toString();
+                case STATUS -> row.status();
+                case SEAT -> row.seatNumber();
+                case ROUTE -> row.routeId().toString();
+            };
+            return new HistoryCursor(order, descending, row.id(), value);
+        }
+
+        static HistoryCursor decode(String cursor, HistoryOrder order, boolean descending) throws Exception {
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+            } catch (IllegalArgumentException e) {
+                throw new Exception("cursor ไม่ถูกต้อง");
+            }
+            if (parts.length != 4 || !parts[0].equals(order.name()) || !parts[1].equals(descending ? "d" : "a")) {
+                throw new Exception("cursor ไม่ตรงกับการเรียงลำดับที่ขอ");
+            }
+            try {
+                HistoryCursor decoded = new HistoryCursor(order, descending, Long.parseLong(parts[2]), parts[3]);
+                decoded.sortValue(); // ตรวจรูปแบบของค่า
+                return decoded;
+            } catch (RuntimeException e) {
+                throw new Exception("cursor ไม่ถูกต้อง");
+            }
+        }
+
+        String encode() {
+            String text = order.name() + "|" + (descending ? "d" : "a") + "|" + id + "|" + value;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * ค่าที่ใช้เรียงในชนิดเดียวกับคอลัมน์ (ส่งเป็น parameter ของ query)
+         */
+        Object sortValue() {
+            return switch (order) {
+                case DATE -> LocalDateTime.parse(value);
+                case ROUTE -> Long.valueOf(value);
+                default -> value;
+            };
+        }
     }
 }
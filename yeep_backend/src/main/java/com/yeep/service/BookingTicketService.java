@@ -0,0 +1,193 @@
+package com.yeep.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.yeep.entity.Booking;
+import com.yeep.util.HashedTimingWheel;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * BookingTicketService - รับคำขอจองแบบ asynchronous
+ *
+ * คำขอจองถูกส่งเข้า BookingSequencer แล้วคืน ticket ทันที (ไม่ถือ Tomcat thread และ DB connection
+ * ระหว่างรอ) ผู้ใช้ตรวจสอบผลด้วยการ poll หรือ stream สถานะของ ticket
+ *
+ * - จำนวน ticket ที่ยังไม่เสร็จจำกัดที่ app.booking.async.max-in-flight เกินแล้วปฏิเสธทันที
+ * - ticket ที่เสร็จแล้วเก็บไว้ app.booking.async.ticket-ttl-minutes แล้วลบออก
+ */
+@Service
+public class BookingTicketService {
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_CONFIRMED = "confirmed";
+    public static final String STATUS_FAILED = "failed";
+
+    @Autowired
+    private BookingSequencer bookingSequencer;
+
+    @Value("${app.booking.async.max-in-flight:1000}")
+    private int maxInFlight;
+
+    @Value("${app.booking.async.ticket-ttl-minutes:10}")
+    private long ticketTtlMinutes;
+
+    private final ConcurrentHashMap<String, BookingTicket> tickets = new ConcurrentHashMap<>();
+    private final HashedTimingWheel timingWheel = new HashedTimingWheel("booking-ticket-expiry", 1000, 1024);
+    private Semaphore inFlight;
+
+    @PostConstruct
+    public void start() {
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timingWheel.stop();
+    }
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * ส่งคำขอจองเข้าคิวและคืน ticket ทันที
+     *
+     * @throws Exception ถ้ามีคำขอที่ยังไม่เสร็จเต็มจำนวนที่รับได้
+     */
+    public BookingTicket submit(Long tripId, String username, List<String> seatNumbers) throws Exception {
+        if (!inFlight.tryAcquire()) {
+            throw new Exception("ระบบกำลังมีผู้ใช้งานจำนวนมาก กรุณาลองใหม่อีกครั้ง");
+        }
+
+        BookingTicket ticket = new BookingTicket(UUID.randomUUID().toString(), tripId, username);
+        tickets.put(ticket.ticketId, ticket);
+        try {
+            bookingSequencer.submitBooking(tripId, username, seatNumbers)
+                    .whenComplete((bookings, error) -> complete(ticket, bookings, error));
+        } catch (RuntimeException e) {
+            complete(ticket, null, e);
+        }
+        return ticket;
+    }
+
+    /**
+     * ดึง ticket ของผู้ใช้
+     */
+    public BookingTicket getTicket(String ticketId, String username) throws Exception {
+        BookingTicket ticket = tickets.get(ticketId);
+        if (ticket == null) {
+            throw new Exception("ไม่พบคำขอจอง หรือคำขอหมดอายุแล้ว");
+        }
+        if (!ticket.username.equals(username)) {
+            throw new Exception("คุณไม่มีสิทธิ์ดูคำขอจองนี้");
+        }
+        return ticket;
+    }
+
+    /**
+     * จำนวน ticket ที่ยังรอผล
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private void complete(BookingTicket ticket, List<Booking> bookings, Throwable error) {
+        try {
+            if (error == null) {
+                ticket.finish(STATUS_CONFIRMED, "จองที่นั่งสำเร็จ", bookings);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                ticket.finish(STATUS_FAILED, cause.getMessage(), List.of());
+            }
+        } finally {
+            inFlight.release();
+            timingWheel.schedule(() -> tickets.remove(ticket.ticketId, ticket), ticketTtlMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    // Inner class สำหรับสถานะของคำขอจอง
+    public static class BookingTicket {
+        private final String ticketId;
+        private final Long tripId;
+        private final String username;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final CompletableFuture<BookingTicket> done = new CompletableFuture<>();
+
+        private volatile String status = STATUS_PENDING;
+        private volatile String message = "กำลังดำเนินการ";
+        private volatile List<Booking> bookings = List.of();
+        private volatile LocalDateTime completedAt;
+
+        BookingTicket(String ticketId, Long tripId, String username) {
+            this.ticketId = ticketId;
+            this.tripId = tripId;
+            this.username = username;
+        }
+
+        private void finish(String status, String message, List<Booking> bookings) {
+            this.bookings = bookings;
+            this.message = message;
+            this.completedAt = LocalDateTime.now();
+            this.status = status;
+            done.complete(this);
+        }
+
+        public String getTicketId() {
+            return ticketId;
+        }
+
+        public Long getTripId() {
+            return tripId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public List<Booking> getBookings() {
+            return bookings;
+        }
+
+        public LocalDateTime getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public LocalDateTime getCompletedAt() {
+            return completedAt;
+        }
+
+        public boolean isDone() {
+            return done.isDone();
+        }
+
+        /**
+         * Future ที่เสร็จเมื่อ ticket มีผลแล้ว (ใช้สำหรับ stream สถานะ)
+         */
+        public CompletableFuture<BookingTicket> whenDone() {
+            return done.copy();
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package com.yeep.service;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.yeep.entity.BusRoute;
+import com.yeep.event.RoutesChangedEvent;
 import com.yeep.repository.BusRouteRepository;
 
 @Service
@@ -18,9 +17,15 @@ public class BusRouteService {
     @Autowired
     private BusRouteRepository busRouteRepository;
 
-    // ดึงสายรถทั้งหมด
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    // ดึงสายรถทั้งหมด (เรียงตาม ID) จาก LocationIndex
     public List<BusRoute> getAllRoutes() {
-        return busRouteRepository.findAll();
+        return locationIndex.getRoutes();
     }
 
     // ดึงสายรถตาม ID
@@ -28,61 +33,19 @@ public class BusRouteService {
         return busRouteRepository.findById(id);
     }
 
-    // ค้นหาสายรถตามต้นทาง-ปลายทาง ด้วย Sequential Search Algorithm
-    /**
-     * Sequential Search Algorithm (Linear Search)
-     * 
-     * วิธีการ:
-     * 1. วนลูปตรวจสอบทีละ element ตั้งแต่ต้นจนจบ
-     * 2. เปรียบเทียบกับเงื่อนไขที่ต้องการ
-     * 3. ถ้าตรง เพิ่มเข้าผลลัพธ์
-     * 
-     * Time Complexity: O(n)
-     * Space Complexity: O(1) สำหรับการค้นหา, O(k) สำหรับผลลัพธ์ (k = จำนวนที่เจอ)
-     */
+    // ค้นหาสายรถตามต้นทาง-ปลายทาง (partial match ไม่สนตัวพิมพ์ใหญ่-เล็ก) จาก LocationIndex
     public List<BusRoute> searchRoutes(String origin, String destination) {
-        // ดึงข้อมูลทั้งหมดมาก่อน
-        List<BusRoute> allRoutes = busRouteRepository.findAll();
-        List<BusRoute> result = new ArrayList<>();
-
-        // Sequential Search - วนลูปตรวจสอบทีละ element
-        for (int i = 0; i < allRoutes.size(); i++) {
-            BusRoute route = allRoutes.get(i);
-            boolean match = true;
-
-            // ตรวจสอบเงื่อนไข origin (ถ้ามี)
-            if (origin != null && !origin.isEmpty()) {
-                // เปรียบเทียบแบบ case-insensitive และ partial match
-                if (!route.getOrigin().toLowerCase().contains(origin.toLowerCase())) {
-                    match = false;
-                }
-            }
-
-            // ตรวจสอบเงื่อนไข destination (ถ้ามี)
-            if (destination != null && !destination.isEmpty()) {
-                // เปรียบเทียบแบบ case-insensitive และ partial match
-                if (!route.getDestination().toLowerCase().contains(destination.toLowerCase())) {
-                    match = false;
-                }
-            }
-
-            // ถ้าตรงเงื่อนไขทั้งหมด เพิ่มเข้าผลลัพธ์
-            if (match) {
-                result.add(route);
-            }
-        }
-
-        return result;
+        return locationIndex.searchRoutes(origin, destination);
     }
 
-    // ดึงรายการสถานที่ทั้งหมด (ไม่ซ้ำ)
+    // ดึงรายการสถานที่ทั้งหมด (ไม่ซ้ำ เรียงตามตัวอักษร) จาก LocationIndex
     public List<String> getAllLocations() {
-        List<BusRoute> routes = busRouteRepository.findAll();
-        return routes.stream()
-                .flatMap(route -> Arrays.asList(route.getOrigin(), route.getDestination()).stream())
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return locationIndex.getLocations();
+    }
+
+    // แนะนำชื่อสถานที่ระหว่างพิมพ์
+    public List<String> autocompleteLocations(String query, int limit) {
+        return locationIndex.autocomplete(query, limit);
     }
 
     // สร้างข้อมูลเริ่มต้น (ข้อมูลจริง มทส.)
@@ -147,11 +110,14 @@ public class BusRouteService {
             blue.setHasTrips(true);
             blue.setTimeRange("08:30, 12:00, 16:30");
             busRouteRepository.save(blue);
+
+            eventPublisher.publishEvent(new RoutesChangedEvent());
         }
     }
 
     // ลบข้อมูลทั้งหมด
     public void deleteAll() {
         busRouteRepository.deleteAll();
+        eventPublisher.publishEvent(new RoutesChangedEvent());
     }
 }
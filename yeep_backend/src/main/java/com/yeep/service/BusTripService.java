@@ -8,11 +8,9 @@ import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.yeep.entity.BusRoute;
 import com.yeep.entity.BusTrip;
-import com.yeep.repository.BookingRepository;
 import com.yeep.repository.BusTripRepository;
 
 @Service
@@ -22,11 +20,17 @@ public class BusTripService {
     private BusTripRepository busTripRepository;
 
     @Autowired
-    private BookingRepository bookingRepository;
+    private SeatInventory seatInventory;
 
-    // ดึงเที่ยวรถตาม ID
+    @Autowired
+    private TripAvailabilityCache availabilityCache;
+
+    @Autowired
+    private TripDateIndex tripDateIndex;
+
+    // ดึงเที่ยวรถตาม ID พร้อมสายรถ (หาวันที่จาก TripDateIndex ก่อน จึงอ่านเฉพาะ partition ของวันนั้น)
     public Optional<BusTrip> getTripById(Long id) {
-        return busTripRepository.findById(id);
+        return tripDateIndex.dateOf(id).flatMap(tripDate -> busTripRepository.findWithRouteById(id, tripDate));
     }
 
     // ดึงเที่ยวรถของสายและวันที่ (Selection Sort)
@@ -39,9 +43,14 @@ public class BusTripService {
         return sortTripsByDepartureTime(trips, true); // true = เรียงจากเช้าไปเย็น
     }
 
-    // ดึงเที่ยวรถพร้อมข้อมูลที่นั่งว่าง (ใช้ Selection Sort)
+    // ดึงเที่ยวรถพร้อมข้อมูลที่นั่งว่าง (อ่านผ่าน TripAvailabilityCache)
     public List<TripWithAvailability> getTripsWithAvailability(Long routeId, LocalDate date) {
-        // ดึงข้อมูลจาก Database
+        return availabilityCache.get(routeId, date, () -> loadTripsWithAvailability(routeId, date));
+    }
+
+    // โหลดเที่ยวรถพร้อมข้อมูลที่นั่งว่างจาก Database (ใช้ Selection Sort)
+    private List<TripWithAvailability> loadTripsWithAvailability(Long routeId, LocalDate date) {
+        // ดึงข้อมูลจาก Database (จำนวนที่นั่งที่จองแล้วอยู่ใน BusTrip.bookedSeats ไม่ต้อง join/count)
         List<BusTrip> trips = busTripRepository.findByRouteIdAndTripDate(routeId, date);
 
         // ใช้ Selection Sort Algorithm เรียงลำดับตามเวลาออก
@@ -49,42 +58,26 @@ public class BusTripService {
 
         List<TripWithAvailability> result = new ArrayList<>();
         for (BusTrip trip : sortedTrips) {
-            int bookedSeats = bookingRepository.countBookedSeatsByTripId(trip.getId());
-            int availableSeats = trip.getTotalSeats() - bookedSeats;
+            tripDateIndex.remember(trip);
+            int bookedSeats = trip.getBookedSeats();
+            // ที่นั่งที่ถูกกันไว้ชั่วคราวนับเป็นที่นั่งไม่ว่าง เที่ยวรถที่ถูกยกเลิกไม่มีที่นั่งว่าง
+            int availableSeats = trip.isCancelled() ? 0
+                    : trip.getTotalSeats() - bookedSeats - seatInventory.countHeldSeats(trip.getId());
             result.add(new TripWithAvailability(trip, availableSeats, bookedSeats));
         }
 
         return result;
     }
 
-    // สร้างเที่ยวรถสำหรับสายที่มีเที่ยว
-    public void createTripsForRoute(BusRoute route, LocalDate date, List<TripTime> tripTimes) {
-        int tripNumber = 1;
-        for (TripTime time : tripTimes) {
-            BusTrip trip = new BusTrip();
-            trip.setRoute(route);
-            trip.setTripNumber(tripNumber++);
-            trip.setDepartureTime(time.departure);
-            trip.setArrivalTime(time.arrival);
-            trip.setTripDate(date);
-            trip.setTotalSeats(20);
-            busTripRepository.save(trip);
-        }
-    }
-
     // ลบข้อมูลทั้งหมด
     public void deleteAll() {
         busTripRepository.deleteAll();
-    }
-
-    // ลบ trips ก่อนวันที่กำหนด
-    @Transactional
-    public int deleteTripsBeforeDate(LocalDate date) {
-        return busTripRepository.deleteByTripDateBefore(date);
+        availabilityCache.clear();
     }
 
     // Inner class สำหรับข้อมูลเวลาเที่ยวรถ
     public static class TripTime {
+        public int tripNumber;
         public LocalTime departure;
         public LocalTime arrival;
 
@@ -92,6 +85,11 @@ public class BusTripService {
             this.departure = departure;
             this.arrival = arrival;
         }
+
+        public TripTime(int tripNumber, LocalTime departure, LocalTime arrival) {
+            this(departure, arrival);
+            this.tripNumber = tripNumber;
+        }
     }
 
     // Inner class สำหรับเที่ยวรถพร้อมจำนวนที่นั่ง
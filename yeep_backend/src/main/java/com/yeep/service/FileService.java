@@ -4,10 +4,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * FileService - บริการจัดการไฟล์
@@ -146,6 +150,51 @@ public class FileService {
         Files.write(path, data);
     }
 
+    // ==================== COMPRESSED FILE METHODS ====================
+
+    /**
+     * เขียนบรรทัดข้อความต่อท้ายไฟล์ gzip (File Output)
+     * 
+     * แต่ละครั้งที่เรียกเขียนเป็น gzip member ใหม่ต่อท้ายไฟล์ (ไฟล์ที่มีหลาย member ยังอ่านด้วย GZIPInputStream ได้)
+     * จึงเขียนข้อมูลทีละชุดได้โดยไม่ต้องอ่านไฟล์เดิมหรือเก็บทั้งไฟล์ในหน่วยความจำ
+     * 
+     * @param filePath พาธของไฟล์ (สร้างโฟลเดอร์ให้ถ้ายังไม่มี)
+     * @param lines    บรรทัดที่ต้องการเขียน
+     * @throws IOException หากไม่สามารถเขียนไฟล์ได้
+     */
+    public void appendGzipTextFile(String filePath, List<String> lines) throws IOException {
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        try (OutputStream file = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(file),
+                        StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * อ่านไฟล์ gzip ทีละบรรทัด (File Input) โดยไม่โหลดทั้งไฟล์เข้าหน่วยความจำ
+     * 
+     * @param filePath พาธของไฟล์
+     * @param consumer รับแต่ละบรรทัด
+     * @throws IOException หากไม่สามารถอ่านไฟล์ได้
+     */
+    public void readGzipTextFile(String filePath, Consumer<String> consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(Paths.get(filePath))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                consumer.accept(line);
+            }
+        }
+    }
+
     // ==================== FILE VALIDATION METHODS ====================
 
     /**
@@ -0,0 +1,214 @@
+package com.yeep.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+/**
+ * IdempotencyStore - เก็บผลลัพธ์ของคำขอที่มี Idempotency-Key
+ *
+ * แอปบนมือถือมักส่งคำขอซ้ำเมื่อ timeout ถ้าคำขอแรกสำเร็จแล้ว คำขอซ้ำจะได้ผลลัพธ์เดิม
+ * โดยไม่เรียก service หรือ Database อีก ถ้าคำขอแรกยังทำงานอยู่ คำขอซ้ำจะรอผลเดียวกัน
+ *
+ * - key แยกตามผู้ใช้: ผู้ใช้ต่างกันที่ส่ง key เดียวกันไม่ได้ผลลัพธ์ของกันและกัน
+ * - เก็บ SHA-256 ของเนื้อหาคำขอ (JSON ที่เรียง key แล้ว): key เดิมกับเนื้อหาต่างกันได้ 422 แทนผลลัพธ์เดิม
+ * - คำขอที่รอผลเกินเวลายังทำงานต่อ (เช่นคำสั่งที่อยู่ในคิวของ BookingSequencer) รายการยังอยู่
+ *   คำขอซ้ำจะรอผลของคำขอเดิมแทนการทำซ้ำ (ถ้ายังรอเกินเวลาอีกได้ timeoutResponse ไม่มี header Idempotent-Replayed)
+ * - จำกัดจำนวนรายการ (app.idempotency.max-entries) ตัดรายการเก่าสุดที่ได้ผลแล้วออกเมื่อเต็ม
+ *   รายการที่ยังรอผลไม่ถูกตัด (ไม่เช่นนั้นคำขอซ้ำจะทำงานซ้ำ) จึงเกินขีดจำกัดได้ชั่วคราว
+ * - รายการหมดอายุหลัง app.idempotency.ttl-minutes
+ * - เก็บเฉพาะผลลัพธ์ที่สำเร็จ (2xx) ผลลัพธ์ที่ล้มเหลวให้ลองใหม่ได้
+ */
+@Service
+public class IdempotencyStore {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // เรียง property และ key ของ Map ให้เนื้อหาเดียวกันได้ JSON เดียวกันเสมอ
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    public IdempotencyStore(
+            @Value("${app.idempotency.max-entries:10000}") int maxEntries,
+            @Value("${app.idempotency.ttl-minutes:60}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.entries = new LinkedHashMap<>();
+    }
+
+    /**
+     * ทำคำขอครั้งเดียวต่อ key แล้วรอผลไม่เกิน waitMillis
+     *
+     * @param key             ค่าจาก header Idempotency-Key (null = ไม่ใช้ idempotency)
+     * @param scope           ขอบเขตของ key เช่น method และ path เพื่อไม่ให้ key เดียวกันชนข้าม endpoint
+     * @param username        ผู้ใช้ที่ส่งคำขอ
+     * @param body            เนื้อหาคำขอ (เทียบด้วย SHA-256 กับคำขอแรกของ key เดียวกัน)
+     * @param action          เริ่มคำขอจริง คืน future ของผลลัพธ์
+     * @param waitMillis      เวลารอผลสูงสุด
+     * @param timeoutResponse ผลลัพธ์เมื่อรอเกินเวลา (คำขอยังทำงานต่อ)
+     */
+    public ResponseEntity<Map<String, Object>> execute(String key, String scope, String username, Object body,
+            Supplier<CompletableFuture<ResponseEntity<Map<String, Object>>>> action, long waitMillis,
+            Supplier<ResponseEntity<Map<String, Object>>> timeoutResponse) {
+        if (key == null || key.isBlank()) {
+            return await(action.get(), waitMillis, timeoutResponse);
+        }
+
+        String entryKey = scope + ":" + username + ":" + key;
+        byte[] fingerprint = fingerprint(body);
+        long now = System.currentTimeMillis();
+        Entry existing;
+        Entry created = null;
+        synchronized (entries) {
+            existing = entries.get(entryKey);
+            if (existing != null && existing.expiresAtMillis < now) {
+                entries.remove(entryKey);
+                existing = null;
+            }
+            if (existing == null) {
+                created = new Entry(now + ttlMillis, fingerprint);
+                entries.put(entryKey, created);
+                evictCompleted();
+            }
+        }
+
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                return keyReused();
+            }
+            ResponseEntity<Map<String, Object>> original = await(existing.response, waitMillis, () -> null);
+            return original != null ? replay(original) : timeoutResponse.get();
+        }
+
+        CompletableFuture<ResponseEntity<Map<String, Object>>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            forget(entryKey, created);
+            created.response.completeExceptionally(e);
+            throw e;
+        }
+
+        // ผลลัพธ์ที่ล้มเหลวไม่ถูกเก็บ (ลบเมื่อคำขอจบจริง ไม่ใช่เมื่อรอเกินเวลา)
+        Entry entry = created;
+        response.whenComplete((result, error) -> {
+            if (error != null || !result.getStatusCode().is2xxSuccessful()) {
+                forget(entryKey, entry);
+            }
+            if (error != null) {
+                entry.response.completeExceptionally(error);
+            } else {
+                entry.response.complete(result);
+            }
+        });
+        return await(entry.response, waitMillis, timeoutResponse);
+    }
+
+    /**
+     * จำนวนรายการที่เก็บอยู่
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    /**
+     * ตัดรายการเก่าสุดที่ได้ผลแล้ว (หรือหมดอายุ) จนจำนวนไม่เกิน maxEntries (ต้องถือ lock ของ entries)
+     */
+    private void evictCompleted() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.response.isDone() || entry.expiresAtMillis < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static byte[] fingerprint(Object body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(CANONICAL_MAPPER.writeValueAsBytes(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request body", e);
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> await(
+            CompletableFuture<ResponseEntity<Map<String, Object>>> future, long waitMillis,
+            Supplier<ResponseEntity<Map<String, Object>>> timeoutResponse) {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return timeoutResponse.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return timeoutResponse.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> replay(ResponseEntity<Map<String, Object>> original) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(original.getBody(), headers, original.getStatusCode());
+    }
+
+    private static ResponseEntity<Map<String, Object>> keyReused() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Idempotency-Key นี้ถูกใช้กับคำขอที่มีข้อมูลต่างกันแล้ว");
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(response);
+    }
+
+    private void forget(String entryKey, Entry entry) {
+        synchronized (entries) {
+            entries.remove(entryKey, entry);
+        }
+    }
+
+    private static class Entry {
+        private final long expiresAtMillis;
+        private final byte[] fingerprint;
+        private final CompletableFuture<ResponseEntity<Map<String, Object>>> response = new CompletableFuture<>();
+
+        Entry(long expiresAtMillis, byte[] fingerprint) {
+            this.expiresAtMillis = expiresAtMillis;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
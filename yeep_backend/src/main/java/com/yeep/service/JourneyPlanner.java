@@ -0,0 +1,474 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.yeep.dto.JourneyResponse;
+import com.yeep.dto.TripResponse;
+import com.yeep.entity.BusRoute;
+import com.yeep.entity.BusTrip;
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.event.RoutesChangedEvent;
+import com.yeep.service.BusTripService.TripWithAvailability;
+import com.yeep.util.EntityMapper;
+
+/**
+ * JourneyPlanner - วางแผนการเดินทางหลายต่อ (เช่น หอพัก S4 → อาคารเรียนรวม 1 → อาคารขนส่ง)
+ *
+ * ใช้การค้นหาแบบ RAPTOR (Round-bAsed Public Transit Optimized Router):
+ * รอบที่ k หาเวลาถึงเร็วที่สุดของทุกสถานที่เมื่อนั่งรถ k เที่ยว โดยสแกนเฉพาะสายที่ผ่านสถานที่ที่เวลาดีขึ้นในรอบก่อน
+ * ผลลัพธ์คือเส้นทางที่ถึงเร็วที่สุดของแต่ละจำนวนต่อรถ (เฉพาะที่ถึงเร็วกว่าการต่อรถน้อยกว่า)
+ *
+ * ตารางเวลาของแต่ละวันสร้างจากเที่ยวรถที่สร้างไว้แล้ว (BusTrip ตาม RouteScheduleConfig) เป็น array แบน
+ * แล้วเก็บไว้จนกว่ารายการเที่ยวรถหรือสายรถจะเปลี่ยน ที่นั่งว่างอ่านใหม่ทุกครั้งจาก TripAvailabilityCache
+ */
+@Service
+public class JourneyPlanner {
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    @Autowired
+    private LocationIndex locationIndex;
+
+    @Autowired
+    private BusTripService busTripService;
+
+    @Value("${app.journey.min-transfer-minutes:2}")
+    private int minTransferMinutes;
+
+    @Value("${app.journey.max-cached-dates:16}")
+    private int maxCachedDates;
+
+    private final ConcurrentHashMap<LocalDate, Timetable> timetables = new ConcurrentHashMap<>();
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * หาเส้นทางจากต้นทางไปปลายทาง ออกเดินทางไม่ก่อนเวลาที่กำหนด
+     *
+     * @param seats        จำนวนที่นั่งว่างขั้นต่ำของทุกเที่ยวในเส้นทาง
+     * @param maxTransfers จำนวนต่อรถสูงสุด
+     */
+    public List<JourneyResponse> plan(String origin, String destination, LocalDate date, LocalTime after,
+            int seats, int maxTransfers) throws Exception {
+        Timetable timetable = timetableOf(date);
+        int from = timetable.stopOf(origin);
+        int to = timetable.stopOf(destination);
+        if (from < 0) {
+            throw new Exception("ไม่พบสถานที่ต้นทาง");
+        }
+        if (to < 0) {
+            throw new Exception("ไม่พบสถานที่ปลายทาง");
+        }
+        if (from == to) {
+            throw new Exception("ต้นทางและปลายทางต้องไม่ใช่ที่เดียวกัน");
+        }
+
+        TripWithAvailability[] current = timetable.currentAvailability(date, busTripService);
+        Search search = new Search(timetable, current, seats, maxTransfers + 1, minTransferMinutes);
+        search.run(from, to, toMinutes(after));
+        return search.journeys(to);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        // การจอง/ยกเลิกไม่เปลี่ยนตารางเวลา เปลี่ยนเฉพาะเมื่อรายการเที่ยวรถเปลี่ยน (tripId = null)
+        if (event.isAll()) {
+            timetables.clear();
+        } else if (event.getTripId() == null) {
+            timetables.remove(event.getTripDate());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutesChanged(RoutesChangedEvent event) {
+        timetables.clear();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private Timetable timetableOf(LocalDate date) {
+        Timetable timetable = timetables.get(date);
+        if (timetable != null) {
+            return timetable;
+        }
+
+        List<BusRoute> routes = locationIndex.getRoutes();
+        List<List<TripWithAvailability>> tripsByRoute = new ArrayList<>(routes.size());
+        for (BusRoute route : routes) {
+            // อ่านอย่างเดียว: วันที่นอกช่วงที่ TripMaterializer สร้างล่วงหน้าไม่มีเที่ยวรถ (ไม่มีเส้นทาง)
+            tripsByRoute.add(busTripService.getTripsWithAvailability(route.getId(), date));
+        }
+
+        timetable = Timetable.build(routes, tripsByRoute);
+        if (timetables.size() >= maxCachedDates) {
+            timetables.clear();
+        }
+        timetables.put(date, timetable);
+        return timetable;
+    }
+
+    private static int toMinutes(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static String formatMinutes(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    /**
+     * ตารางเวลาของหนึ่งวันในรูป array แบน
+     *
+     * - pattern = ลำดับสถานที่ของสายรถ ที่เที่ยวรถในนั้นไม่แซงกัน (ออกก่อนถึงก่อน) สายที่มีเที่ยวแซงกันถูกแยกเป็นหลาย pattern
+     * - เที่ยวรถของ pattern p คือ index patternTripStart[p] ถึง patternTripStart[p + 1] - 1 เรียงตามเวลาออก
+     * - เวลาของเที่ยว t ที่สถานที่ลำดับ i ของ pattern อยู่ที่ times[tripTimeStart[t] + i] (นาทีนับจากเที่ยงคืน)
+     * - pattern ที่ผ่านสถานที่ s อยู่ที่ stopPatterns[stopPatternStart[s] ..] พร้อมลำดับของ s ใน pattern
+     */
+    private static class Timetable {
+        private final Long[] routeIds;
+        private final String[] stopNames;
+        private final Map<String, Integer> stopByName;
+
+        private final int[] patternStopStart;
+        private final int[] patternStops;
+        private final int[] patternTripStart;
+
+        private final int[] tripPatterns;
+        private final int[] tripTimeStart;
+        private final int[] times;
+        private final BusTrip[] trips;
+        private final Map<Long, Integer> tripIndexById;
+
+        private final int[] stopPatternStart;
+        private final int[] stopPatterns;
+        private final int[] stopPatternPositions;
+
+        private Timetable(Long[] routeIds, String[] stopNames, int[] patternStopStart, int[] patternStops,
+                int[] patternTripStart, int[] tripTimeStart, int[] times, BusTrip[] trips) {
+            this.routeIds = routeIds;
+            this.stopNames = stopNames;
+            this.patternStopStart = patternStopStart;
+            this.patternStops = patternStops;
+            this.patternTripStart = patternTripStart;
+            this.tripTimeStart = tripTimeStart;
+            this.times = times;
+            this.trips = trips;
+
+            this.stopByName = new HashMap<>();
+            for (int s = 0; s < stopNames.length; s++) {
+                stopByName.put(LocationIndex.normalize(stopNames[s]), s);
+            }
+            this.tripIndexById = new HashMap<>();
+            for (int t = 0; t < trips.length; t++) {
+                tripIndexById.put(trips[t].getId(), t);
+            }
+
+            int patternCount = patternStopStart.length - 1;
+            this.tripPatterns = new int[trips.length];
+            for (int p = 0; p < patternCount; p++) {
+                Arrays.fill(tripPatterns, patternTripStart[p], patternTripStart[p + 1], p);
+            }
+
+            // กลับด้าน pattern → สถานที่ เป็น สถานที่ → pattern (CSR)
+            this.stopPatternStart = new int[stopNames.length + 1];
+            for (int stop : patternStops) {
+                stopPatternStart[stop + 1]++;
+            }
+            for (int s = 0; s < stopNames.length; s++) {
+                stopPatternStart[s + 1] += stopPatternStart[s];
+            }
+            this.stopPatterns = new int[patternStops.length];
+            this.stopPatternPositions = new int[patternStops.length];
+            int[] fill = Arrays.copyOf(stopPatternStart, stopNames.length);
+            for (int p = 0; p < patternCount; p++) {
+                for (int i = patternStopStart[p]; i < patternStopStart[p + 1]; i++) {
+                    int slot = fill[patternStops[i]]++;
+                    stopPatterns[slot] = p;
+                    stopPatternPositions[slot] = i - patternStopStart[p];
+                }
+            }
+        }
+
+        static Timetable build(List<BusRoute> routes, List<List<TripWithAvailability>> tripsByRoute) {
+            Map<String, Integer> stopIds = new HashMap<>();
+            List<String> stopNames = new ArrayList<>();
+
+            List<int[]> patternStopLists = new ArrayList<>();
+            List<List<BusTrip>> patternTripLists = new ArrayList<>();
+            for (int r = 0; r < routes.size(); r++) {
+                BusRoute route = routes.get(r);
+                int origin = stopIds.computeIfAbsent(route.getOrigin(), name -> addStop(stopNames, name));
+                int destination = stopIds.computeIfAbsent(route.getDestination(), name -> addStop(stopNames, name));
+
+                // แยกเที่ยวรถเป็น pattern ที่ไม่มีการแซงกัน (เวลาออกเรียงแล้ว เวลาถึงต้องไม่ลดลง)
+                List<List<BusTrip>> patterns = new ArrayList<>();
+                for (TripWithAvailability twa : tripsByRoute.get(r)) {
+                    BusTrip trip = twa.trip;
+                    if (trip.getArrivalTime() == null) {
+                        continue;
+                    }
+                    List<BusTrip> target = null;
+                    for (List<BusTrip> pattern : patterns) {
+                        BusTrip last = pattern.get(pattern.size() - 1);
+                        if (!trip.getArrivalTime().isBefore(last.getArrivalTime())) {
+                            target = pattern;
+                            break;
+                        }
+                    }
+                    if (target == null) {
+                        target = new ArrayList<>();
+                        patterns.add(target);
+                    }
+                    target.add(trip);
+                }
+                for (List<BusTrip> pattern : patterns) {
+                    patternStopLists.add(new int[] { origin, destination });
+                    patternTripLists.add(pattern);
+                }
+            }
+
+            int patternCount = patternStopLists.size();
+            int[] patternStopStart = new int[patternCount + 1];
+            int[] patternTripStart = new int[patternCount + 1];
+            for (int p = 0; p < patternCount; p++) {
+                patternStopStart[p + 1] = patternStopStart[p] + patternStopLists.get(p).length;
+                patternTripStart[p + 1] = patternTripStart[p] + patternTripLists.get(p).size();
+            }
+
+            int[] patternStops = new int[patternStopStart[patternCount]];
+            BusTrip[] trips = new BusTrip[patternTripStart[patternCount]];
+            int[] tripTimeStart = new int[trips.length];
+            List<Integer> times = new ArrayList<>();
+            for (int p = 0; p < patternCount; p++) {
+                int[] stops = patternStopLists.get(p);
+                System.arraycopy(stops, 0, patternStops, patternStopStart[p], stops.length);
+                int t = patternTripStart[p];
+                for (BusTrip trip : patternTripLists.get(p)) {
+                    trips[t] = trip;
+                    tripTimeStart[t] = times.size();
+                    times.add(toMinutes(trip.getDepartureTime()));
+                    times.add(toMinutes(trip.getArrivalTime()));
+                    t++;
+                }
+            }
+
+            Long[] routeIds = routes.stream().map(BusRoute::getId).toArray(Long[]::new);
+            return new Timetable(routeIds, stopNames.toArray(String[]::new), patternStopStart, patternStops,
+                    patternTripStart, tripTimeStart, times.stream().mapToInt(Integer::intValue).toArray(), trips);
+        }
+
+        private static int addStop(List<String> stopNames, String name) {
+            stopNames.add(name);
+            return stopNames.size() - 1;
+        }
+
+        int stopOf(String name) {
+            return name == null ? -1 : stopByName.getOrDefault(LocationIndex.normalize(name), -1);
+        }
+
+        int stopAt(int pattern, int position) {
+            return patternStops[patternStopStart[pattern] + position];
+        }
+
+        int stopCount(int pattern) {
+            return patternStopStart[pattern + 1] - patternStopStart[pattern];
+        }
+
+        int timeAt(int trip, int position) {
+            return times[tripTimeStart[trip] + position];
+        }
+
+        /**
+         * ที่นั่งว่างล่าสุดของทุกเที่ยวรถ (index เดียวกับ trips) อ่านจาก TripAvailabilityCache
+         */
+        TripWithAvailability[] currentAvailability(LocalDate date, BusTripService busTripService) {
+            TripWithAvailability[] current = new TripWithAvailability[trips.length];
+            for (Long routeId : routeIds) {
+                for (TripWithAvailability twa : busTripService.getTripsWithAvailability(routeId, date)) {
+                    Integer index = tripIndexById.get(twa.trip.getId());
+                    if (index != null) {
+                        current[index] = twa;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    // การค้นหาหนึ่งครั้ง: arrivals[k][s] = เวลาถึง s เร็วที่สุดเมื่อนั่งรถไม่เกิน k เที่ยว
+    private static class Search {
+        private final Timetable timetable;
+        private final TripWithAvailability[] current;
+        private final int seats;
+        private final int rounds;
+        private final int minTransferMinutes;
+        private int from;
+        // จำนวนรอบที่ค้นหาจริง (หยุดก่อน rounds ได้เมื่อไม่มีสถานที่ใดดีขึ้น รอบหลังจากนั้นไม่มีข้อมูล)
+        private int completedRounds;
+
+        private final int[][] arrivals;
+        private final int[] best;
+        // เที่ยวรถที่ทำให้ถึง s ในรอบ k (-1 = เวลายกมาจากรอบก่อน) และลำดับสถานที่ที่ขึ้นรถ
+        private final int[][] parentTrips;
+        private final int[][] parentBoardPositions;
+
+        Search(Timetable timetable, TripWithAvailability[] current, int seats, int rounds, int minTransferMinutes) {
+            this.timetable = timetable;
+            this.current = current;
+            this.seats = seats;
+            this.rounds = rounds;
+            this.minTransferMinutes = minTransferMinutes;
+
+            int stopCount = timetable.stopNames.length;
+            this.arrivals = new int[rounds + 1][stopCount];
+            this.parentTrips = new int[rounds + 1][stopCount];
+            this.parentBoardPositions = new int[rounds + 1][stopCount];
+            this.best = new int[stopCount];
+            Arrays.fill(arrivals[0], INFINITY);
+            Arrays.fill(best, INFINITY);
+        }
+
+        void run(int from, int to, int departAfter) {
+            int patternCount = timetable.patternTripStart.length - 1;
+            int[] scanFrom = new int[patternCount];
+            BitSet marked = new BitSet();
+
+            this.from = from;
+            arrivals[0][from] = departAfter;
+            best[from] = departAfter;
+            marked.set(from);
+
+            for (int k = 1; k <= rounds && !marked.isEmpty(); k++) {
+                completedRounds = k;
+                System.arraycopy(arrivals[k - 1], 0, arrivals[k], 0, arrivals[k].length);
+                Arrays.fill(parentTrips[k], -1);
+
+                // pattern ที่ต้องสแกน และลำดับสถานที่แรกที่ต้องเริ่ม
+                Arrays.fill(scanFrom, -1);
+                for (int s = marked.nextSetBit(0); s >= 0; s = marked.nextSetBit(s + 1)) {
+                    for (int i = timetable.stopPatternStart[s]; i < timetable.stopPatternStart[s + 1]; i++) {
+                        int pattern = timetable.stopPatterns[i];
+                        int position = timetable.stopPatternPositions[i];
+                        if (scanFrom[pattern] < 0 || position < scanFrom[pattern]) {
+                            scanFrom[pattern] = position;
+                        }
+                    }
+                }
+                marked.clear();
+
+                for (int p = 0; p < patternCount; p++) {
+                    if (scanFrom[p] >= 0) {
+                        scanPattern(k, p, scanFrom[p], to, marked);
+                    }
+                }
+            }
+        }
+
+        private void scanPattern(int k, int pattern, int startPosition, int to, BitSet marked) {
+            int trip = -1;
+            int boardPosition = -1;
+            for (int i = startPosition; i < timetable.stopCount(pattern); i++) {
+                int stop = timetable.stopAt(pattern, i);
+
+                // ลงรถที่สถานที่นี้ ถ้าถึงเร็วกว่าที่เคยถึงและเร็วกว่าเวลาถึงปลายทางที่ดีที่สุด
+                if (trip >= 0) {
+                    int arrival = timetable.timeAt(trip, i);
+                    if (arrival < Math.min(best[stop], best[to])) {
+                        arrivals[k][stop] = arrival;
+                        best[stop] = arrival;
+                        parentTrips[k][stop] = trip;
+                        parentBoardPositions[k][stop] = boardPosition;
+                        marked.set(stop);
+                    }
+                }
+
+                // ขึ้นเที่ยวที่เร็วกว่า ถ้ามาถึงสถานที่นี้ได้ทันในรอบก่อน
+                int ready = arrivals[k - 1][stop];
+                if (ready == INFINITY) {
+                    continue;
+                }
+                // มาถึงด้วยรถเที่ยวก่อน (ไม่ใช่ต้นทาง) ต้องเผื่อเวลาต่อรถ
+                if (stop != from) {
+                    ready += minTransferMinutes;
+                }
+                if (trip < 0 || ready <= timetable.timeAt(trip, i)) {
+                    int earlier = earliestTrip(pattern, i, ready);
+                    if (earlier >= 0 && (trip < 0 || timetable.timeAt(earlier, i) < timetable.timeAt(trip, i))) {
+                        trip = earlier;
+                        boardPosition = i;
+                    }
+                }
+            }
+        }
+
+        // เที่ยวแรกของ pattern ที่ออกจากสถานที่ลำดับ position ไม่ก่อน ready และมีที่นั่งว่างพอ
+        private int earliestTrip(int pattern, int position, int ready) {
+            int low = timetable.patternTripStart[pattern];
+            int high = timetable.patternTripStart[pattern + 1];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timetable.timeAt(mid, position) < ready) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int t = low; t < timetable.patternTripStart[pattern + 1]; t++) {
+                if (current[t] != null && current[t].availableSeats >= seats) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * เส้นทางที่ถึงเร็วที่สุดของแต่ละจำนวนเที่ยว (เฉพาะที่ถึงเร็วกว่าการนั่งน้อยเที่ยวกว่า)
+         */
+        List<JourneyResponse> journeys(int to) {
+            List<JourneyResponse> journeys = new ArrayList<>();
+            int previous = INFINITY;
+            for (int k = 1; k <= completedRounds; k++) {
+                int arrival = arrivals[k][to];
+                if (arrival < previous && parentTrips[k][to] >= 0) {
+                    journeys.add(reconstruct(k, to));
+                    previous = arrival;
+                }
+            }
+            return journeys;
+        }
+
+        private JourneyResponse reconstruct(int round, int to) {
+            List<Integer> legTrips = new ArrayList<>();
+            int stop = to;
+            for (int k = round; k > 0; k--) {
+                int trip = parentTrips[k][stop];
+                if (trip >= 0) {
+                    legTrips.add(trip);
+                    stop = timetable.stopAt(timetable.tripPatterns[trip], parentBoardPositions[k][stop]);
+                }
+            }
+            Collections.reverse(legTrips);
+
+            List<TripResponse> legs = new ArrayList<>(legTrips.size());
+            for (int trip : legTrips) {
+                legs.add(EntityMapper.toTripResponse(current[trip]));
+            }
+            int departure = timetable.timeAt(legTrips.get(0), 0);
+            int arrival = arrivals[round][to];
+            return new JourneyResponse(formatMinutes(departure), formatMinutes(arrival), arrival - departure, legs);
+        }
+    }
+}
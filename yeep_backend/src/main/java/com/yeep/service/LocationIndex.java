@@ -0,0 +1,262 @@
+package com.yeep.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.yeep.entity.BusRoute;
+import com.yeep.event.RoutesChangedEvent;
+import com.yeep.repository.BusRouteRepository;
+
+/**
+ * LocationIndex - index ของสายรถและชื่อสถานที่ในหน่วยความจำ
+ *
+ * ชื่อสถานที่ถูก normalize (Unicode NFC + ตัวพิมพ์เล็ก) แล้วเก็บ posting list ของ n-gram
+ * (1 และ 2 code point) เช่น "หอพัก s16-s18" → "ห", "หอ", "อพ", ... ค้นหาด้วยการ intersect posting list
+ * ของทุก bigram ในคำค้น แล้วตรวจสอบซ้ำด้วย contains จึงได้ผลเหมือนการค้นหาแบบ partial match เดิม
+ * ใช้ code point แทนการตัดคำ จึงใช้กับชื่อภาษาไทยที่ไม่มีช่องว่างระหว่างคำได้
+ *
+ * index สร้างใหม่ทั้งก้อนตอนเริ่มระบบและเมื่อสายรถเปลี่ยน (RoutesChangedEvent) แล้วสลับ reference
+ * ผู้อ่านจึงไม่ต้อง lock
+ */
+@Service
+public class LocationIndex {
+
+    @Autowired
+    private BusRouteRepository busRouteRepository;
+
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+    // ==================== PUBLIC METHODS ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // สร้าง index ใหม่ก่อน VersionRegistry เปลี่ยน ETag ของ catalog เพื่อไม่ให้ ETag ใหม่คู่กับข้อมูลเก่า
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutesChanged(RoutesChangedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * สร้าง index ใหม่จาก Database
+     */
+    public void rebuild() {
+        snapshot = Snapshot.build(busRouteRepository.findAll());
+    }
+
+    /**
+     * สายรถทั้งหมด (เรียงตาม ID)
+     */
+    public List<BusRoute> getRoutes() {
+        return snapshot.routeList;
+    }
+
+    /**
+     * ชื่อสถานที่ทั้งหมด (ไม่ซ้ำ เรียงตามตัวอักษร)
+     */
+    public List<String> getLocations() {
+        return snapshot.locationList;
+    }
+
+    /**
+     * ค้นหาสายรถที่ต้นทาง/ปลายทางมีคำค้นอยู่ (ไม่สนตัวพิมพ์ใหญ่-เล็ก, null หรือว่าง = ไม่กรอง)
+     */
+    public List<BusRoute> searchRoutes(String origin, String destination) {
+        Snapshot current = snapshot;
+        BitSet origins = current.matchLocations(origin);
+        BitSet destinations = current.matchLocations(destination);
+        if (origins == null && destinations == null) {
+            return current.routeList;
+        }
+
+        List<BusRoute> result = new ArrayList<>();
+        for (int i = 0; i < current.routes.length; i++) {
+            if ((origins == null || origins.get(current.originOf[i]))
+                    && (destinations == null || destinations.get(current.destinationOf[i]))) {
+                result.add(current.routes[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * แนะนำชื่อสถานที่จากคำที่พิมพ์: ขึ้นต้นด้วยคำค้นก่อน, ตามด้วยคำที่ขึ้นต้นด้วยคำค้น แล้วจึงที่มีคำค้นอยู่ตรงไหนก็ได้
+     */
+    public List<String> autocomplete(String query, int limit) {
+        Snapshot current = snapshot;
+        BitSet matches = current.matchLocations(query);
+        if (matches == null) {
+            return current.locationList.subList(0, Math.min(limit, current.locationList.size()));
+        }
+
+        String normalizedQuery = normalize(query);
+        Integer[] candidates = matches.stream().boxed().toArray(Integer[]::new);
+        Arrays.sort(candidates, Comparator
+                .comparingInt((Integer i) -> rank(current.normalized[i], normalizedQuery))
+                .thenComparingInt(i -> i));
+
+        List<String> result = new ArrayList<>(Math.min(limit, candidates.length));
+        for (int i = 0; i < candidates.length && result.size() < limit; i++) {
+            result.add(current.locations[candidates[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * normalize ข้อความสำหรับค้นหา: Unicode NFC, ตัดช่องว่างหัวท้าย, ตัวพิมพ์เล็ก
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private static int rank(String name, String query) {
+        if (name.startsWith(query)) {
+            return 0;
+        }
+        return name.contains(" " + query) ? 1 : 2;
+    }
+
+    // index ที่สร้างเสร็จแล้ว (ไม่เปลี่ยนหลังสร้าง)
+    private static class Snapshot {
+        private final BusRoute[] routes;
+        private final List<BusRoute> routeList;
+        private final int[] originOf;
+        private final int[] destinationOf;
+
+        private final String[] locations;
+        private final List<String> locationList;
+        private final String[] normalized;
+        private final Map<String, int[]> postings;
+
+        private Snapshot(BusRoute[] routes, String[] locations) {
+            this.routes = routes;
+            this.routeList = List.of(routes);
+            this.locations = locations;
+            this.locationList = List.of(locations);
+            this.normalized = new String[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                normalized[i] = normalize(locations[i]);
+            }
+
+            this.originOf = new int[routes.length];
+            this.destinationOf = new int[routes.length];
+            for (int i = 0; i < routes.length; i++) {
+                originOf[i] = Arrays.binarySearch(locations, routes[i].getOrigin());
+                destinationOf[i] = Arrays.binarySearch(locations, routes[i].getDestination());
+            }
+
+            this.postings = buildPostings(normalized);
+        }
+
+        static Snapshot build(List<BusRoute> routes) {
+            BusRoute[] sorted = routes.stream()
+                    .sorted(Comparator.comparing(BusRoute::getId))
+                    .toArray(BusRoute[]::new);
+            TreeSet<String> names = new TreeSet<>();
+            for (BusRoute route : sorted) {
+                names.add(route.getOrigin());
+                names.add(route.getDestination());
+            }
+            return new Snapshot(sorted, names.toArray(String[]::new));
+        }
+
+        /**
+         * สถานที่ที่มีคำค้นอยู่ (null = คำค้นว่าง ไม่กรอง)
+         */
+        BitSet matchLocations(String query) {
+            if (query == null || query.isBlank()) {
+                return null;
+            }
+
+            String normalizedQuery = normalize(query);
+            int[] codePoints = normalizedQuery.codePoints().toArray();
+            int[] candidates = null;
+            if (codePoints.length == 1) {
+                candidates = postings.getOrDefault(normalizedQuery, new int[0]);
+            } else {
+                for (int i = 0; i + 1 < codePoints.length; i++) {
+                    int[] posting = postings.get(new String(codePoints, i, 2));
+                    if (posting == null) {
+                        return new BitSet();
+                    }
+                    candidates = candidates == null ? posting : intersect(candidates, posting);
+                }
+            }
+
+            // bigram ครบทุกตัวไม่ได้แปลว่าเรียงติดกันตามคำค้น จึงตรวจสอบซ้ำด้วย contains
+            BitSet result = new BitSet(locations.length);
+            for (int location : candidates) {
+                if (normalized[location].contains(normalizedQuery)) {
+                    result.set(location);
+                }
+            }
+            return result;
+        }
+
+        private static Map<String, int[]> buildPostings(String[] normalized) {
+            Map<String, List<Integer>> lists = new HashMap<>();
+            for (int location = 0; location < normalized.length; location++) {
+                int[] codePoints = normalized[location].codePoints().toArray();
+                for (int i = 0; i < codePoints.length; i++) {
+                    addPosting(lists, new String(codePoints, i, 1), location);
+                    if (i + 1 < codePoints.length) {
+                        addPosting(lists, new String(codePoints, i, 2), location);
+                    }
+                }
+            }
+
+            Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+            lists.forEach((gram, locations) ->
+                    postings.put(gram, locations.stream().mapToInt(Integer::intValue).toArray()));
+            return postings;
+        }
+
+        // location เพิ่มตามลำดับ จึงเช็คแค่ตัวสุดท้ายก็กันซ้ำได้ และ posting list เรียงอยู่แล้ว
+        private static void addPosting(Map<String, List<Integer>> lists, String gram, int location) {
+            List<Integer> locations = lists.computeIfAbsent(gram, g -> new ArrayList<>());
+            if (locations.isEmpty() || locations.get(locations.size() - 1) != location) {
+                locations.add(location);
+            }
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] result = new int[Math.min(a.length, b.length)];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+}
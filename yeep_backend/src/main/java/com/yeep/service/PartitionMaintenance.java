@@ -0,0 +1,224 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * PartitionMaintenance - ดูแล partition รายวันตาม trip_date ของตาราง bus_trips และ bookings (PostgreSQL RANGE partition)
+ *
+ * - การแปลงตารางเดิมเป็นตาราง partitioned ทำครั้งเดียวด้วยสคริปต์ db/partition_by_trip_date.sql (หยุดระบบก่อนรัน)
+ *   ระบบไม่เปลี่ยนโครงสร้างตารางเองตอนเริ่มทำงาน ถ้ายังไม่ได้แปลงจะ log เตือนและไม่สร้าง/ลบ partition
+ * - สร้าง partition ล่วงหน้าถึง app.trips.days-ahead + app.partitions.premake-days วัน ทุกวัน (app.partitions.cron)
+ *   และก่อน TripMaterializer insert เที่ยวรถของวันใดก็ตาม
+ * - RetentionService ถอด (DETACH) แล้วลบ partition ของวันที่เก่า แทนการ DELETE ทีละแถว
+ *
+ * คำค้นที่ระบุ trip_date (เช่นรายการเที่ยวรถของวันนี้) อ่านเฉพาะ partition ของวันนั้น
+ * primary key ของทั้งสองตารางคือ (id, trip_date) bookings อ้างถึง bus_trips ด้วย (trip_id, trip_date)
+ * ส่วน waitlist_entries ไม่มี trip_date จึงไม่มี foreign key ไปยัง bus_trips
+ */
+@Service
+@DependsOnDatabaseInitialization
+public class PartitionMaintenance {
+
+    public static final String TRIPS_TABLE = "bus_trips";
+    public static final String BOOKINGS_TABLE = "bookings";
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    private static final List<String> TABLES = List.of(TRIPS_TABLE, BOOKINGS_TABLE);
+    // bookings อ้างถึง bus_trips ด้วย foreign key จึงต้องถอด partition ของ bookings ก่อน
+    private static final List<String> DROP_ORDER = List.of(BOOKINGS_TABLE, TRIPS_TABLE);
+    private static final String MIGRATION_SCRIPT = "db/partition_by_trip_date.sql";
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String PARTITION_MARK = "_p";
+    private static final String SEAT_UNIQUE_INDEX = "uk_bookings_trip_seat_confirmed";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.trips.days-ahead:7}")
+    private int daysAhead;
+
+    @Value("${app.partitions.premake-days:7}")
+    private int premakeDays;
+
+    // วันที่ที่มี partition ครบทั้งสองตารางแล้ว (ไม่ต้องถาม Database ซ้ำ)
+    private final Set<LocalDate> partitionedDates = ConcurrentHashMap.newKeySet();
+
+    // ทั้งสองตารางถูกแปลงเป็นตาราง partitioned แล้ว (ตรวจตอนเริ่มระบบ)
+    private volatile boolean partitioned;
+
+    // ==================== STARTUP ====================
+
+    @PostConstruct
+    public void checkOnStartup() {
+        partitioned = TABLES.stream().allMatch(this::isPartitionedTable);
+        if (!partitioned) {
+            log.warn("Tables {} are not partitioned by trip_date; partition maintenance and retention are disabled "
+                    + "until {} is run", TABLES, MIGRATION_SCRIPT);
+            return;
+        }
+
+        // ทุกวันที่ต้องมี partition ในทั้งสองตาราง (เที่ยวรถที่ไม่มีการจองยังไม่มี partition ของ bookings)
+        NavigableSet<LocalDate> dates = existingPartitionDates();
+        for (LocalDate date : dates) {
+            for (String table : TABLES) {
+                createPartition(table, date);
+            }
+        }
+        partitionedDates.addAll(dates);
+        premakePartitions();
+    }
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * สร้าง partition ของเมื่อวานถึง days-ahead + premake-days วันข้างหน้า (ที่ยังไม่มี)
+     */
+    @Scheduled(cron = "${app.partitions.cron:0 0 0 * * *}")
+    public void premakePartitions() {
+        try {
+            LocalDate today = LocalDate.now();
+            ensurePartitions(today.minusDays(1), today.plusDays(daysAhead + premakeDays));
+        } catch (Exception e) {
+            log.error("Failed to create partitions", e);
+        }
+    }
+
+    /**
+     * สร้าง partition ของทุกวันในช่วง (รวมวันสุดท้าย) ในทั้งสองตาราง
+     * commit แยกจาก transaction ของผู้เรียก ผู้เรียกจึงต้องยังไม่ได้อ่าน/เขียน bus_trips หรือ bookings
+     * ใน transaction ของตัวเอง (CREATE TABLE ... PARTITION OF ล็อกตารางหลักจน commit)
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void ensurePartitions(LocalDate from, LocalDate through) {
+        if (!partitioned) {
+            return;
+        }
+        for (LocalDate date = from; !date.isAfter(through); date = date.plusDays(1)) {
+            if (partitionedDates.contains(date)) {
+                continue;
+            }
+            for (String table : TABLES) {
+                createPartition(table, date);
+            }
+            partitionedDates.add(date);
+        }
+    }
+
+    /**
+     * ตาราง bus_trips และ bookings ถูกแปลงเป็นตาราง partitioned แล้วหรือไม่
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * วันที่ของ partition ที่มีอยู่ก่อน cutoff เรียงจากเก่าไปใหม่
+     */
+    public NavigableSet<LocalDate> partitionDatesBefore(LocalDate cutoff) {
+        return existingPartitionDates().headSet(cutoff, false);
+    }
+
+    /**
+     * จำนวนแถวใน partition ของวันที่ (0 ถ้าไม่มี partition)
+     */
+    public long countRows(String table, LocalDate date) {
+        String partition = partitionName(table, date);
+        if (!exists(partition)) {
+            return 0;
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * ถอดแล้วลบ partition ของวันที่ในทั้งสองตาราง (รวมคิวรอที่นั่งของเที่ยวรถวันนั้น)
+     * ไม่ต้อง DELETE ทีละแถวและไม่ทิ้ง dead tuple ไว้ในตาราง
+     */
+    @Transactional
+    public void dropPartitions(LocalDate date) {
+        jdbcTemplate.update("DELETE FROM waitlist_entries w USING bus_trips t "
+                + "WHERE t.id = w.trip_id AND t.trip_date = ?", date);
+        for (String table : DROP_ORDER) {
+            String partition = partitionName(table, date);
+            if (exists(partition)) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+        }
+        partitionedDates.remove(date);
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private void createPartition(String table, LocalDate date) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(table, date)
+                + " PARTITION OF " + table
+                + " FOR VALUES FROM ('" + date + "') TO ('" + date.plusDays(1) + "')");
+        if (BOOKINGS_TABLE.equals(table)) {
+            renameSeatIndex(date);
+        }
+    }
+
+    /**
+     * PostgreSQL รายงานการจองที่นั่งซ้ำด้วยชื่อ index ของ partition (ตั้งชื่อให้อัตโนมัติ)
+     * เปลี่ยนชื่อให้ขึ้นต้นด้วย uk_bookings_trip_seat_confirmed ที่ BookingService ใช้แยก error ที่นั่งซ้ำ
+     */
+    private void renameSeatIndex(LocalDate date) {
+        String partition = partitionName(BOOKINGS_TABLE, date);
+        jdbcTemplate.execute("ALTER INDEX IF EXISTS " + partition + "_trip_id_trip_date_seat_number_idx"
+                + " RENAME TO " + SEAT_UNIQUE_INDEX + PARTITION_MARK + date.format(SUFFIX_FORMAT));
+    }
+
+    private NavigableSet<LocalDate> existingPartitionDates() {
+        NavigableSet<LocalDate> dates = new TreeSet<>();
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT CAST(c.relname AS text) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent IN (to_regclass('bus_trips'), to_regclass('bookings'))", String.class);
+        for (String name : names) {
+            int mark = name.lastIndexOf(PARTITION_MARK);
+            if (mark >= 0) {
+                try {
+                    dates.add(LocalDate.parse(name.substring(mark + PARTITION_MARK.length()), SUFFIX_FORMAT));
+                } catch (RuntimeException e) {
+                    // partition ที่ไม่ได้สร้างโดยคลาสนี้
+                }
+            }
+        }
+        return dates;
+    }
+
+    private boolean isPartitionedTable(String table) {
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT CAST(c.relkind AS text) FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, table);
+        return kind.equals(List.of("p"));
+    }
+
+    private boolean exists(String relation) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, relation));
+    }
+
+    private static String partitionName(String table, LocalDate date) {
+        return table + PARTITION_MARK + date.format(SUFFIX_FORMAT);
+    }
+}
@@ -0,0 +1,309 @@
+package com.yeep.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.repository.ArchiveRow;
+import com.yeep.repository.BookingRepository;
+import com.yeep.repository.BookingRepositoryCustom;
+import com.yeep.repository.BusTripRepository;
+import com.yeep.repository.BusTripRepositoryCustom;
+
+/**
+ * RetentionService - ย้ายการจองและเที่ยวรถที่เก่ากว่า app.retention.days วันออกจาก Database ไปเก็บเป็นไฟล์ archive
+ *
+ * - ไฟล์ archive เป็น CSV บีบอัด gzip แยกตามวันที่ของเที่ยวรถ เช่น archive/bookings/2025/01/bookings-2025-01-15.csv.gz
+ * - ทำทีละวัน: อ่าน partition ของวันนั้นทีละชุด (app.retention.chunk-size แถว) เขียนลงไฟล์
+ *   แล้วถอดและลบ partition ของวันนั้นทั้งก้อน (PartitionMaintenance.dropPartitions) ไม่ต้อง DELETE ทีละแถว
+ * - ก่อนลบตรวจว่าจำนวนแถวที่เขียนลงไฟล์เท่ากับจำนวนแถวใน partition ถ้าไม่เท่าหยุดทำงานและเก็บ partition ไว้
+ * - ถ้าระบบหยุดระหว่างเขียนไฟล์กับลบ partition วันนั้นจะถูกเขียนซ้ำในรอบถัดไป การอ่าน archive จึงตัดแถวที่ id ซ้ำออก
+ * - อ่านประวัติจากไฟล์ archive ได้โดยตรง ไม่ต้องนำกลับเข้า Database
+ */
+@Service
+public class RetentionService {
+
+    public static final String KIND_BOOKINGS = "bookings";
+    public static final String KIND_TRIPS = "trips";
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final int MAX_READ_DAYS = 31;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BusTripRepository busTripRepository;
+
+    @Autowired
+    private PartitionMaintenance partitionMaintenance;
+
+    @Autowired
+    private TripDateIndex tripDateIndex;
+
+    @Autowired
+    private BookingSequencer bookingSequencer;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.retention.days:90}")
+    private int retentionDays;
+
+    @Value("${app.retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.retention.archive-dir:archive}")
+    private String archiveDir;
+
+    // ==================== PUBLIC METHODS ====================
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void runScheduled() {
+        try {
+            log.info("Retention: {}", archiveExpired());
+        } catch (Exception e) {
+            log.error("Retention failed", e);
+        }
+    }
+
+    /**
+     * archive ข้อมูลที่เก่ากว่า app.retention.days วัน
+     */
+    public Map<String, Object> archiveExpired() throws Exception {
+        return archiveBefore(LocalDate.now().minusDays(retentionDays));
+    }
+
+    /**
+     * archive แล้วลบ partition ของการจองและเที่ยวรถที่วันที่เดินทางก่อน cutoff
+     *
+     * @return จำนวนวัน การจอง และเที่ยวรถที่ถูกย้าย
+     */
+    public synchronized Map<String, Object> archiveBefore(LocalDate cutoff) throws Exception {
+        if (!cutoff.isBefore(LocalDate.now())) {
+            throw new Exception("ย้ายได้เฉพาะข้อมูลของวันที่ผ่านไปแล้ว");
+        }
+        if (!partitionMaintenance.isPartitioned()) {
+            throw new Exception("ตาราง bus_trips/bookings ยังไม่ได้แบ่ง partition (รัน db/partition_by_trip_date.sql ก่อน)");
+        }
+
+        int days = 0;
+        int bookings = 0;
+        int trips = 0;
+        for (LocalDate date : partitionMaintenance.partitionDatesBefore(cutoff)) {
+            int dayBookings = archiveDay(KIND_BOOKINGS, BookingRepositoryCustom.ARCHIVE_COLUMNS, date,
+                    bookingRepository::findArchiveChunkOn, null);
+
+            Set<Long> routeIds = new HashSet<>();
+            int dayTrips = archiveDay(KIND_TRIPS, BusTripRepositoryCustom.ARCHIVE_COLUMNS, date,
+                    busTripRepository::findArchiveChunkOn, routeIds);
+
+            // ลบ partition เฉพาะเมื่อทุกแถวถูกเขียนลงไฟล์แล้ว
+            verifyArchived(PartitionMaintenance.BOOKINGS_TABLE, date, dayBookings);
+            verifyArchived(PartitionMaintenance.TRIPS_TABLE, date, dayTrips);
+            partitionMaintenance.dropPartitions(date);
+            bookings += dayBookings;
+            trips += dayTrips;
+            days++;
+
+            // รายการเที่ยวรถของวันที่ถูกลบเปลี่ยน (ล้าง cache และเปลี่ยน ETag)
+            for (Long routeId : routeIds) {
+                eventPublisher.publishEvent(new AvailabilityChangedEvent(null, routeId, date));
+            }
+        }
+
+        bookingSequencer.retireLanesBefore(cutoff);
+        seatInventory.evictBefore(cutoff);
+        tripDateIndex.forgetBefore(cutoff);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cutoff", cutoff.toString());
+        result.put("days", days);
+        result.put("bookings", bookings);
+        result.put("trips", trips);
+        return result;
+    }
+
+    /**
+     * อ่านข้อมูลจากไฟล์ archive ในช่วงวันที่ (ไม่เกิน 31 วัน)
+     *
+     * @param kind     bookings หรือ trips
+     * @param username ผู้ใช้เจ้าของการจอง (ต้องระบุสำหรับ bookings, ไม่ใช้กับ trips)
+     */
+    public List<Map<String, String>> readArchive(String kind, LocalDate from, LocalDate to, String username)
+            throws Exception {
+        if (!KIND_BOOKINGS.equals(kind) && !KIND_TRIPS.equals(kind)) {
+            throw new Exception("ประเภทข้อมูลไม่ถูกต้อง (bookings หรือ trips)");
+        }
+        if (KIND_BOOKINGS.equals(kind) && (username == null || username.isBlank())) {
+            throw new Exception("กรุณาระบุ username เพื่ออ่านประวัติการจอง");
+        }
+        if (to.isBefore(from)) {
+            throw new Exception("วันที่สิ้นสุดต้องไม่ก่อนวันที่เริ่มต้น");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_READ_DAYS) {
+            throw new Exception("อ่านข้อมูลได้ครั้งละไม่เกิน " + MAX_READ_DAYS + " วัน");
+        }
+
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            String path = archivePath(kind, date);
+            if (!fileService.fileExists(path)) {
+                continue;
+            }
+
+            // key = id (ตัดแถวซ้ำที่เกิดจากการเขียนซ้ำหลังระบบหยุดกลางคัน)
+            Map<String, Map<String, String>> byId = new LinkedHashMap<>();
+            String[][] header = new String[1][];
+            fileService.readGzipTextFile(path, line -> {
+                List<String> values = parseCsvLine(line);
+                if (header[0] == null) {
+                    header[0] = values.toArray(String[]::new);
+                    return;
+                }
+                Map<String, String> row = new LinkedHashMap<>();
+                for (int i = 0; i < header[0].length && i < values.size(); i++) {
+                    row.put(header[0][i], values.get(i));
+                }
+                if (KIND_TRIPS.equals(kind) || username.equals(row.get("username"))) {
+                    byId.put(row.get("id"), row);
+                }
+            });
+            rows.addAll(byId.values());
+        }
+        return rows;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private int archiveDay(String kind, String[] columns, LocalDate date, ChunkReader reader,
+            Set<Long> routeIds) throws IOException {
+        String path = archivePath(kind, date);
+        int total = 0;
+        long afterId = 0;
+        List<ArchiveRow> chunk;
+        while (!(chunk = reader.read(date, afterId, chunkSize)).isEmpty()) {
+            List<String> lines = new ArrayList<>(chunk.size() + 1);
+            if (!fileService.fileExists(path)) {
+                lines.add(toCsvLine(columns));
+            }
+            for (ArchiveRow row : chunk) {
+                lines.add(toCsvLine(row.values()));
+                if (routeIds != null && row.routeId() != null) {
+                    routeIds.add(row.routeId());
+                }
+            }
+            fileService.appendGzipTextFile(path, lines);
+
+            total += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).id();
+        }
+        return total;
+    }
+
+    private void verifyArchived(String table, LocalDate date, int archived) throws Exception {
+        long rows = partitionMaintenance.countRows(table, date);
+        if (rows != archived) {
+            log.error("Archived {} of {} row(s) from {} on {}; partition kept", archived, rows, table, date);
+            throw new Exception("ย้ายข้อมูล " + table + " ของวันที่ " + date + " ไม่ครบ ("
+                    + archived + "/" + rows + " แถว) จึงยังไม่ลบ partition");
+        }
+    }
+
+    private String archivePath(String kind, LocalDate date) {
+        return Paths.get(archiveDir, kind, String.valueOf(date.getYear()),
+                String.format("%02d", date.getMonthValue()), kind + "-" + date + ".csv.gz").toString();
+    }
+
+    private static String toCsvLine(Object[] values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String value = toText(values[i]);
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof Time time) {
+            return time.toLocalTime().toString();
+        }
+        // หนึ่งแถวต้องอยู่ในบรรทัดเดียว
+        return value.toString().replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface ChunkReader {
+        List<ArchiveRow> read(LocalDate date, long afterId, int limit);
+    }
+}
@@ -0,0 +1,224 @@
+package com.yeep.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import com.yeep.entity.BusTrip;
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.util.HashedTimingWheel;
+import com.yeep.util.SeatLayout;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * SeatHoldService - กันที่นั่งไว้ชั่วคราวระหว่างที่ผู้ใช้อยู่หน้าเลือกที่นั่ง
+ *
+ * hold มีอายุสั้น (app.booking.hold-ttl-seconds) เมื่อหมดอายุจะคืนที่นั่งใน SeatInventory
+ * การหมดอายุจัดการในหน่วยความจำด้วย HashedTimingWheel ไม่ต้อง poll Database
+ *
+ * จำกัดจำนวน hold ที่ค้างอยู่ต่อผู้ใช้ (app.booking.max-holds-per-user) และต่อเที่ยวรถ
+ * (app.booking.max-holds-per-trip) ไม่ให้ผู้ใช้คนเดียวกันที่นั่งทั้งคันหรือสร้าง hold ไม่จำกัด
+ */
+@Service
+public class SeatHoldService {
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.booking.hold-ttl-seconds:120}")
+    private long holdTtlSeconds;
+
+    @Value("${app.booking.max-holds-per-user:3}")
+    private int maxHoldsPerUser;
+
+    @Value("${app.booking.max-holds-per-trip:10}")
+    private int maxHoldsPerTrip;
+
+    private final ConcurrentHashMap<String, SeatHold> holds = new ConcurrentHashMap<>();
+    // จำนวน hold ที่ค้างอยู่ (นับเพิ่มก่อนกันที่นั่ง ลดเมื่อ hold ถูกนำออกจาก holds)
+    private final ConcurrentHashMap<String, Integer> holdsPerUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> holdsPerTrip = new ConcurrentHashMap<>();
+    private final HashedTimingWheel timingWheel = new HashedTimingWheel("seat-hold-expiry", 1000, 512);
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * กันที่นั่งไว้ชั่วคราว (ทั้งหมดหรือไม่ได้เลย)
+     */
+    public SeatHold hold(BusTrip trip, String username, List<String> seatNumbers) throws Exception {
+        int mask = SeatInventory.toMask(seatNumbers);
+        if (!acquire(holdsPerUser, username, maxHoldsPerUser)) {
+            throw new Exception("คุณกันที่นั่งไว้ครบ " + maxHoldsPerUser + " รายการแล้ว กรุณายืนยันหรือยกเลิกก่อน");
+        }
+        if (!acquire(holdsPerTrip, trip.getId(), maxHoldsPerTrip)) {
+            releaseSlot(holdsPerUser, username);
+            throw new Exception("มีผู้กันที่นั่งของเที่ยวรถนี้อยู่มาก กรุณาลองใหม่อีกครั้ง");
+        }
+        try {
+            seatInventory.hold(trip.getId(), mask);
+        } catch (Exception e) {
+            releaseSlot(holdsPerUser, username);
+            releaseSlot(holdsPerTrip, trip.getId());
+            throw e;
+        }
+
+        long expiresAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(holdTtlSeconds);
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), trip.getId(), trip.getRoute().getId(),
+                trip.getTripDate(), username, mask, expiresAtMillis);
+        // ใส่ใน holds ก่อนตั้งเวลาหมดอายุ ถ้า timeout ทำงานทันทีจะยังหา hold เจอและคืนที่นั่งได้
+        holds.put(hold.holdId, hold);
+        hold.timeout = timingWheel.schedule(() -> expire(hold), holdTtlSeconds, TimeUnit.SECONDS);
+        publishChanged(hold);
+        return hold;
+    }
+
+    /**
+     * นำ hold ออกเพื่อยืนยันการจอง ที่นั่งยังคงสถานะ held อยู่ใน SeatInventory
+     * ผู้เรียกต้องเรียก SeatInventory.confirmHold หรือ releaseHold ต่อ
+     */
+    public SeatHold take(String holdId, String username) throws Exception {
+        SeatHold hold = holds.get(holdId);
+        if (hold == null) {
+            throw new Exception("การจองชั่วคราวหมดอายุแล้ว กรุณาเลือกที่นั่งใหม่");
+        }
+        if (!hold.username.equals(username)) {
+            throw new Exception("คุณไม่มีสิทธิ์ใช้การจองชั่วคราวนี้");
+        }
+        if (!holds.remove(holdId, hold)) {
+            throw new Exception("การจองชั่วคราวหมดอายุแล้ว กรุณาเลือกที่นั่งใหม่");
+        }
+        removed(hold);
+        return hold;
+    }
+
+    /**
+     * ยกเลิก hold และคืนที่นั่ง
+     */
+    public SeatHold release(String holdId, String username) throws Exception {
+        SeatHold hold = take(holdId, username);
+        seatInventory.releaseHold(hold.tripId, hold.seatMask);
+        publishChanged(hold);
+        return hold;
+    }
+
+    /**
+     * ล้าง hold ทั้งหมด (ใช้ตอนรีเซ็ตข้อมูล)
+     */
+    public void clear() {
+        for (SeatHold hold : holds.values()) {
+            if (holds.remove(hold.holdId, hold)) {
+                removed(hold);
+            }
+        }
+    }
+
+    /**
+     * แจ้งว่าที่นั่งของเที่ยวรถที่ hold อยู่เปลี่ยนไป
+     */
+    public void publishChanged(SeatHold hold) {
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(hold.tripId, hold.routeId, hold.tripDate));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timingWheel.stop();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private void expire(SeatHold hold) {
+        if (holds.remove(hold.holdId, hold)) {
+            removed(hold);
+            seatInventory.releaseHold(hold.tripId, hold.seatMask);
+            publishChanged(hold);
+        }
+    }
+
+    // เรียกหลัง holds.remove สำเร็จเท่านั้น (ครั้งเดียวต่อ hold)
+    private void removed(SeatHold hold) {
+        HashedTimingWheel.Timeout timeout = hold.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        releaseSlot(holdsPerUser, hold.username);
+        releaseSlot(holdsPerTrip, hold.tripId);
+    }
+
+    private static <K> boolean acquire(ConcurrentHashMap<K, Integer> counts, K key, int limit) {
+        boolean[] acquired = new boolean[1];
+        counts.compute(key, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= limit) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private static <K> void releaseSlot(ConcurrentHashMap<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // Inner class สำหรับข้อมูลการกันที่นั่ง
+    public static class SeatHold {
+        private final String holdId;
+        private final Long tripId;
+        private final Long routeId;
+        private final LocalDate tripDate;
+        private final String username;
+        private final int seatMask;
+        private final long expiresAtMillis;
+        private volatile HashedTimingWheel.Timeout timeout;
+
+        SeatHold(String holdId, Long tripId, Long routeId, LocalDate tripDate, String username, int seatMask,
+                long expiresAtMillis) {
+            this.holdId = holdId;
+            this.tripId = tripId;
+            this.routeId = routeId;
+            this.tripDate = tripDate;
+            this.username = username;
+            this.seatMask = seatMask;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getHoldId() {
+            return holdId;
+        }
+
+        public Long getTripId() {
+            return tripId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getSeatMask() {
+            return seatMask;
+        }
+
+        public List<String> getSeatNumbers() {
+            return SeatLayout.toSeatNumbers(seatMask);
+        }
+
+        public LocalDateTime getExpiresAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yeep.event.SeatsReleasedEvent;
+import com.yeep.repository.BookingRepository;
+import com.yeep.util.SeatLayout;
+
+/**
+ * SeatInventory - สถานะที่นั่งของแต่ละเที่ยวรถในหน่วยความจำ
+ *
+ * เก็บที่นั่ง 20 ที่ของเที่ยวรถเป็น bitmask (1 bit ต่อที่นั่ง ตาม SeatLayout)
+ * รวมไว้ใน long เดียว: 32 bit ล่าง = ที่นั่งที่จองแล้ว, 32 bit บน = ที่นั่งที่ถูกกันไว้ชั่วคราว (hold)
+ * - โหลดจาก Database ครั้งแรกที่มีการใช้งานเที่ยวรถนั้น (lazy)
+ * - การจอง/กันที่นั่งเป็น compare-and-set ทำให้สองคำขอไม่สามารถได้ที่นั่งเดียวกัน
+ * - ถ้า transaction ที่จองถูก rollback จะคืนที่นั่งให้อัตโนมัติ
+ * - ทุกครั้งที่ที่นั่งว่างลงจะส่ง SeatsReleasedEvent (ให้คนในคิวรอได้ที่นั่ง)
+ * - ลบสถานะของเที่ยวรถที่วันเดินทางผ่านไปแล้วทุกวัน (app.seats.evict-cron) และเมื่อ partition ถูกลบ
+ */
+@Service
+public class SeatInventory {
+
+    private static final int HELD_SHIFT = 32;
+    private static final long BOOKED_BITS = 0xFFFFFFFFL;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TripDateIndex tripDateIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, AtomicLong> seatStates = new ConcurrentHashMap<>();
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * แปลงรายการที่นั่งเป็น bitmask พร้อมตรวจสอบว่าที่นั่งมีอยู่จริงและไม่ซ้ำกัน
+     */
+    public static int toMask(List<String> seatNumbers) throws Exception {
+        int mask = 0;
+        for (String seatNumber : seatNumbers) {
+            int index = SeatLayout.indexOf(seatNumber);
+            if (index < 0) {
+                throw new Exception("ไม่พบที่นั่ง " + seatNumber);
+            }
+            int bit = 1 << index;
+            if ((mask & bit) != 0) {
+                throw new Exception("เลือกที่นั่ง " + seatNumber + " ซ้ำ");
+            }
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * ดึง bitmask ของที่นั่งที่จองแล้ว
+     */
+    public int getBookedMask(Long tripId) {
+        return booked(stateOf(tripId).get());
+    }
+
+    /**
+     * ดึง bitmask ของที่นั่งที่ไม่ว่าง (จองแล้ว + ถูกกันไว้ชั่วคราว)
+     */
+    public int getOccupiedMask(Long tripId) {
+        long state = stateOf(tripId).get();
+        return booked(state) | held(state);
+    }
+
+    /**
+     * นับที่นั่งที่ถูกกันไว้ชั่วคราว (ไม่โหลดจาก Database ถ้ายังไม่มีสถานะของเที่ยวรถนี้)
+     */
+    public int countHeldSeats(Long tripId) {
+        AtomicLong state = seatStates.get(tripId);
+        return state == null ? 0 : Integer.bitCount(held(state.get()));
+    }
+
+    /**
+     * มีสถานะของเที่ยวรถนี้ในหน่วยความจำแล้วหรือไม่
+     */
+    public boolean isLoaded(Long tripId) {
+        return seatStates.containsKey(tripId);
+    }
+
+    /**
+     * ดึงที่นั่งที่จองแล้วของเที่ยวรถ (เรียงตามผังที่นั่ง)
+     */
+    public List<String> getBookedSeats(Long tripId) {
+        return SeatLayout.toSeatNumbers(getBookedMask(tripId));
+    }
+
+    /**
+     * จองที่นั่งแบบ atomic (ทั้งหมดหรือไม่ได้เลย)
+     * ถ้าอยู่ใน transaction จะคืนที่นั่งเมื่อ transaction ถูก rollback
+     *
+     * @throws Exception ถ้ามีที่นั่งใดถูกจองหรือถูกกันไว้แล้ว
+     */
+    public void reserve(Long tripId, int mask) throws Exception {
+        claim(tripId, mask, 0);
+        releaseOnRollback(tripId, mask);
+    }
+
+    /**
+     * กันที่นั่งไว้ชั่วคราวแบบ atomic (ทั้งหมดหรือไม่ได้เลย)
+     *
+     * @throws Exception ถ้ามีที่นั่งใดถูกจองหรือถูกกันไว้แล้ว
+     */
+    public void hold(Long tripId, int mask) throws Exception {
+        claim(tripId, mask, HELD_SHIFT);
+    }
+
+    /**
+     * เปลี่ยนที่นั่งที่กันไว้เป็นจองแล้ว
+     * ถ้า transaction ถูก rollback ที่นั่งจะถูกคืน (hold นั้นถูกใช้ไปแล้ว)
+     */
+    public void confirmHold(Long tripId, int mask) {
+        long heldBits = (long) mask << HELD_SHIFT;
+        stateOf(tripId).getAndUpdate(state -> (state & ~heldBits) | (mask & BOOKED_BITS));
+        releaseOnRollback(tripId, mask);
+    }
+
+    /**
+     * ยกเลิกการกันที่นั่งชั่วคราว
+     */
+    public void releaseHold(Long tripId, int mask) {
+        AtomicLong state = seatStates.get(tripId);
+        if (state != null) {
+            long heldBits = (long) mask << HELD_SHIFT;
+            state.getAndUpdate(current -> current & ~heldBits);
+            publishReleased(tripId);
+        }
+    }
+
+    /**
+     * คืนที่นั่งหลังจาก transaction commit แล้ว (ใช้ตอนยกเลิกการจอง)
+     * ถ้าไม่มี transaction จะคืนทันที
+     */
+    public void releaseAfterCommit(Long tripId, int mask) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(tripId, mask);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                release(tripId, mask);
+            }
+        });
+    }
+
+    /**
+     * คืนที่นั่งที่จองแล้วทันที
+     */
+    public void release(Long tripId, int mask) {
+        if (clearBooked(tripId, mask)) {
+            publishReleased(tripId);
+        }
+    }
+
+    /**
+     * โหลดที่นั่งที่จองแล้วจาก Database ใหม่หลังจบ transaction ปัจจุบัน (ที่นั่งที่ถูกกันไว้ยังคงอยู่)
+     * ใช้เมื่อ Database ปฏิเสธการจองที่ SeatInventory คิดว่าว่าง
+     */
+    public void refreshAfterCompletion(Long tripId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(tripId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                refresh(tripId);
+            }
+        });
+    }
+
+    /**
+     * ลบสถานะของเที่ยวรถออกจากหน่วยความจำ (จะโหลดใหม่จาก Database ครั้งถัดไป)
+     */
+    public void evict(Long tripId) {
+        seatStates.remove(tripId);
+    }
+
+    /**
+     * ลบสถานะของเที่ยวรถที่วันที่ก่อนวันนี้ (จองไม่ได้แล้ว)
+     */
+    @Scheduled(cron = "${app.seats.evict-cron:0 10 0 * * *}")
+    public void evictPastTrips() {
+        evictBefore(LocalDate.now());
+    }
+
+    /**
+     * ลบสถานะของเที่ยวรถที่วันที่ก่อน cutoff (รวมเที่ยวรถที่ไม่มีใน Database แล้ว)
+     *
+     * @return จำนวนเที่ยวรถที่ถูกลบ
+     */
+    public int evictBefore(LocalDate cutoff) {
+        int evicted = 0;
+        for (Long tripId : seatStates.keySet()) {
+            if (tripDateIndex.dateOf(tripId).map(date -> date.isBefore(cutoff)).orElse(true)) {
+                evict(tripId);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * ล้างสถานะทั้งหมด
+     */
+    public void clear() {
+        seatStates.clear();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private static int booked(long state) {
+        return (int) (state & BOOKED_BITS);
+    }
+
+    private static int held(long state) {
+        return (int) (state >>> HELD_SHIFT);
+    }
+
+    private void claim(Long tripId, int mask, int shift) throws Exception {
+        AtomicLong state = stateOf(tripId);
+        long bits = ((long) mask & BOOKED_BITS) << shift;
+        while (true) {
+            long current = state.get();
+            int conflict = (booked(current) | held(current)) & mask;
+            if (conflict != 0) {
+                String seatNumber = SeatLayout.seatNumberOf(Integer.numberOfTrailingZeros(conflict));
+                throw new Exception("ที่นั่ง " + seatNumber + " ถูกจองแล้ว");
+            }
+            if (state.compareAndSet(current, current | bits)) {
+                return;
+            }
+        }
+    }
+
+    private void releaseOnRollback(Long tripId, int mask) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // ที่นั่งว่างอยู่แล้วก่อน transaction นี้ ไม่ต้องแจ้งว่าว่างลง
+                if (status != STATUS_COMMITTED) {
+                    clearBooked(tripId, mask);
+                }
+            }
+        });
+    }
+
+    private void refresh(Long tripId) {
+        AtomicLong state = seatStates.get(tripId);
+        if (state != null) {
+            long booked = loadBookedMask(tripId) & BOOKED_BITS;
+            long previous = state.getAndUpdate(current -> (current & ~BOOKED_BITS) | booked);
+            if ((previous & ~booked & BOOKED_BITS) != 0) {
+                publishReleased(tripId);
+            }
+        }
+    }
+
+    private boolean clearBooked(Long tripId, int mask) {
+        AtomicLong state = seatStates.get(tripId);
+        if (state == null) {
+            return false;
+        }
+        state.getAndUpdate(current -> current & ~(mask & BOOKED_BITS));
+        return true;
+    }
+
+    private void publishReleased(Long tripId) {
+        eventPublisher.publishEvent(new SeatsReleasedEvent(tripId));
+    }
+
+    private AtomicLong stateOf(Long tripId) {
+        AtomicLong state = seatStates.get(tripId);
+        if (state != null) {
+            return state;
+        }
+
+        // โหลดนอก map lock เพื่อไม่ให้ query ไปบล็อกเที่ยวรถอื่น ถ้าโหลดซ้อนกันจะใช้ตัวที่ใส่ก่อน
+        AtomicLong loaded = new AtomicLong(loadBookedMask(tripId) & BOOKED_BITS);
+        AtomicLong existing = seatStates.putIfAbsent(tripId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private int loadBookedMask(Long tripId) {
+        Optional<LocalDate> tripDate = tripDateIndex.dateOf(tripId);
+        if (tripDate.isEmpty()) {
+            return 0;
+        }
+
+        int mask = 0;
+        for (String seatNumber : bookingRepository.findBookedSeatsByTripId(tripId, tripDate.get())) {
+            int index = SeatLayout.indexOf(seatNumber);
+            if (index >= 0) {
+                mask |= 1 << index;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,389 @@
+package com.yeep.service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.util.EntityMapper;
+import com.yeep.util.SeatLayout;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * SeatStreamService - ส่งการเปลี่ยนแปลงของที่นั่งแบบ Server-Sent Events
+ *
+ * - stream ต่อเที่ยวรถ: ส่ง bitmask ของที่นั่งไม่ว่าง พร้อมที่นั่งที่เพิ่ง "ไม่ว่าง" (added) และ "ว่าง" (removed)
+ * - stream ต่อสายรถ/วันที่: ส่งจำนวนที่นั่งว่างของเที่ยวรถที่เปลี่ยน
+ *
+ * event id คือเวอร์ชันจาก VersionRegistry เมื่อ client เชื่อมต่อใหม่ด้วย Last-Event-ID ที่ตรงกับเวอร์ชันปัจจุบัน
+ * จะไม่ส่ง snapshot ซ้ำ ถ้าไม่ตรง (พลาด event ระหว่างหลุด) จะส่ง snapshot ทั้งหมดก่อน
+ *
+ * การเตรียม event ทำบน thread ของ stream เอง (ไม่ใช่ thread ที่ commit) การเปลี่ยนแปลงหลายครั้งของ key เดียวกัน
+ * ระหว่างรอส่งจะรวมเป็นครั้งเดียว และ serialize JSON ครั้งเดียวต่อ event ไม่ว่าจะมีผู้รับกี่คน
+ *
+ * ผู้รับแต่ละคนมีคิวของตัวเอง (app.stream.buffer-size event) และส่งบน thread pool แยก (app.stream.sender-threads)
+ * client ที่รับช้าจึงไม่ทำให้ผู้รับคนอื่นรอ ถ้าคิวเต็ม (รับไม่ทัน) จะถูกตัดการเชื่อมต่อ
+ * แล้วเชื่อมต่อใหม่ด้วย Last-Event-ID เพื่อรับ snapshot ล่าสุดแทน event ที่พลาดไป
+ */
+@Service
+public class SeatStreamService {
+
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    public static final String EVENT_SEATS = "seats";
+    public static final String EVENT_AVAILABILITY = "availability";
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private BusTripService busTripService;
+
+    @Autowired
+    private VersionRegistry versionRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.stream.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${app.stream.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${app.stream.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${app.stream.sender-threads:8}")
+    private int senderThreads;
+
+    private final ConcurrentHashMap<Long, CopyOnWriteArrayList<Subscriber>> tripSubscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RouteDate, CopyOnWriteArrayList<Subscriber>> routeDateSubscribers =
+            new ConcurrentHashMap<>();
+
+    // ที่นั่งไม่ว่างล่าสุดที่ส่งไปแล้วของแต่ละเที่ยวรถ (ใช้คำนวณ added/removed)
+    private final ConcurrentHashMap<Long, Integer> lastSentMasks = new ConcurrentHashMap<>();
+
+    // key ที่เปลี่ยนและรอส่ง
+    private final Set<Long> dirtyTrips = ConcurrentHashMap.newKeySet();
+    private final Map<RouteDate, Set<Long>> dirtyRouteDates = new ConcurrentHashMap<>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger counter = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "seat-stream-send-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        tripSubscribers.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        routeDateSubscribers.values().forEach(
+                subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * เปิด stream ของที่นั่งของเที่ยวรถ
+     *
+     * @param lastEventId ค่า Last-Event-ID จาก client (null = เชื่อมต่อครั้งแรก)
+     */
+    public SseEmitter subscribeTrip(Long tripId, String lastEventId) {
+        Subscriber subscriber = register(tripSubscribers, tripId);
+
+        // snapshot เข้าคิวเดียวกับ event อื่น จึงถูกส่งก่อน event ที่เกิดหลังจากนี้เสมอ
+        String eventId = tripEventId(tripId);
+        if (!eventId.equals(lastEventId)) {
+            int occupied = seatInventory.getOccupiedMask(tripId);
+            subscriber.offer(SseEmitter.event().id(eventId).name(EVENT_SNAPSHOT)
+                    .data(toJson(EntityMapper.toSeatMapResponse(tripId, occupied))));
+        }
+        return subscriber.emitter;
+    }
+
+    /**
+     * เปิด stream ของจำนวนที่นั่งว่างของเที่ยวรถทั้งหมดของสายรถในวันที่กำหนด
+     *
+     * @param lastEventId ค่า Last-Event-ID จาก client (null = เชื่อมต่อครั้งแรก)
+     */
+    public SseEmitter subscribeRouteDate(Long routeId, LocalDate date, String lastEventId) {
+        RouteDate key = new RouteDate(routeId, date);
+        Subscriber subscriber = register(routeDateSubscribers, key);
+
+        String eventId = routeDateEventId(key);
+        if (!eventId.equals(lastEventId)) {
+            subscriber.offer(SseEmitter.event().id(eventId).name(EVENT_SNAPSHOT).data(routeDateSnapshot(key)));
+        }
+        return subscriber.emitter;
+    }
+
+    // ทำหลัง TripAvailabilityCache ล้าง cache แล้ว
+    // ไม่เช่นนั้น snapshot ที่สร้างใน dispatch อาจอ่านข้อมูลเก่าจาก cache แล้วส่งให้ผู้ฟัง
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        boolean queued = false;
+        if (event.isAll()) {
+            dirtyTrips.addAll(tripSubscribers.keySet());
+            routeDateSubscribers.keySet().forEach(key -> markRouteDateDirty(key, null));
+            queued = true;
+        } else {
+            if (event.getTripId() != null && tripSubscribers.containsKey(event.getTripId())) {
+                dirtyTrips.add(event.getTripId());
+                queued = true;
+            }
+            RouteDate key = new RouteDate(event.getRouteId(), event.getTripDate());
+            if (routeDateSubscribers.containsKey(key)) {
+                markRouteDateDirty(key, event.getTripId());
+                queued = true;
+            }
+        }
+
+        if (queued && dispatchScheduled.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    /**
+     * จำนวนการเชื่อมต่อที่เปิดอยู่
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tripStreams", tripSubscribers.size());
+        stats.put("tripConnections", tripSubscribers.values().stream().mapToInt(List::size).sum());
+        stats.put("routeDateStreams", routeDateSubscribers.size());
+        stats.put("routeDateConnections", routeDateSubscribers.values().stream().mapToInt(List::size).sum());
+        return stats;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    // เพิ่ม/ลบผู้รับใน compute ของ key เดียวกัน รายการที่ว่างแล้วจึงไม่ถูกลบทิ้งพร้อมกับผู้รับใหม่
+    private <K> Subscriber register(ConcurrentHashMap<K, CopyOnWriteArrayList<Subscriber>> subscribers, K key) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.compute(key, (k, list) -> {
+            CopyOnWriteArrayList<Subscriber> result = list != null ? list : new CopyOnWriteArrayList<>();
+            result.add(subscriber);
+            return result;
+        });
+
+        Runnable remove = () -> {
+            subscriber.closed = true;
+            subscribers.computeIfPresent(key, (k, list) -> {
+                list.remove(subscriber);
+                return list.isEmpty() ? null : list;
+            });
+            if (key instanceof Long tripId && !tripSubscribers.containsKey(tripId)) {
+                lastSentMasks.remove(tripId);
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return subscriber;
+    }
+
+    // tripId = null หมายถึงรายการเที่ยวรถเปลี่ยน ต้องส่ง snapshot
+    private void markRouteDateDirty(RouteDate key, Long tripId) {
+        Set<Long> trips = dirtyRouteDates.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        trips.add(tripId != null ? tripId : RouteDate.ALL_TRIPS);
+    }
+
+    private void dispatch() {
+        dispatchScheduled.set(false);
+
+        for (Long tripId : List.copyOf(dirtyTrips)) {
+            dirtyTrips.remove(tripId);
+            dispatchTrip(tripId);
+        }
+        for (RouteDate key : List.copyOf(dirtyRouteDates.keySet())) {
+            Set<Long> trips = dirtyRouteDates.remove(key);
+            if (trips != null) {
+                dispatchRouteDate(key, trips);
+            }
+        }
+    }
+
+    private void dispatchTrip(Long tripId) {
+        CopyOnWriteArrayList<Subscriber> subscribers = tripSubscribers.get(tripId);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+
+        // อ่านเวอร์ชันก่อนอ่านข้อมูล ข้อมูลที่ส่งจึงใหม่กว่าหรือเท่ากับ event id เสมอ
+        String eventId = tripEventId(tripId);
+        int occupied = seatInventory.getOccupiedMask(tripId);
+        Integer previous = lastSentMasks.put(tripId, occupied);
+        int changed = previous == null ? occupied : previous ^ occupied;
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("tripId", tripId);
+        delta.put("layout", SeatLayout.LAYOUT_VERSION);
+        delta.put("occupied", SeatLayout.toHex(occupied));
+        delta.put("added", SeatLayout.toHex(changed & occupied));
+        delta.put("removed", SeatLayout.toHex(changed & ~occupied));
+        broadcast(subscribers, eventId, EVENT_SEATS, toJson(delta));
+    }
+
+    private void dispatchRouteDate(RouteDate key, Set<Long> trips) {
+        CopyOnWriteArrayList<Subscriber> subscribers = routeDateSubscribers.get(key);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+
+        String eventId = routeDateEventId(key);
+        if (trips.contains(RouteDate.ALL_TRIPS)) {
+            broadcast(subscribers, eventId, EVENT_SNAPSHOT, routeDateSnapshot(key));
+            return;
+        }
+        for (Long tripId : trips) {
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("tripId", tripId);
+            delta.put("availableSeats", SeatLayout.TOTAL_SEATS - Integer.bitCount(seatInventory.getOccupiedMask(tripId)));
+            broadcast(subscribers, eventId, EVENT_AVAILABILITY, toJson(delta));
+        }
+    }
+
+    // เข้าคิวของผู้รับแต่ละคนแล้วคืนทันที ไม่รอการส่งจริง (SseEventBuilder ใช้ส่งได้ครั้งเดียว จึงสร้างต่อผู้รับ)
+    private void broadcast(List<Subscriber> subscribers, String eventId, String name, String json) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().id(eventId).name(name).data(json));
+        }
+    }
+
+    private void sendHeartbeats() {
+        tripSubscribers.values().forEach(this::heartbeat);
+        routeDateSubscribers.values().forEach(this::heartbeat);
+    }
+
+    private void heartbeat(List<Subscriber> subscribers) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private String routeDateSnapshot(RouteDate key) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("routeId", key.routeId());
+        snapshot.put("date", key.date().toString());
+        snapshot.put("trips", EntityMapper.toTripResponseList(
+                busTripService.getTripsWithAvailability(key.routeId(), key.date())));
+        return toJson(snapshot);
+    }
+
+    private String tripEventId(Long tripId) {
+        return versionRegistry.getEpoch() + "-" + versionRegistry.tripVersion(tripId);
+    }
+
+    private String routeDateEventId(RouteDate key) {
+        return versionRegistry.getEpoch() + "-" + versionRegistry.routeDateVersion(key.routeId(), key.date());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ผู้รับหนึ่งคน: คิว event ที่รอส่ง และส่งบน senders ได้ทีละ thread
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<SseEventBuilder> pending = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!pending.offer(event)) {
+                // รับไม่ทัน ตัดการเชื่อมต่อ (onCompletion จะลบออกจากรายการ)
+                closed = true;
+                pending.clear();
+                emitter.complete();
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            SseEventBuilder event;
+            while (!closed && (event = pending.poll()) != null) {
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // client หลุดไปแล้ว onError/onCompletion จะลบออกจากรายการ
+                    closed = true;
+                    pending.clear();
+                    emitter.completeWithError(e);
+                }
+            }
+
+            // ปล่อยแล้วตรวจอีกครั้งว่ามี event เข้ามาระหว่างนั้นหรือไม่
+            sending.set(false);
+            if (!closed && !pending.isEmpty() && sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+
+    private record RouteDate(Long routeId, LocalDate date) {
+        // ใช้ใน dirtyRouteDates แทน "ทุกเที่ยวรถ" (ต้องส่ง snapshot)
+        static final Long ALL_TRIPS = -1L;
+
+        RouteDate {
+            Objects.requireNonNull(routeId);
+            Objects.requireNonNull(date);
+        }
+    }
+}
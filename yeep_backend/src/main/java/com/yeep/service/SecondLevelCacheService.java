@@ -0,0 +1,78 @@
+package com.yeep.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.yeep.config.BoundedRegionFactory;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * SecondLevelCacheService - ดูแล second-level cache ของ Hibernate (BoundedRegionFactory)
+ *
+ * - เก็บเฉพาะสายรถ (region "routes" และ query cache "routes-query") ซึ่งแทบไม่เปลี่ยน
+ *   สายรถถูกบันทึกผ่าน JPA (initializeRoutes, deleteAll) Hibernate จึงอัปเดต cache เอง
+ * - ไม่เก็บเที่ยวรถ (bookedSeats เปลี่ยนทุกการจอง cache จะถูกลบและโหลดใหม่ตลอด)
+ *   และผู้ใช้ (มีรหัสผ่าน)
+ */
+@Service
+public class SecondLevelCacheService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * สถิติรวมและต่อ region: hit/miss/put จาก Hibernate Statistics และขนาด/การตัดออก/การหมดอายุจาก BoundedRegionFactory
+     */
+    public Map<String, Object> getStats() {
+        SessionFactoryImplementor sessionFactory = sessionFactory();
+        Statistics statistics = sessionFactory.getStatistics();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        stats.put("hits", statistics.getSecondLevelCacheHitCount());
+        stats.put("misses", statistics.getSecondLevelCacheMissCount());
+        stats.put("puts", statistics.getSecondLevelCachePutCount());
+        stats.put("hitRate", hitRate(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount()));
+        stats.put("queryHits", statistics.getQueryCacheHitCount());
+        stats.put("queryMisses", statistics.getQueryCacheMissCount());
+        stats.put("queryHitRate", hitRate(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()));
+
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+        if (regionFactory instanceof BoundedRegionFactory bounded) {
+            Map<String, Map<String, Object>> regions = bounded.getRegionStats();
+            regions.forEach((name, region) -> {
+                CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(name);
+                if (regionStatistics != null) {
+                    region.put("hits", regionStatistics.getHitCount());
+                    region.put("misses", regionStatistics.getMissCount());
+                    region.put("puts", regionStatistics.getPutCount());
+                    region.put("hitRate", hitRate(regionStatistics.getHitCount(), regionStatistics.getMissCount()));
+                }
+            });
+            stats.put("regions", regions);
+        }
+        return stats;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private SessionFactoryImplementor sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,100 @@
+package com.yeep.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.yeep.service.BusTripService.TripTime;
+import com.yeep.util.BinaryTimetable;
+import com.yeep.util.RouteScheduleConfig;
+import com.yeep.util.RouteScheduleConfig.RouteColor;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * TimetableLoader - โหลดตารางเวลาจากไฟล์แทนค่าที่เขียนไว้ใน RouteScheduleConfig
+ *
+ * - app.timetable.csv: ไฟล์ CSV ต้นฉบับ (ว่าง = ไม่ใช้) ถูกแปลงเป็นไฟล์ binary เมื่อใหม่กว่าไฟล์ binary
+ * - app.timetable.file: ไฟล์ binary ที่อ่านด้วย memory-mapped file ตอนเริ่มระบบ
+ * - ตรวจเวลาแก้ไขไฟล์ทุก app.timetable.reload-interval-ms ถ้าเปลี่ยนจะโหลดใหม่แล้วสลับตารางเวลาทั้งก้อน
+ *   (คำขอที่กำลังทำงานใช้ตารางเดิมต่อจนจบ ไม่ต้องหยุดรอ) ถ้าไฟล์ผิดรูปแบบจะใช้ตารางเดิมต่อ
+ *
+ * หลังโหลดตารางเวลาใหม่ TripMaterializer เพิ่มเที่ยวที่ยังไม่มี และแก้เวลาของเที่ยวที่สร้างไว้แล้ว (จับคู่ด้วยเลขเที่ยว)
+ * เที่ยวที่มีการจองแล้วคงเวลาเดิมและถูกรายงานใน log
+ */
+@Service
+public class TimetableLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(TimetableLoader.class);
+
+    @Autowired
+    private TripMaterializer tripMaterializer;
+
+    @Value("${app.timetable.csv:}")
+    private String csvFile;
+
+    @Value("${app.timetable.file:timetable/timetable.bin}")
+    private String binaryFile;
+
+    // เวลาแก้ไขของไฟล์ binary ที่โหลดอยู่ (null = ใช้ตารางเวลาในโค้ด)
+    private FileTime loadedModifiedTime;
+
+    // โหลดก่อน TripMaterializer สร้างเที่ยวรถล่วงหน้าตอน ApplicationReadyEvent
+    @PostConstruct
+    public void loadOnStartup() {
+        reloadIfChanged();
+    }
+
+    @Scheduled(initialDelayString = "${app.timetable.reload-interval-ms:30000}",
+            fixedDelayString = "${app.timetable.reload-interval-ms:30000}")
+    public void checkForChanges() {
+        if (reloadIfChanged()) {
+            // เพิ่มเที่ยวรถใหม่และแก้เวลาของเที่ยวที่ยังไม่มีการจองตามตารางเวลาที่โหลด
+            tripMaterializer.materializeAhead();
+        }
+    }
+
+    /**
+     * แปลง CSV (ถ้าเปลี่ยน) แล้วโหลดไฟล์ binary ถ้าเปลี่ยนตั้งแต่โหลดครั้งก่อน
+     *
+     * @return true ถ้าตารางเวลาถูกเปลี่ยน
+     */
+    public synchronized boolean reloadIfChanged() {
+        try {
+            Path binary = Paths.get(binaryFile);
+            if (!csvFile.isBlank()) {
+                Path csv = Paths.get(csvFile);
+                if (Files.exists(csv) && (!Files.exists(binary)
+                        || Files.getLastModifiedTime(csv).compareTo(Files.getLastModifiedTime(binary)) > 0)) {
+                    BinaryTimetable.compile(csv, binary);
+                }
+            }
+            if (!Files.exists(binary)) {
+                return false;
+            }
+
+            FileTime modified = Files.getLastModifiedTime(binary);
+            if (modified.equals(loadedModifiedTime)) {
+                return false;
+            }
+            Map<RouteColor, List<TripTime>> schedules = BinaryTimetable.read(binary);
+            RouteScheduleConfig.replaceSchedules(schedules);
+            loadedModifiedTime = modified;
+            log.info("Loaded timetable {} ({} routes)", binary, schedules.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to load timetable, keeping current schedules", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.service.BusTripService.TripWithAvailability;
+
+/**
+ * TripAvailabilityCache - cache รายการเที่ยวรถพร้อมที่นั่งว่างตาม (สายรถ, วันที่)
+ *
+ * - จำกัดจำนวนรายการ (app.cache.availability.max-entries) ตัดรายการที่ใช้ล่าสุดนานที่สุดออกเมื่อเต็ม
+ * - invalidate ทีละ key เมื่อได้รับ AvailabilityChangedEvent หลัง transaction commit
+ * - ข้อมูลที่โหลดระหว่างที่ key ถูก invalidate จะไม่ถูกเก็บ (ป้องกันค่าเก่ากลับเข้า cache)
+ */
+@Service
+public class TripAvailabilityCache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final int maxEntries;
+    private final Map<Key, List<TripWithAvailability>> entries;
+    // นับการ invalidate ของแต่ละกลุ่ม key (hash ลง stripe) ใช้ตรวจว่าข้อมูลที่โหลดยังใช้ได้หรือไม่
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public TripAvailabilityCache(@Value("${app.cache.availability.max-entries:512}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<TripWithAvailability>> eldest) {
+                if (size() > TripAvailabilityCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * ดึงรายการจาก cache ถ้าไม่มีจะโหลดด้วย loader แล้วเก็บไว้
+     */
+    public List<TripWithAvailability> get(Long routeId, LocalDate date, Supplier<List<TripWithAvailability>> loader) {
+        Key key = new Key(routeId, date);
+        synchronized (entries) {
+            List<TripWithAvailability> cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        int stripe = stripeOf(key);
+        long generation = generations.get(stripe);
+        List<TripWithAvailability> loaded = List.copyOf(loader.get());
+        synchronized (entries) {
+            if (generations.get(stripe) == generation) {
+                entries.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * ลบรายการของสายรถและวันที่
+     */
+    public void invalidate(Long routeId, LocalDate date) {
+        Key key = new Key(routeId, date);
+        synchronized (entries) {
+            generations.incrementAndGet(stripeOf(key));
+            entries.remove(key);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * ล้าง cache ทั้งหมด
+     */
+    public void clear() {
+        synchronized (entries) {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    // ล้าง cache ก่อนผู้รับอื่น (SeatStreamService อ่านรายการเที่ยวรถผ่าน cache นี้)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        if (event.isAll()) {
+            clear();
+        } else {
+            invalidate(event.getRouteId(), event.getTripDate());
+        }
+    }
+
+    /**
+     * สถิติของ cache สำหรับปรับขนาด
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private static int stripeOf(Key key) {
+        return (key.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+
+    private record Key(Long routeId, LocalDate date) {
+    }
+}
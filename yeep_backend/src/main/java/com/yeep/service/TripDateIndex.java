@@ -0,0 +1,58 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.yeep.entity.BusTrip;
+import com.yeep.repository.BusTripRepository;
+
+/**
+ * TripDateIndex - วันที่ของเที่ยวรถจาก trip id (เก็บในหน่วยความจำ)
+ *
+ * bus_trips และ bookings แบ่ง partition รายวันตาม trip_date query ที่กรองด้วย id อย่างเดียว
+ * ต้องค้นทุก partition จึงหาวันที่ของเที่ยวรถจากที่นี่ก่อนแล้วส่ง trip_date ไปกับ query ด้วยเสมอ
+ * - วันที่ของเที่ยวรถไม่เปลี่ยน จึงเก็บไว้ได้ตลอด (ลบเมื่อ partition ของวันนั้นถูกลบ)
+ * - เที่ยวรถที่ยังไม่รู้วันที่จะค้นจาก Database ครั้งเดียว (ค้นทุก partition) แล้วจำไว้
+ */
+@Service
+public class TripDateIndex {
+
+    @Autowired
+    private BusTripRepository busTripRepository;
+
+    private final ConcurrentHashMap<Long, LocalDate> tripDates = new ConcurrentHashMap<>();
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * หาวันที่ของเที่ยวรถ (ว่างถ้าไม่มีเที่ยวรถนี้)
+     */
+    public Optional<LocalDate> dateOf(Long tripId) {
+        LocalDate tripDate = tripDates.get(tripId);
+        if (tripDate != null) {
+            return Optional.of(tripDate);
+        }
+
+        Optional<LocalDate> loaded = busTripRepository.findTripDateById(tripId);
+        loaded.ifPresent(date -> tripDates.putIfAbsent(tripId, date));
+        return loaded;
+    }
+
+    /**
+     * จำวันที่ของเที่ยวรถที่โหลดมาแล้ว
+     */
+    public void remember(BusTrip trip) {
+        tripDates.putIfAbsent(trip.getId(), trip.getTripDate());
+    }
+
+    /**
+     * ลบเที่ยวรถที่วันที่ก่อน cutoff (ใช้หลังลบ partition ของวันนั้น)
+     */
+    public void forgetBefore(LocalDate cutoff) {
+        tripDates.values().removeIf(date -> date.isBefore(cutoff));
+    }
+}
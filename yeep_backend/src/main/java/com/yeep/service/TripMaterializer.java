@@ -0,0 +1,104 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.yeep.entity.BusRoute;
+import com.yeep.entity.BusTrip;
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.repository.BusRouteRepository;
+import com.yeep.repository.BusTripRepository;
+import com.yeep.repository.BusTripRepositoryCustom.TimetableSync;
+import com.yeep.service.BusTripService.TripTime;
+import com.yeep.util.RouteScheduleConfig;
+
+/**
+ * TripMaterializer - สร้างเที่ยวรถล่วงหน้าตามตารางเวลาใน RouteScheduleConfig
+ *
+ * สร้างเที่ยวรถของทุกสายตั้งแต่วันนี้ถึง app.trips.days-ahead วันข้างหน้า ตอนเริ่มระบบและทุกวัน
+ * (app.trips.materialize-cron) ทำให้หน้าเลือกเที่ยวรถไม่ต้องสร้างเที่ยวรถเองตอนอ่าน
+ *
+ * insert เป็น batch และข้ามเที่ยวที่มีอยู่แล้ว จึงเรียกซ้ำได้และไม่เกิดเที่ยวรถซ้ำแม้เรียกพร้อมกัน
+ * เที่ยวที่มีอยู่แล้วถูกจับคู่ด้วยเลขเที่ยวจากตารางเวลา ถ้าเวลาเปลี่ยนจะแก้ให้ตรง (เฉพาะเที่ยวที่ยังไม่มีการจอง)
+ * สร้าง partition ของวันที่ก่อน insert เสมอ (bus_trips ไม่มี partition default)
+ */
+@Service
+public class TripMaterializer {
+
+    private static final Logger log = LoggerFactory.getLogger(TripMaterializer.class);
+
+    @Autowired
+    private BusRouteRepository busRouteRepository;
+
+    @Autowired
+    private BusTripRepository busTripRepository;
+
+    @Autowired
+    private PartitionMaintenance partitionMaintenance;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.trips.days-ahead:7}")
+    private int daysAhead;
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * สร้างเที่ยวรถของทุกสายตั้งแต่วันนี้ถึง daysAhead วันข้างหน้า
+     *
+     * @return จำนวนเที่ยวรถที่สร้างใหม่
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.trips.materialize-cron:0 5 0 * * *}")
+    @Transactional
+    public int materializeAhead() {
+        LocalDate today = LocalDate.now();
+        LocalDate through = today.plusDays(daysAhead);
+        partitionMaintenance.ensurePartitions(today, through);
+
+        List<BusTrip> trips = new ArrayList<>();
+        for (BusRoute route : busRouteRepository.findAll()) {
+            for (LocalDate date = today; !date.isAfter(through); date = date.plusDays(1)) {
+                trips.addAll(buildTrips(route, date));
+            }
+        }
+        int inserted = busTripRepository.insertTripsIfAbsent(trips);
+        TimetableSync sync = busTripRepository.updateTripTimes(trips, today, through);
+        if (sync.skippedBooked() > 0) {
+            log.warn("{} booked trip(s) differ from the timetable and keep their current times",
+                    sync.skippedBooked());
+        }
+        if (inserted > 0 || sync.updated() > 0) {
+            eventPublisher.publishEvent(AvailabilityChangedEvent.all());
+        }
+        return inserted;
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private List<BusTrip> buildTrips(BusRoute route, LocalDate date) {
+        if (!Boolean.TRUE.equals(route.getHasTrips())) {
+            return List.of();
+        }
+
+        List<TripTime> times = RouteScheduleConfig.getTripTimes(route.getColor());
+        List<BusTrip> trips = new ArrayList<>(times.size());
+        for (TripTime time : times) {
+            trips.add(new BusTrip(route, time.tripNumber, time.departure, time.arrival, date));
+        }
+        return trips;
+    }
+}
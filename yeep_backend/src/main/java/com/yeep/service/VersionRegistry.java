@@ -0,0 +1,106 @@
+package com.yeep.service;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.yeep.event.AvailabilityChangedEvent;
+import com.yeep.event.RoutesChangedEvent;
+
+/**
+ * VersionRegistry - เลขเวอร์ชันของข้อมูลสำหรับสร้าง ETag
+ *
+ * เพิ่มเวอร์ชันเมื่อมีการเขียน (หลัง transaction commit) แทนการ hash response body
+ * จึงตอบ 304 ได้โดยไม่ต้องอ่านจาก repository
+ * - catalog: สายรถและสถานที่ (RoutesChangedEvent)
+ * - trip: ที่นั่งของเที่ยวรถ, route/date: รายการเที่ยวรถของสายรถในวันหนึ่ง (AvailabilityChangedEvent)
+ *
+ * เวอร์ชันของ trip และ route/date เก็บเป็น counter แบบ striped (array ขนาดคงที่ไม่โตตามจำนวนเที่ยวรถ)
+ * key ที่ hash ลง stripe เดียวกันจะเปลี่ยน ETag พร้อมกัน ซึ่งทำให้ client โหลดใหม่เกินจำเป็นบ้างแต่ไม่ได้ข้อมูลเก่า
+ * ทุก ETag มี epoch ของการเริ่มระบบ ทำให้ ETag ไม่ซ้ำกับของก่อน restart
+ */
+@Service
+public class VersionRegistry {
+
+    private static final int STRIPES = 1024;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // เพิ่มเมื่อข้อมูลทั้งหมดเปลี่ยน (เช่นรีเซ็ตข้อมูล) รวมอยู่ใน ETag ของ trip และ route/date ทุกตัว
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final AtomicLongArray tripVersions = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray routeDateVersions = new AtomicLongArray(STRIPES);
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * ETag ของข้อมูลสายรถและสถานที่
+     */
+    public String catalogEtag() {
+        return etag("c", catalogVersion.get());
+    }
+
+    /**
+     * ETag ของที่นั่งของเที่ยวรถ
+     */
+    public String tripEtag(Long tripId) {
+        return etag("t", tripVersion(tripId));
+    }
+
+    /**
+     * ETag ของรายการเที่ยวรถของสายรถในวันที่กำหนด
+     */
+    public String routeDateEtag(Long routeId, LocalDate date) {
+        return etag("r", routeDateVersion(routeId, date));
+    }
+
+    /**
+     * เวอร์ชันปัจจุบันของที่นั่งของเที่ยวรถ
+     */
+    public long tripVersion(Long tripId) {
+        return globalVersion.get() + tripVersions.get(stripeOf(tripId));
+    }
+
+    /**
+     * เวอร์ชันปัจจุบันของรายการเที่ยวรถของสายรถในวันที่กำหนด
+     */
+    public long routeDateVersion(Long routeId, LocalDate date) {
+        return globalVersion.get() + routeDateVersions.get(stripeOf(Objects.hash(routeId, date)));
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        if (event.isAll()) {
+            globalVersion.incrementAndGet();
+            return;
+        }
+        if (event.getTripId() != null) {
+            tripVersions.incrementAndGet(stripeOf(event.getTripId()));
+        }
+        routeDateVersions.incrementAndGet(stripeOf(Objects.hash(event.getRouteId(), event.getTripDate())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutesChanged(RoutesChangedEvent event) {
+        catalogVersion.incrementAndGet();
+        globalVersion.incrementAndGet();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private String etag(String kind, long version) {
+        return "\"" + epoch + "-" + kind + version + "\"";
+    }
+
+    private static int stripeOf(Object key) {
+        return (Objects.hashCode(key) & 0x7fffffff) % STRIPES;
+    }
+}
@@ -0,0 +1,294 @@
+package com.yeep.service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yeep.entity.Booking;
+import com.yeep.entity.BusTrip;
+import com.yeep.entity.User;
+import com.yeep.entity.WaitlistEntry;
+import com.yeep.repository.UserRepository;
+import com.yeep.repository.WaitlistRepository;
+
+/**
+ * WaitlistService - คิวรอที่นั่งของเที่ยวรถที่เต็มแล้ว
+ *
+ * ผู้ใช้เข้าคิวครั้งเดียวแทนการ poll หาที่นั่งว่าง เมื่อมีการยกเลิก BookingService จะส่งที่นั่ง
+ * ให้คนแรกในคิวใน transaction เดียวกับการยกเลิก ที่นั่งที่ว่างลงทางอื่น (hold หมดอายุ)
+ * ส่งให้คิวรอผ่าน BookingSequencer
+ * เมื่อเที่ยวรถถูกยกเลิกทั้งเที่ยว ทุกคนในคิวได้สถานะ trip_cancelled และคิวของเที่ยวรถถูกลบ
+ *
+ * ลำดับคิวเก็บในหน่วยความจำเป็น array ของ entry id (เรียงตาม id = ลำดับการเข้าคิว)
+ * และสร้างใหม่จาก Database ตอนเริ่มระบบ
+ */
+@Service
+public class WaitlistService {
+
+    public static final String STATUS_WAITING = "waiting";
+    public static final String STATUS_PROMOTED = "promoted";
+    public static final String STATUS_CANCELLED = "cancelled";
+    public static final String STATUS_TRIP_CANCELLED = "trip_cancelled";
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private BusTripService busTripService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    private final ConcurrentHashMap<Long, EntryQueue> queues = new ConcurrentHashMap<>();
+
+    // ==================== PUBLIC METHODS ====================
+
+    /**
+     * สร้างคิวในหน่วยความจำจาก Database ตอนเริ่มระบบ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildQueues() {
+        queues.clear();
+        for (Object[] row : waitlistRepository.findWaitingQueue()) {
+            queueOf((Long) row[1]).insert((Long) row[0]);
+        }
+    }
+
+    /**
+     * เข้าคิวรอที่นั่ง (ได้เฉพาะเที่ยวรถที่เต็มแล้ว)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public WaitlistEntry join(Long tripId, String username) throws Exception {
+        BusTrip trip = busTripService.getTripById(tripId)
+                .orElseThrow(() -> new Exception("ไม่พบเที่ยวรถ"));
+        if (trip.isCancelled()) {
+            throw new Exception("เที่ยวรถนี้ถูกยกเลิกแล้ว");
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new Exception("ไม่พบผู้ใช้"));
+
+        if (Integer.bitCount(seatInventory.getOccupiedMask(tripId)) < trip.getTotalSeats()) {
+            throw new Exception("เที่ยวรถนี้ยังมีที่นั่งว่าง กรุณาจองที่นั่งได้เลย");
+        }
+        if (waitlistRepository.existsByTripAndUserAndStatus(trip, user, STATUS_WAITING)) {
+            throw new Exception("คุณอยู่ในคิวรอของเที่ยวรถนี้แล้ว");
+        }
+
+        WaitlistEntry entry = waitlistRepository.save(new WaitlistEntry(trip, user));
+        afterCommit(() -> queueOf(tripId).insert(entry.getId()));
+        return entry;
+    }
+
+    /**
+     * ออกจากคิวรอ
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public WaitlistEntry leave(Long entryId, String username) throws Exception {
+        WaitlistEntry entry = findOwnedEntryOrThrow(entryId, username);
+        if (!STATUS_WAITING.equals(entry.getStatus())) {
+            throw new Exception("รายการนี้ไม่ได้อยู่ในคิวรอแล้ว");
+        }
+
+        entry.setStatus(STATUS_CANCELLED);
+        WaitlistEntry saved = waitlistRepository.save(entry);
+        Long tripId = entry.getTrip().getId();
+        afterCommit(() -> queueOf(tripId).remove(entryId));
+        return saved;
+    }
+
+    /**
+     * ปิดคิวรอของเที่ยวรถที่ถูกยกเลิกทั้งเที่ยว (ต้องเรียกภายใน transaction ของการยกเลิก)
+     * ทุกคนที่ยังรออยู่ได้สถานะ trip_cancelled และคิวในหน่วยความจำถูกลบหลัง commit
+     * จึงไม่มีการส่งที่นั่งของเที่ยวรถนี้ให้คิวรออีก
+     *
+     * @return จำนวนรายการที่ถูกยกเลิก
+     */
+    public int cancelAllForTrip(Long tripId) {
+        int cancelled = waitlistRepository.updateWaitingStatusByTripId(tripId, STATUS_TRIP_CANCELLED);
+        afterCommit(() -> queues.remove(tripId));
+        return cancelled;
+    }
+
+    /**
+     * ดึงรายการคิวรอของผู้ใช้
+     */
+    public WaitlistEntry getEntry(Long entryId, String username) throws Exception {
+        return findOwnedEntryOrThrow(entryId, username);
+    }
+
+    /**
+     * ลำดับในคิว (เริ่มที่ 1) หรือ 0 ถ้าไม่อยู่ในคิวแล้ว
+     */
+    public int getPosition(Long tripId, Long entryId) {
+        EntryQueue queue = queues.get(tripId);
+        return queue == null ? 0 : queue.indexOf(entryId) + 1;
+    }
+
+    /**
+     * มีคนรออยู่ในคิวของเที่ยวรถนี้หรือไม่
+     */
+    public boolean hasWaiting(Long tripId) {
+        EntryQueue queue = queues.get(tripId);
+        return queue != null && queue.size() > 0;
+    }
+
+    /**
+     * ดึงคนถัดไปออกจากคิว (ต้องเรียกภายใน transaction ของการยกเลิก)
+     * ถ้า transaction ถูก rollback รายการจะกลับเข้าคิวที่ลำดับเดิม
+     */
+    public Optional<WaitlistEntry> pollNext(Long tripId) {
+        EntryQueue queue = queues.get(tripId);
+        if (queue == null) {
+            return Optional.empty();
+        }
+
+        long entryId;
+        while ((entryId = queue.poll()) != EntryQueue.EMPTY) {
+            long polledId = entryId;
+            afterRollback(() -> queue.insert(polledId));
+
+            Optional<WaitlistEntry> entry = waitlistRepository.findById(entryId);
+            if (entry.isPresent() && STATUS_WAITING.equals(entry.get().getStatus())) {
+                return entry;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * คืนรายการที่ดึงออกจากคิวแล้วแต่ไม่ได้ที่นั่ง กลับเข้าคิวที่ลำดับเดิม
+     */
+    public void putBack(WaitlistEntry entry) {
+        queueOf(entry.getTrip().getId()).insert(entry.getId());
+    }
+
+    /**
+     * บันทึกว่ารายการคิวรอได้ที่นั่งแล้ว
+     */
+    public void markPromoted(WaitlistEntry entry, Booking booking) {
+        entry.setStatus(STATUS_PROMOTED);
+        entry.setBookingCode(booking.getBookingCode());
+        entry.setPromotedAt(LocalDateTime.now());
+        waitlistRepository.save(entry);
+    }
+
+    /**
+     * ลบข้อมูลทั้งหมด
+     */
+    @Transactional
+    public void deleteAll() {
+        waitlistRepository.deleteAll();
+        queues.clear();
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private WaitlistEntry findOwnedEntryOrThrow(Long entryId, String username) throws Exception {
+        WaitlistEntry entry = waitlistRepository.findWithUserById(entryId)
+                .orElseThrow(() -> new Exception("ไม่พบรายการคิวรอ"));
+        if (!entry.getUser().getUsername().equals(username)) {
+            throw new Exception("คุณไม่มีสิทธิ์จัดการรายการคิวรอนี้");
+        }
+        return entry;
+    }
+
+    private EntryQueue queueOf(Long tripId) {
+        return queues.computeIfAbsent(tripId, id -> new EntryQueue());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    // คิวของเที่ยวรถหนึ่งเที่ยว: entry id เรียงจากน้อยไปมากใน long[] (ไม่มี object ต่อรายการ)
+    private static class EntryQueue {
+        static final long EMPTY = -1;
+
+        private long[] ids = new long[8];
+        private int head;
+        private int tail;
+
+        synchronized void insert(long id) {
+            int index = Arrays.binarySearch(ids, head, tail, id);
+            if (index >= 0) {
+                return; // มีอยู่แล้ว
+            }
+            int position = -index - 1;
+            if (tail == ids.length) {
+                position -= head; // head จะถูกเลื่อนไปที่ 0
+                compactOrGrow();
+            }
+            System.arraycopy(ids, position, ids, position + 1, tail - position);
+            ids[position] = id;
+            tail++;
+        }
+
+        synchronized long poll() {
+            if (head == tail) {
+                return EMPTY;
+            }
+            return ids[head++];
+        }
+
+        synchronized void remove(long id) {
+            int index = Arrays.binarySearch(ids, head, tail, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, tail - index - 1);
+                tail--;
+            }
+        }
+
+        synchronized int indexOf(long id) {
+            int index = Arrays.binarySearch(ids, head, tail, id);
+            return index >= 0 ? index - head : -1;
+        }
+
+        synchronized int size() {
+            return tail - head;
+        }
+
+        private void compactOrGrow() {
+            int size = tail - head;
+            long[] target = size * 2 >= ids.length ? new long[ids.length * 2] : ids;
+            System.arraycopy(ids, head, target, 0, size);
+            ids = target;
+            head = 0;
+            tail = size;
+        }
+    }
+}
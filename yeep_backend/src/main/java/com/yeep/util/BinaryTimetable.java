@@ -0,0 +1,173 @@
+package com.yeep.util;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.yeep.service.BusTripService.TripTime;
+import com.yeep.util.RouteScheduleConfig.RouteColor;
+
+/**
+ * BinaryTimetable - แปลงตารางเวลาจาก CSV เป็นไฟล์ binary ขนาดเล็ก และอ่านกลับด้วย memory-mapped file
+ *
+ * CSV (คล้าย stop_times.txt ของ GTFS) หนึ่งบรรทัดต่อหนึ่งเที่ยว บรรทัดที่ขึ้นต้นด้วย # และบรรทัดว่างถูกข้าม:
+ * <pre>
+ * route_color,trip_number,departure_time,arrival_time
+ * green,1,07:07,07:27
+ * </pre>
+ *
+ * รูปแบบ binary (big-endian):
+ * <pre>
+ * int   MAGIC ("YTT2")
+ * short จำนวนสาย
+ * ต่อสาย: byte RouteColor.ordinal, short จำนวนเที่ยว,
+ *         แล้วต่อเที่ยว: short trip_number, short เวลาออก, short เวลาถึง (นาทีนับจากเที่ยงคืน)
+ * </pre>
+ * trip_number จาก CSV ถูกเก็บไว้ตามเดิม TripMaterializer ใช้เป็นเลขเที่ยว (จับคู่กับเที่ยวรถที่สร้างไว้แล้ว)
+ * ไฟล์รูปแบบเก่า "YTT1" (ไม่มี trip_number) ยังอ่านได้ โดยใช้ลำดับในรายการเป็นเลขเที่ยว
+ */
+public class BinaryTimetable {
+
+    public static final int MAGIC = 0x59545432; // "YTT2"
+    private static final int MAGIC_V1 = 0x59545431; // "YTT1"
+
+    private BinaryTimetable() {} // Prevent instantiation
+
+    /**
+     * แปลงไฟล์ CSV เป็นไฟล์ binary (เขียนไฟล์ชั่วคราวแล้วย้ายทับ ผู้อ่านจึงไม่เห็นไฟล์ที่เขียนไม่เสร็จ)
+     *
+     * @throws IllegalArgumentException ถ้า CSV มีข้อมูลไม่ถูกต้อง (ระบุเลขบรรทัด)
+     */
+    public static void compile(Path csvFile, Path binaryFile) throws IOException {
+        Map<RouteColor, List<TripTime>> schedules = parseCsv(csvFile);
+
+        Path parent = binaryFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, binaryFile.getFileName().toString(), ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(MAGIC);
+            out.writeShort(schedules.size());
+            for (Map.Entry<RouteColor, List<TripTime>> entry : schedules.entrySet()) {
+                out.writeByte(entry.getKey().ordinal());
+                out.writeShort(entry.getValue().size());
+                for (TripTime time : entry.getValue()) {
+                    out.writeShort(time.tripNumber);
+                    out.writeShort(toMinutes(time.departure));
+                    out.writeShort(toMinutes(time.arrival));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * อ่านไฟล์ binary ผ่าน memory-mapped buffer
+     *
+     * @throws IOException ถ้าไฟล์ไม่ใช่รูปแบบนี้หรือข้อมูลไม่ครบ
+     */
+    public static Map<RouteColor, List<TripTime>> read(Path binaryFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return decode(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid timetable file: " + binaryFile, e);
+            }
+        }
+    }
+
+    // ==================== PRIVATE HELPER METHODS ====================
+
+    private static Map<RouteColor, List<TripTime>> decode(ByteBuffer buffer) throws IOException {
+        int magic = buffer.getInt();
+        if (magic != MAGIC && magic != MAGIC_V1) {
+            throw new IOException("Not a timetable file");
+        }
+        boolean hasTripNumbers = magic == MAGIC;
+
+        RouteColor[] colors = RouteColor.values();
+        Map<RouteColor, List<TripTime>> schedules = new EnumMap<>(RouteColor.class);
+        int routeCount = buffer.getShort();
+        for (int r = 0; r < routeCount; r++) {
+            RouteColor color = colors[buffer.get()];
+            int tripCount = buffer.getShort();
+            TripTime[] times = new TripTime[tripCount];
+            for (int t = 0; t < tripCount; t++) {
+                int tripNumber = hasTripNumbers ? buffer.getShort() : t + 1;
+                times[t] = new TripTime(tripNumber, fromMinutes(buffer.getShort()), fromMinutes(buffer.getShort()));
+            }
+            schedules.put(color, List.of(times));
+        }
+        return schedules;
+    }
+
+    private static Map<RouteColor, List<TripTime>> parseCsv(Path csvFile) throws IOException {
+        Map<RouteColor, TreeMap<Integer, TripTime>> trips = new EnumMap<>(RouteColor.class);
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("route_color")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected 4 columns");
+                }
+                try {
+                    RouteColor color = RouteColor.valueOf(fields[0].strip().toUpperCase());
+                    int tripNumber = Integer.parseInt(fields[1].strip());
+                    if (tripNumber < 1 || tripNumber > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("trip number out of range " + tripNumber);
+                    }
+                    LocalTime departure = LocalTime.parse(fields[2].strip());
+                    LocalTime arrival = LocalTime.parse(fields[3].strip());
+                    if (arrival.isBefore(departure)) {
+                        throw new IllegalArgumentException("arrival before departure");
+                    }
+                    TripTime previous = trips.computeIfAbsent(color, c -> new TreeMap<>())
+                            .put(tripNumber, new TripTime(tripNumber, departure, arrival));
+                    if (previous != null) {
+                        throw new IllegalArgumentException("duplicate trip number " + tripNumber);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        // เรียงตาม trip_number (เลขเที่ยวอยู่ใน TripTime ไม่ได้มาจากลำดับในรายการ)
+        Map<RouteColor, List<TripTime>> schedules = new EnumMap<>(RouteColor.class);
+        trips.forEach((color, byNumber) -> schedules.put(color, new ArrayList<>(byNumber.values())));
+        return schedules;
+    }
+
+    private static int toMinutes(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static LocalTime fromMinutes(int minutes) {
+        return LocalTime.of(minutes / 60, minutes % 60);
+    }
+}
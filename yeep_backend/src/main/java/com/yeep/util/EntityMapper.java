@@ -5,11 +5,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.yeep.dto.BookingResponse;
+import com.yeep.dto.SeatMapResponse;
 import com.yeep.dto.SeatResponse;
 import com.yeep.dto.TripResponse;
 import com.yeep.entity.Booking;
 import com.yeep.entity.BusRoute;
 import com.yeep.entity.BusTrip;
+import com.yeep.repository.BookingRow;
 import com.yeep.service.BusTripService.TripWithAvailability;
 
 /**
@@ -19,8 +21,6 @@ import com.yeep.service.BusTripService.TripWithAvailability;
 public class EntityMapper {
     
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
-    private static final int TOTAL_ROWS = 10;
-    private static final String[] SEAT_COLUMNS = {"A", "B"};
     
     private EntityMapper() {} // Prevent instantiation
     
@@ -37,6 +37,7 @@ public class EntityMapper {
         response.setArrivalTime(trip.getArrivalTime().format(TIME_FORMATTER));
         response.setTripDate(trip.getTripDate().toString());
         response.setTotalSeats(trip.getTotalSeats());
+        response.setCancelled(trip.isCancelled());
         
         // Add route info if available
         BusRoute route = trip.getRoute();
@@ -110,30 +111,64 @@ public class EntityMapper {
     }
     
     /**
-     * Convert list of Bookings to list of BookingResponse (with trip info)
+     * Convert BookingRow projection to BookingResponse DTO (with trip info, no entity loading)
      */
-    public static List<BookingResponse> toBookingResponseListWithTrips(List<Booking> bookings) {
-        return bookings.stream()
-                .map(EntityMapper::toBookingResponseWithTrip)
+    public static BookingResponse toBookingResponse(BookingRow row) {
+        BookingResponse response = new BookingResponse();
+        response.setId(row.id());
+        response.setBookingCode(row.bookingCode());
+        response.setSeatNumber(row.seatNumber());
+        response.setStatus(row.status());
+        response.setBookedAt(row.bookedAt().toString());
+        if (row.cancelledAt() != null) {
+            response.setCancelledAt(row.cancelledAt().toString());
+        }
+
+        TripResponse trip = new TripResponse();
+        trip.setId(row.tripId());
+        trip.setTripNumber(row.tripNumber());
+        trip.setDepartureTime(row.departureTime().format(TIME_FORMATTER));
+        trip.setArrivalTime(row.arrivalTime().format(TIME_FORMATTER));
+        trip.setTripDate(row.tripDate().toString());
+        trip.setTotalSeats(row.totalSeats());
+        trip.setRouteName(row.routeName());
+        trip.setRouteColor(row.routeColor());
+        trip.setOrigin(row.origin());
+        trip.setDestination(row.destination());
+        response.setTrip(trip);
+        return response;
+    }
+    
+    /**
+     * Convert list of BookingRow projections to list of BookingResponse (with trip info)
+     */
+    public static List<BookingResponse> toBookingResponseListWithTrips(List<BookingRow> rows) {
+        return rows.stream()
+                .map(EntityMapper::toBookingResponse)
                 .toList();
     }
     
     /**
      * Generate all seat responses for a trip
-     * @param bookedSeats List of already booked seat numbers
+     * @param occupiedMask Bitmask of unavailable seats (booked or held, bit order from SeatLayout)
      * @return List of SeatResponse for all seats (20 seats: 1A-10B)
      */
-    public static List<SeatResponse> generateSeatResponses(List<String> bookedSeats) {
-        List<SeatResponse> seats = new ArrayList<>();
+    public static List<SeatResponse> generateSeatResponses(int occupiedMask) {
+        List<SeatResponse> seats = new ArrayList<>(SeatLayout.TOTAL_SEATS);
         
-        for (int row = 1; row <= TOTAL_ROWS; row++) {
-            for (String col : SEAT_COLUMNS) {
-                String seatNumber = row + col;
-                boolean isBooked = bookedSeats.contains(seatNumber);
-                seats.add(new SeatResponse(seatNumber, isBooked));
-            }
+        // ลำดับ bit ตรงกับลำดับที่นั่งในผัง (1A, 1B, 2A, ...) จึงไล่ bit ได้เลย
+        for (int i = 0; i < SeatLayout.TOTAL_SEATS; i++) {
+            boolean isBooked = (occupiedMask & (1 << i)) != 0;
+            seats.add(new SeatResponse(SeatLayout.seatNumberOf(i), isBooked));
         }
         
         return seats;
     }
+    
+    /**
+     * Create compact seat map from a bitmask of unavailable seats
+     */
+    public static SeatMapResponse toSeatMapResponse(Long tripId, int occupiedMask) {
+        return new SeatMapResponse(tripId, SeatLayout.LAYOUT_VERSION, SeatLayout.toHex(occupiedMask));
+    }
 }
@@ -0,0 +1,156 @@
+package com.yeep.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel for many short timeouts (e.g. seat holds)
+ *
+ * Timeouts are hashed into a ring of buckets by deadline. A single worker thread
+ * advances one bucket per tick and only looks at that bucket, so scheduling and
+ * cancelling are O(1) and expiry cost does not depend on how many timeouts are pending.
+ * Expiry tasks run on the worker thread and must be short.
+ */
+public class HashedTimingWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    private final long tickMillis;
+    private final int wheelMask;
+    private final List<Queue<Timeout>> buckets;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startTime;
+
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * @param name        Worker thread name
+     * @param tickMillis  Tick duration (resolution of timeouts)
+     * @param wheelSize   Number of buckets (rounded up to a power of two)
+     */
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.wheelMask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<>());
+        }
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Schedule a task to run once after the given delay
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the worker thread; pending timeouts are dropped
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    // ==================== WORKER ====================
+
+    private void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            transferPending(tickNanos);
+            expire(buckets.get((int) (tick & wheelMask)), deadline);
+            tick++;
+        }
+    }
+
+    private void transferPending(long tickNanos) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            long ticks = Math.max(calculated, tick); // deadline ที่ผ่านไปแล้วให้หมดอายุใน tick นี้
+            timeout.remainingRounds = (calculated - tick) / buckets.size();
+            buckets.get((int) (ticks & wheelMask)).add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long deadline) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                it.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel task failed", e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    // ==================== TIMEOUT HANDLE ====================
+
+    /**
+     * Handle of a scheduled task
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task; it is dropped lazily when the worker reaches its bucket
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
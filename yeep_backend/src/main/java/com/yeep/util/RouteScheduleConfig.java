@@ -1,7 +1,6 @@
 package com.yeep.util;
 
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +10,9 @@ import com.yeep.service.BusTripService.TripTime;
 /**
  * Configuration for bus route schedules (มทส. real data)
  * Replaces large switch statements with clean data structure
+ *
+ * ตารางเวลาในไฟล์นี้เป็นค่าเริ่มต้น (เลขเที่ยวตามลำดับในรายการ) TimetableLoader แทนที่ด้วยตารางเวลา
+ * จากไฟล์ได้ขณะระบบทำงาน (สลับ reference ทั้งก้อน ผู้อ่านไม่ต้อง lock และไม่เห็นตารางเวลาที่โหลดไม่เสร็จ)
  */
 public class RouteScheduleConfig {
     
@@ -18,10 +20,17 @@ public class RouteScheduleConfig {
         GREEN, PURPLE, ORANGE, RED, YELLOW, BLUE
     }
     
+    private static final RouteColor[] COLORS = RouteColor.values();
+    
     private static final Map<RouteColor, List<TripTime>> SCHEDULES = new EnumMap<>(RouteColor.class);
     
+    // ตารางเวลาที่ใช้อยู่ (เริ่มต้น = SCHEDULES)
+    private static volatile Map<RouteColor, List<TripTime>> activeSchedules;
+    
     static {
         initializeSchedules();
+        SCHEDULES.replaceAll((color, times) -> numbered(times));
+        activeSchedules = SCHEDULES;
     }
     
     private RouteScheduleConfig() {} // Prevent instantiation
@@ -100,20 +109,39 @@ public class RouteScheduleConfig {
     }
     
     /**
-     * Get trip times for a route color
+     * Get trip times for a route color (no allocation per call)
      * @param colorString Color name string (e.g., "green", "purple")
      * @return List of TripTime, or empty list if color not found
      */
     public static List<TripTime> getTripTimes(String colorString) {
         if (colorString == null) {
-            return new ArrayList<>();
+            return List.of();
         }
         
-        try {
-            RouteColor color = RouteColor.valueOf(colorString.toUpperCase());
-            return SCHEDULES.getOrDefault(color, new ArrayList<>());
-        } catch (IllegalArgumentException e) {
-            return new ArrayList<>();
+        for (RouteColor color : COLORS) {
+            if (color.name().equalsIgnoreCase(colorString)) {
+                return activeSchedules.getOrDefault(color, List.of());
+            }
+        }
+        return List.of();
+    }
+    
+    /**
+     * Replace the active schedules (e.g. loaded from a timetable file)
+     * @param schedules Trip times per route color, each with its trip number; colors not present have no trips
+     */
+    public static void replaceSchedules(Map<RouteColor, List<TripTime>> schedules) {
+        Map<RouteColor, List<TripTime>> copy = new EnumMap<>(RouteColor.class);
+        schedules.forEach((color, times) -> copy.put(color, List.copyOf(times)));
+        activeSchedules = copy;
+    }
+    
+    // Built-in trips are numbered by their position (1..n)
+    private static List<TripTime> numbered(List<TripTime> times) {
+        TripTime[] result = new TripTime[times.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new TripTime(i + 1, times.get(i).departure, times.get(i).arrival);
         }
+        return List.of(result);
     }
 }
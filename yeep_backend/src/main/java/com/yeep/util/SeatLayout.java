@@ -0,0 +1,94 @@
+package com.yeep.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seat layout of a bus (20 seats: 1A-10A, 1B-10B)
+ * Maps seat numbers to bit positions so seat sets can be stored as an int bitmask
+ */
+public class SeatLayout {
+
+    public static final int TOTAL_ROWS = 10;
+    public static final String[] SEAT_COLUMNS = {"A", "B"};
+    public static final int TOTAL_SEATS = TOTAL_ROWS * SEAT_COLUMNS.length;
+    public static final int ALL_SEATS_MASK = (1 << TOTAL_SEATS) - 1;
+
+    // Version of the seat layout (rows, columns and bit order); bump when any of them change
+    // so clients decoding seat bitmasks know which layout to use
+    public static final int LAYOUT_VERSION = 1;
+
+    // Number of hex digits needed for a seat bitmask
+    private static final int MASK_HEX_DIGITS = (TOTAL_SEATS + 3) / 4;
+
+    private SeatLayout() {} // Prevent instantiation
+
+    /**
+     * Get bit index of a seat number
+     * @param seatNumber Seat number such as "1A" or "10B"
+     * @return Bit index 0-19, or -1 if the seat does not exist in this layout
+     */
+    public static int indexOf(String seatNumber) {
+        if (seatNumber == null || seatNumber.length() < 2) {
+            return -1;
+        }
+
+        String rowPart = seatNumber.substring(0, seatNumber.length() - 1);
+        String colPart = seatNumber.substring(seatNumber.length() - 1).toUpperCase();
+
+        int row;
+        try {
+            row = Integer.parseInt(rowPart);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (row < 1 || row > TOTAL_ROWS) {
+            return -1;
+        }
+
+        for (int col = 0; col < SEAT_COLUMNS.length; col++) {
+            if (SEAT_COLUMNS[col].equals(colPart)) {
+                return (row - 1) * SEAT_COLUMNS.length + col;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Canonical form of a seat number ("1a" and "01A" -> "1A"), the form stored in the database
+     * @return Canonical seat number, or null if the seat does not exist in this layout
+     */
+    public static String normalize(String seatNumber) {
+        int index = indexOf(seatNumber);
+        return index < 0 ? null : seatNumberOf(index);
+    }
+
+    /**
+     * Get seat number of a bit index (inverse of indexOf)
+     */
+    public static String seatNumberOf(int index) {
+        int row = index / SEAT_COLUMNS.length + 1;
+        return row + SEAT_COLUMNS[index % SEAT_COLUMNS.length];
+    }
+
+    /**
+     * Encode a seat bitmask as fixed-width hex (e.g. 20 seats -> 5 digits, "00003" = 1A and 1B)
+     */
+    public static String toHex(int mask) {
+        String hex = Integer.toHexString(mask & ALL_SEATS_MASK);
+        return "0".repeat(MASK_HEX_DIGITS - hex.length()) + hex;
+    }
+
+    /**
+     * Convert a bitmask into seat numbers in layout order
+     */
+    public static List<String> toSeatNumbers(int mask) {
+        List<String> seats = new ArrayList<>(Integer.bitCount(mask));
+        for (int i = 0; i < TOTAL_SEATS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                seats.add(seatNumberOf(i));
+            }
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,54 @@
+-- ==================== BOOKING CODE SEQUENCE ====================
+-- แต่ละ nextval จองช่วงเลข booking code 100 เลข (ต้องตรงกับ BookingCodeGenerator.BLOCK_SIZE)
+-- ค่าที่ได้คือเลขสุดท้ายของช่วง เช่น nextval = 200 หมายถึงใช้ได้ P0101 - P0200
+CREATE SEQUENCE IF NOT EXISTS booking_code_seq INCREMENT BY 100 MINVALUE 0 START WITH 0;
+
+-- เลื่อน sequence ให้เกิน booking code ที่มีอยู่แล้ว (ไม่ถอยหลัง)
+SELECT setval('booking_code_seq', GREATEST(
+    (SELECT last_value FROM booking_code_seq),
+    (SELECT COALESCE(MAX(CAST(SUBSTRING(booking_code FROM 2) AS BIGINT)), 0)
+       FROM bookings WHERE booking_code ~ '^P[0-9]+$')));
+
+-- ==================== ENTITY ID SEQUENCE ====================
+-- BaseEntity ใช้ yeep_id_seq แบบ pooled (INCREMENT BY 50 = BaseEntity.ID_ALLOCATION_SIZE)
+-- เลื่อน sequence ให้เกิน id ที่มีอยู่แล้วจากสมัยที่ใช้ IDENTITY (ไม่ถอยหลัง)
+SELECT setval('yeep_id_seq', GREATEST(
+    (SELECT last_value FROM yeep_id_seq),
+    (SELECT COALESCE(MAX(id), 0) + 50 FROM (
+        SELECT id FROM users
+        UNION ALL SELECT id FROM bus_routes
+        UNION ALL SELECT id FROM bus_trips
+        UNION ALL SELECT id FROM bookings) ids)));
+
+-- ==================== BOOKING TRIP DATE ====================
+-- bookings.trip_date (partition key) เป็นสำเนาของวันที่เที่ยวรถ เติมให้การจองเดิมที่ยังไม่มีค่า
+-- (แปลง bookings และ bus_trips เป็นตารางแบ่ง partition ตาม trip_date ครั้งเดียวด้วย db/partition_by_trip_date.sql)
+UPDATE bookings b SET trip_date = t.trip_date
+  FROM bus_trips t
+ WHERE t.id = b.trip_id AND b.trip_date IS NULL;
+
+-- bookings.route_id เป็นสำเนาของสายรถของเที่ยวรถ (ใช้เรียงประวัติการจองตามสายรถด้วย index)
+UPDATE bookings b SET route_id = t.route_id
+  FROM bus_trips t
+ WHERE t.id = b.trip_id AND t.trip_date = b.trip_date AND b.route_id IS NULL;
+
+-- ==================== SEAT UNIQUENESS ====================
+-- หนึ่งที่นั่งต่อเที่ยวรถมีการจองที่ยืนยันแล้วได้แค่รายการเดียว (การจองที่ยกเลิกแล้วไม่นับ)
+-- BookingService insert ก่อนแล้วแปลง violation ของ index นี้เป็น "ที่นั่ง X ถูกจองแล้ว"
+CREATE UNIQUE INDEX IF NOT EXISTS uk_bookings_trip_seat_confirmed
+    ON bookings (trip_id, trip_date, seat_number) WHERE status = 'confirmed';
+
+-- ==================== BOOKING CODE UNIQUENESS ====================
+-- unique index บนตาราง partitioned ต้องมี partition key: booking code ไม่ซ้ำภายในวันเดียวกันของเที่ยวรถ
+-- (BookingCodeGenerator แจก code จาก booking_code_seq จึงไม่ซ้ำข้ามวันด้วย) ใช้ค้นการจองจาก booking code ด้วย
+DROP INDEX IF EXISTS idx_bookings_booking_code;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_bookings_code_trip_date ON bookings (booking_code, trip_date);
+
+-- ==================== BOOKING LOOKUP INDEXES ====================
+
+-- ประวัติการจองแบบแบ่งหน้า (keyset) หนึ่ง index ต่อแบบการเรียง: (user_id, คอลัมน์ที่เรียง, id)
+-- แต่ละหน้าเป็น index scan ที่เริ่มจาก cursor จึงเร็วเท่ากันทุกหน้าไม่ว่าประวัติจะยาวแค่ไหน
+CREATE INDEX IF NOT EXISTS idx_bookings_user_booked_at ON bookings (user_id, booked_at, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_status ON bookings (user_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_seat ON bookings (user_id, seat_number, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_user_route ON bookings (user_id, route_id, id);
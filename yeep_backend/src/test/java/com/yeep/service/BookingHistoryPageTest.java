@@ -0,0 +1,124 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.yeep.entity.User;
+import com.yeep.repository.BookingRepository;
+import com.yeep.repository.BookingRepositoryCustom.HistoryOrder;
+import com.yeep.repository.BookingRow;
+import com.yeep.repository.UserRepository;
+import com.yeep.service.BookingService.BookingPage;
+
+@ExtendWith(MockitoExtension.class)
+class BookingHistoryPageTest {
+
+    private static final String USERNAME = "somchai";
+    private static final Long USER_ID = 7L;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(USER_ID);
+        user.setUsername(USERNAME);
+        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void lastPageHasNoCursor() throws Exception {
+        when(bookingRepository.findHistoryPage(eq(USER_ID), eq(HistoryOrder.DATE), eq(true), isNull(), isNull(),
+                eq(3))).thenReturn(List.of(row(1, "2025-01-01T08:00")));
+
+        BookingPage page = bookingService.getUserBookingHistoryPage(USERNAME, "date", "desc", null, 2);
+
+        assertThat(page.bookings()).hasSize(1);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void dateCursorResumesAfterLastRowOfPage() throws Exception {
+        BookingRow first = row(30, "2025-01-03T09:00");
+        BookingRow last = row(20, "2025-01-02T10:15:30");
+        BookingRow extra = row(10, "2025-01-01T08:00");
+        when(bookingRepository.findHistoryPage(eq(USER_ID), eq(HistoryOrder.DATE), eq(true), isNull(), isNull(),
+                eq(3))).thenReturn(List.of(first, last, extra));
+
+        BookingPage page = bookingService.getUserBookingHistoryPage(USERNAME, "date", "desc", null, 2);
+        assertThat(page.bookings()).containsExactly(first, last);
+        assertThat(page.nextCursor()).isNotNull();
+
+        when(bookingRepository.findHistoryPage(eq(USER_ID), eq(HistoryOrder.DATE), eq(true), any(), any(),
+                eq(3))).thenReturn(List.of(extra));
+        BookingPage next = bookingService.getUserBookingHistoryPage(USERNAME, "date", "desc", page.nextCursor(), 2);
+
+        assertThat(next.bookings()).containsExactly(extra);
+        verify(bookingRepository).findHistoryPage(USER_ID, HistoryOrder.DATE, true, last.bookedAt(), 20L, 3);
+    }
+
+    @Test
+    void seatCursorKeepsSeparatorCharacters() throws Exception {
+        BookingRow last = new BookingRow(5L, "BK5", "1A|x", "confirmed", LocalDateTime.parse("2025-01-01T08:00"),
+                null, 1L, 1, LocalTime.of(8, 0), LocalTime.of(8, 30), LocalDate.of(2025, 1, 1), 20, 3L,
+                "สายสีแดง", "red", "A", "B");
+        when(bookingRepository.findHistoryPage(eq(USER_ID), eq(HistoryOrder.SEAT), eq(false), isNull(), isNull(),
+                eq(2))).thenReturn(List.of(last, row(6, "2025-01-01T09:00")));
+
+        BookingPage page = bookingService.getUserBookingHistoryPage(USERNAME, "seat", "asc", null, 1);
+        bookingService.getUserBookingHistoryPage(USERNAME, "seat", "asc", page.nextCursor(), 1);
+
+        verify(bookingRepository).findHistoryPage(USER_ID, HistoryOrder.SEAT, false, "1A|x", 5L, 2);
+    }
+
+    @Test
+    void cursorFromOtherSortIsRejected() throws Exception {
+        when(bookingRepository.findHistoryPage(eq(USER_ID), eq(HistoryOrder.DATE), anyBoolean(), isNull(), isNull(),
+                anyInt())).thenReturn(List.of(row(2, "2025-01-02T08:00"), row(1, "2025-01-01T08:00")));
+        String cursor = bookingService.getUserBookingHistoryPage(USERNAME, "date", "desc", null, 1).nextCursor();
+
+        assertThatThrownBy(() -> bookingService.getUserBookingHistoryPage(USERNAME, "status", "desc", cursor, 1))
+                .hasMessage("cursor ไม่ตรงกับการเรียงลำดับที่ขอ");
+        assertThatThrownBy(() -> bookingService.getUserBookingHistoryPage(USERNAME, "date", "asc", cursor, 1))
+                .hasMessage("cursor ไม่ตรงกับการเรียงลำดับที่ขอ");
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> bookingService.getUserBookingHistoryPage(USERNAME, "date", "desc", "%%%", 1))
+                .hasMessage("cursor ไม่ถูกต้อง");
+    }
+
+    private static BookingRow row(long id, String bookedAt) {
+        return new BookingRow(id, "BK" + id, "1A", "confirmed", LocalDateTime.parse(bookedAt), null,
+                1L, 1, LocalTime.of(8, 0), LocalTime.of(8, 30), LocalDate.of(2025, 1, 1), 20,
+                3L, "สายสีแดง", "red", "A", "B");
+    }
+}
@@ -0,0 +1,189 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yeep.entity.Booking;
+import com.yeep.repository.BookingRepository;
+import com.yeep.service.BookingSequencer.TripCommand;
+
+@ExtendWith(MockitoExtension.class)
+class BookingSequencerTest {
+
+    private static final Long TRIP_ID = 7L;
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 15);
+
+    @Mock
+    private BookingService bookingService;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Mock
+    private TripDateIndex tripDateIndex;
+
+    @InjectMocks
+    private BookingSequencer sequencer;
+
+    // ชื่อผู้ใช้ของคำสั่งในแต่ละ batch ที่ส่งให้ applyBatch ตามลำดับ
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    // จำนวนคำสั่งที่ applyBatch ครั้งที่ n ทำแล้ว (ไม่มี = ทั้ง batch)
+    private final List<Integer> processedPerCall = new ArrayList<>();
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sequencer, "batchSize", 3);
+        ReflectionTestUtils.setField(sequencer, "threads", 1);
+        sequencer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sequencer.shutdown();
+    }
+
+    @Test
+    void drainsQueuedCommandsInBatchesOfBatchSize() throws Exception {
+        stubApplyBatch();
+
+        // batch แรกค้างอยู่ระหว่างที่คำสั่งอื่นเข้าคิว คำสั่งที่รอจึงถูกรวมเป็น batch ละไม่เกิน 3 คำสั่ง
+        List<CompletableFuture<List<Booking>>> futures = new ArrayList<>();
+        futures.add(book("u1", "1A"));
+        assertThat(firstBatchStarted.await(2, TimeUnit.SECONDS)).isTrue();
+        futures.add(book("u2", "2A"));
+        futures.add(book("u3", "3A"));
+        futures.add(book("u4", "4A"));
+        futures.add(book("u5", "5A"));
+        releaseFirstBatch.countDown();
+
+        for (CompletableFuture<List<Booking>> future : futures) {
+            assertThat(future.get(2, TimeUnit.SECONDS)).hasSize(1);
+        }
+        assertThat(batches).containsExactly(List.of("u1"), List.of("u2", "u3", "u4"), List.of("u5"));
+        awaitNoLanes();
+    }
+
+    @Test
+    void carriesUnprocessedCommandsOverToNextBatch() throws Exception {
+        stubApplyBatch();
+        processedPerCall.addAll(List.of(1, 1));
+
+        List<CompletableFuture<List<Booking>>> futures = new ArrayList<>();
+        futures.add(book("u1", "1A"));
+        assertThat(firstBatchStarted.await(2, TimeUnit.SECONDS)).isTrue();
+        futures.add(book("u2", "2A"));
+        futures.add(book("u3", "3A"));
+        futures.add(book("u4", "4A"));
+        futures.add(book("u5", "5A"));
+        releaseFirstBatch.countDown();
+
+        for (CompletableFuture<List<Booking>> future : futures) {
+            assertThat(future.get(2, TimeUnit.SECONDS)).hasSize(1);
+        }
+        // batch ที่สองทำได้คำสั่งเดียว u3 และ u4 ถูกส่งซ้ำนำหน้า batch ถัดไปตามลำดับเดิม
+        assertThat(batches).containsExactly(
+                List.of("u1"), List.of("u2", "u3", "u4"), List.of("u3", "u4", "u5"));
+        awaitNoLanes();
+    }
+
+    @Test
+    void fallsBackToSingleCommandsWhenBatchFails() throws Exception {
+        when(bookingService.applyBatch(eq(TRIP_ID), anyList())).thenThrow(new Exception("rollback"));
+        Booking confirmed = booking("YP-0001");
+        Booking cancelled = booking("YP-0002");
+        when(bookingService.createMultipleBookings(TRIP_ID, "u1", List.of("1A"))).thenReturn(List.of(confirmed));
+        when(bookingService.createMultipleBookings(TRIP_ID, "u2", List.of("1A")))
+                .thenThrow(new Exception("ที่นั่ง 1A ถูกจองแล้ว"));
+        when(bookingRepository.findTripIdById(5L, DATE)).thenReturn(Optional.of(TRIP_ID));
+        when(bookingService.cancelBooking(TRIP_ID, 5L, "u3")).thenReturn(cancelled);
+
+        CompletableFuture<List<Booking>> first = book("u1", "1A");
+        CompletableFuture<List<Booking>> second = book("u2", "1A");
+        CompletableFuture<Booking> cancel = sequencer.submitCancel(5L, DATE, "u3");
+
+        // คำสั่งแต่ละตัวได้ผลของตัวเอง ความผิดพลาดของคำสั่งหนึ่งไม่กระทบคำสั่งอื่น
+        assertThat(first.get(2, TimeUnit.SECONDS)).containsExactly(confirmed);
+        assertThatThrownBy(() -> second.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("ที่นั่ง 1A ถูกจองแล้ว");
+        assertThat(cancel.get(2, TimeUnit.SECONDS)).isSameAs(cancelled);
+        verify(bookingService, never()).promoteWaitlist(TRIP_ID);
+        awaitNoLanes();
+    }
+
+    @Test
+    void rejectsCancelOfUnknownBooking() {
+        when(bookingRepository.findTripIdById(9L, DATE)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> sequencer.submitCancel(9L, DATE, "u1")).hasMessage("ไม่พบการจอง");
+        assertThat(sequencer.laneCount()).isZero();
+    }
+
+    private void stubApplyBatch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(bookingService.applyBatch(eq(TRIP_ID), anyList())).thenAnswer(invocation -> {
+            List<TripCommand> batch = invocation.getArgument(1);
+            int call = calls.getAndIncrement();
+            batches.add(batch.stream().map(TripCommand::getUsername).toList());
+            if (call == 0) {
+                firstBatchStarted.countDown();
+                releaseFirstBatch.await(2, TimeUnit.SECONDS);
+            }
+
+            int processed = call < processedPerCall.size() ? processedPerCall.get(call) : batch.size();
+            for (TripCommand command : batch.subList(0, processed)) {
+                command.setBookings(List.of(booking(command.getUsername() + "-" + command.getSeatNumbers().get(0))));
+            }
+            return processed;
+        });
+    }
+
+    private CompletableFuture<List<Booking>> book(String username, String seatNumber) {
+        return sequencer.submitBooking(TRIP_ID, username, List.of(seatNumber));
+    }
+
+    // lane ถูกลบหลัง worker ปล่อย lane ซึ่งอาจเกิดหลังผลของคำสั่งสุดท้ายถูกส่งไปแล้วเล็กน้อย
+    private void awaitNoLanes() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sequencer.laneCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sequencer.laneCount()).isZero();
+    }
+
+    private static Booking booking(String bookingCode) {
+        Booking booking = new Booking();
+        booking.setBookingCode(bookingCode);
+        return booking;
+    }
+}
@@ -0,0 +1,154 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+class IdempotencyStoreTest {
+
+    private static final String SCOPE = "POST /api/bookings/book";
+    private static final long WAIT_MILLIS = 1000;
+
+    private IdempotencyStore store;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(100, 60);
+    }
+
+    @Test
+    void replaysCompletedResponseWithHeader() {
+        ResponseEntity<Map<String, Object>> first = execute("key-1", "u1", body("1A"), completed("YP-0001"));
+        ResponseEntity<Map<String, Object>> second = execute("key-1", "u1", body("1A"), completed("YP-0002"));
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+        assertThat(second.getBody()).isEqualTo(first.getBody());
+        assertThat(second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void rejectsSameKeyWithDifferentBody() {
+        execute("key-1", "u1", body("1A"), completed("YP-0001"));
+
+        ResponseEntity<Map<String, Object>> reused = execute("key-1", "u1", body("2A"), completed("YP-0002"));
+
+        assertThat(calls).hasValue(1);
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void sameBodyWithDifferentKeyOrderIsReplayed() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("tripId", 7);
+        first.put("seatNumbers", List.of("1A"));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("seatNumbers", List.of("1A"));
+        second.put("tripId", 7);
+
+        execute("key-1", "u1", first, completed("YP-0001"));
+        ResponseEntity<Map<String, Object>> replayed = execute("key-1", "u1", second, completed("YP-0002"));
+
+        assertThat(calls).hasValue(1);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void keysAreSeparatedPerUser() {
+        execute("key-1", "u1", body("1A"), completed("YP-0001"));
+        ResponseEntity<Map<String, Object>> other = execute("key-1", "u2", body("1A"), completed("YP-0002"));
+
+        assertThat(calls).hasValue(2);
+        assertThat(other.getBody()).containsEntry("bookingCode", "YP-0002");
+    }
+
+    @Test
+    void duplicateOfPendingRequestWaitsForSameResultWithoutRunningAgain() {
+        CompletableFuture<ResponseEntity<Map<String, Object>>> pending = new CompletableFuture<>();
+
+        // คำขอแรกและคำขอซ้ำรอเกินเวลา: ได้ timeoutResponse ที่ไม่มี header Idempotent-Replayed
+        ResponseEntity<Map<String, Object>> first = store.execute("key-1", SCOPE, "u1", body("1A"),
+                action(() -> pending), 20, IdempotencyStoreTest::timeout);
+        ResponseEntity<Map<String, Object>> retry = store.execute("key-1", SCOPE, "u1", body("1A"),
+                action(() -> pending), 20, IdempotencyStoreTest::timeout);
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(retry.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+
+        // เมื่อคำขอแรกเสร็จ คำขอซ้ำได้ผลของคำขอแรก
+        pending.complete(ok("YP-0001"));
+        ResponseEntity<Map<String, Object>> replayed = execute("key-1", "u1", body("1A"), completed("YP-0002"));
+
+        assertThat(calls).hasValue(1);
+        assertThat(replayed.getBody()).containsEntry("bookingCode", "YP-0001");
+        assertThat(replayed.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void failedResponseIsNotStored() {
+        execute("key-1", "u1", body("1A"), () -> CompletableFuture.completedFuture(
+                ResponseEntity.badRequest().body(Map.of("success", false))));
+        ResponseEntity<Map<String, Object>> retried = execute("key-1", "u1", body("1A"), completed("YP-0001"));
+
+        assertThat(calls).hasValue(2);
+        assertThat(retried.getBody()).containsEntry("bookingCode", "YP-0001");
+        assertThat(retried.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+    }
+
+    @Test
+    void evictsOldestCompletedEntryButKeepsPendingOnes() {
+        store = new IdempotencyStore(1, 60);
+        CompletableFuture<ResponseEntity<Map<String, Object>>> pending = new CompletableFuture<>();
+        store.execute("pending", SCOPE, "u1", body("1A"), action(() -> pending), 10, IdempotencyStoreTest::timeout);
+        execute("done-1", "u1", body("2A"), completed("YP-0002"));
+        execute("done-2", "u1", body("3A"), completed("YP-0003"));
+
+        // เต็มแล้ว: done-1 ถูกตัด รายการที่ยังรอผลอยู่ไม่ถูกตัดแม้จะเก่ากว่า
+        assertThat(store.size()).isEqualTo(2);
+        store.execute("pending", SCOPE, "u1", body("1A"), action(() -> pending), 10, IdempotencyStoreTest::timeout);
+        assertThat(calls).hasValue(3);
+        execute("done-1", "u1", body("2A"), completed("YP-0004"));
+        assertThat(calls).hasValue(4);
+    }
+
+    private ResponseEntity<Map<String, Object>> execute(String key, String username, Object body,
+            Supplier<CompletableFuture<ResponseEntity<Map<String, Object>>>> result) {
+        return store.execute(key, SCOPE, username, body, action(result), WAIT_MILLIS, IdempotencyStoreTest::timeout);
+    }
+
+    private Supplier<CompletableFuture<ResponseEntity<Map<String, Object>>>> action(
+            Supplier<CompletableFuture<ResponseEntity<Map<String, Object>>>> result) {
+        return () -> {
+            calls.incrementAndGet();
+            return result.get();
+        };
+    }
+
+    private static Supplier<CompletableFuture<ResponseEntity<Map<String, Object>>>> completed(String bookingCode) {
+        return () -> CompletableFuture.completedFuture(ok(bookingCode));
+    }
+
+    private static ResponseEntity<Map<String, Object>> ok(String bookingCode) {
+        return ResponseEntity.ok(Map.of("success", true, "bookingCode", bookingCode));
+    }
+
+    private static ResponseEntity<Map<String, Object>> timeout() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("success", false));
+    }
+
+    private static Map<String, Object> body(String seatNumber) {
+        return Map.of("tripId", 7, "seatNumbers", List.of(seatNumber));
+    }
+}
@@ -0,0 +1,127 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yeep.dto.JourneyResponse;
+import com.yeep.dto.TripResponse;
+import com.yeep.entity.BusRoute;
+import com.yeep.entity.BusTrip;
+import com.yeep.service.BusTripService.TripWithAvailability;
+
+@ExtendWith(MockitoExtension.class)
+class JourneyPlannerTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 15);
+    private static final String DORM = "หอพัก S4";
+    private static final String CLASSROOM = "อาคารเรียนรวม 1";
+    private static final String TERMINAL = "อาคารขนส่ง";
+
+    @Mock
+    private LocationIndex locationIndex;
+
+    @Mock
+    private BusTripService busTripService;
+
+    @InjectMocks
+    private JourneyPlanner journeyPlanner;
+
+    private final List<TripWithAvailability> redTrips = new ArrayList<>();
+    private final List<TripWithAvailability> blueTrips = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(journeyPlanner, "minTransferMinutes", 2);
+        ReflectionTestUtils.setField(journeyPlanner, "maxCachedDates", 16);
+
+        // สายสีแดง หอพัก → อาคารเรียน, สายสีน้ำเงิน อาคารเรียน → อาคารขนส่ง (ต้องต่อรถหนึ่งครั้ง)
+        BusRoute red = route(1L, "สายสีแดง", DORM, CLASSROOM);
+        BusRoute blue = route(2L, "สายสีน้ำเงิน", CLASSROOM, TERMINAL);
+        redTrips.add(trip(11L, red, "07:00", "07:20", 20));
+        redTrips.add(trip(12L, red, "07:30", "07:50", 20));
+        blueTrips.add(trip(21L, blue, "07:21", "07:40", 20)); // ต่อไม่ทัน (ต้องเผื่อ 2 นาที)
+        blueTrips.add(trip(22L, blue, "07:25", "07:45", 20));
+        blueTrips.add(trip(23L, blue, "08:00", "08:20", 20));
+
+        when(locationIndex.getRoutes()).thenReturn(List.of(red, blue));
+        when(busTripService.getTripsWithAvailability(1L, DATE)).thenReturn(redTrips);
+        when(busTripService.getTripsWithAvailability(2L, DATE)).thenReturn(blueTrips);
+    }
+
+    @Test
+    void transfersToFirstConnectionAfterMinTransferTime() throws Exception {
+        List<JourneyResponse> journeys = journeyPlanner.plan(DORM, TERMINAL, DATE, LocalTime.of(6, 50), 1, 2);
+
+        assertThat(journeys).hasSize(1);
+        JourneyResponse journey = journeys.get(0);
+        assertThat(journey.getDepartureTime()).isEqualTo("07:00");
+        assertThat(journey.getArrivalTime()).isEqualTo("07:45");
+        assertThat(journey.getDurationMinutes()).isEqualTo(45);
+        assertThat(journey.getTransfers()).isEqualTo(1);
+        assertThat(journey.getLegs()).extracting(TripResponse::getId).containsExactly(11L, 22L);
+    }
+
+    @Test
+    void skipsConnectionWithoutEnoughSeats() throws Exception {
+        blueTrips.set(1, trip(22L, blueTrips.get(1).trip.getRoute(), "07:25", "07:45", 1));
+
+        List<JourneyResponse> journeys = journeyPlanner.plan(DORM, TERMINAL, DATE, LocalTime.of(6, 50), 2, 2);
+
+        assertThat(journeys).hasSize(1);
+        assertThat(journeys.get(0).getLegs()).extracting(TripResponse::getId).containsExactly(11L, 23L);
+        assertThat(journeys.get(0).getArrivalTime()).isEqualTo("08:20");
+    }
+
+    @Test
+    void noJourneyWhenTransfersAreNotAllowed() throws Exception {
+        assertThat(journeyPlanner.plan(DORM, TERMINAL, DATE, LocalTime.of(6, 50), 1, 0)).isEmpty();
+    }
+
+    @Test
+    void noJourneyAfterLastConnection() throws Exception {
+        // ค้นหาหยุดตั้งแต่รอบแรก รอบที่ไม่ได้ค้นหาต้องไม่ถูกนับเป็นเส้นทาง
+        assertThat(journeyPlanner.plan(DORM, TERMINAL, DATE, LocalTime.of(7, 40), 1, 2)).isEmpty();
+    }
+
+    @Test
+    void directLegNeedsNoTransfer() throws Exception {
+        List<JourneyResponse> journeys = journeyPlanner.plan(DORM, CLASSROOM, DATE, LocalTime.of(7, 10), 1, 3);
+
+        assertThat(journeys).hasSize(1);
+        assertThat(journeys.get(0).getTransfers()).isZero();
+        assertThat(journeys.get(0).getLegs()).extracting(TripResponse::getId).containsExactly(12L);
+    }
+
+    @Test
+    void rejectsUnknownStop() {
+        assertThatThrownBy(() -> journeyPlanner.plan(DORM, "ไม่มีที่นี่", DATE, LocalTime.of(7, 0), 1, 2))
+                .hasMessage("ไม่พบสถานที่ปลายทาง");
+    }
+
+    private static BusRoute route(Long id, String name, String origin, String destination) {
+        BusRoute route = new BusRoute(name, "red", origin, destination, true, "07:00-20:00");
+        route.setId(id);
+        return route;
+    }
+
+    private static TripWithAvailability trip(Long id, BusRoute route, String departure, String arrival,
+            int availableSeats) {
+        BusTrip trip = new BusTrip(route, id.intValue(), LocalTime.parse(departure), LocalTime.parse(arrival), DATE);
+        trip.setId(id);
+        return new TripWithAvailability(trip, availableSeats, trip.getTotalSeats() - availableSeats);
+    }
+}
@@ -0,0 +1,146 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yeep.event.SeatsReleasedEvent;
+import com.yeep.repository.BookingRepository;
+
+@ExtendWith(MockitoExtension.class)
+class SeatInventoryTest {
+
+    private static final Long TRIP_ID = 1L;
+    private static final LocalDate TRIP_DATE = LocalDate.of(2025, 1, 15);
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private TripDateIndex tripDateIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private SeatInventory seatInventory;
+
+    @BeforeEach
+    void setUp() {
+        when(tripDateIndex.dateOf(TRIP_ID)).thenReturn(Optional.of(TRIP_DATE));
+        when(bookingRepository.findBookedSeatsByTripId(TRIP_ID, TRIP_DATE)).thenReturn(List.of("1A"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loadsBookedSeatsOnFirstUse() {
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A");
+    }
+
+    @Test
+    void reserveRejectsBookedSeat() throws Exception {
+        int mask = SeatInventory.toMask(List.of("1A", "2A"));
+
+        assertThatThrownBy(() -> seatInventory.reserve(TRIP_ID, mask))
+                .hasMessageContaining("1A");
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A");
+    }
+
+    @Test
+    void reserveIsReleasedWhenTransactionRollsBack() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        seatInventory.reserve(TRIP_ID, SeatInventory.toMask(List.of("2A", "2B")));
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A", "2A", "2B");
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A");
+        // ที่นั่งว่างอยู่แล้วก่อน transaction จึงไม่ต้องแจ้งคิวรอ
+        verify(eventPublisher, never()).publishEvent(any(SeatsReleasedEvent.class));
+    }
+
+    @Test
+    void reserveIsKeptWhenTransactionCommits() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        seatInventory.reserve(TRIP_ID, SeatInventory.toMask(List.of("2A")));
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A", "2A");
+    }
+
+    @Test
+    void releaseAfterCommitFreesSeatOnlyOnCommit() throws Exception {
+        int mask = SeatInventory.toMask(List.of("1A"));
+        seatInventory.getBookedMask(TRIP_ID);
+
+        TransactionSynchronizationManager.initSynchronization();
+        seatInventory.releaseAfterCommit(TRIP_ID, mask);
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A");
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).isEmpty();
+        verify(eventPublisher).publishEvent(any(SeatsReleasedEvent.class));
+    }
+
+    @Test
+    void heldSeatsBlockReserveUntilReleased() throws Exception {
+        int mask = SeatInventory.toMask(List.of("3A"));
+        seatInventory.hold(TRIP_ID, mask);
+
+        assertThatThrownBy(() -> seatInventory.reserve(TRIP_ID, mask)).hasMessageContaining("3A");
+        assertThat(seatInventory.countHeldSeats(TRIP_ID)).isEqualTo(1);
+
+        seatInventory.releaseHold(TRIP_ID, mask);
+        seatInventory.reserve(TRIP_ID, mask);
+
+        assertThat(seatInventory.countHeldSeats(TRIP_ID)).isZero();
+        assertThat(seatInventory.getBookedSeats(TRIP_ID)).containsExactly("1A", "3A");
+    }
+
+    @Test
+    void evictBeforeDropsOnlyPastTrips() {
+        Long nextDayTrip = 2L;
+        when(tripDateIndex.dateOf(nextDayTrip)).thenReturn(Optional.of(TRIP_DATE.plusDays(1)));
+        seatInventory.getBookedMask(TRIP_ID);
+        seatInventory.getBookedMask(nextDayTrip);
+
+        assertThat(seatInventory.evictBefore(TRIP_DATE.plusDays(1))).isEqualTo(1);
+
+        assertThat(seatInventory.isLoaded(TRIP_ID)).isFalse();
+        assertThat(seatInventory.isLoaded(nextDayTrip)).isTrue();
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.yeep.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yeep.entity.BusTrip;
+import com.yeep.entity.WaitlistEntry;
+import com.yeep.repository.WaitlistRepository;
+
+@ExtendWith(MockitoExtension.class)
+class WaitlistServiceTest {
+
+    private static final Long TRIP_ID = 7L;
+    private static final Long OTHER_TRIP_ID = 8L;
+
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @InjectMocks
+    private WaitlistService waitlistService;
+
+    private final BusTrip trip = new BusTrip();
+
+    @BeforeEach
+    void setUp() {
+        trip.setId(TRIP_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rebuildOrdersEntriesByIdPerTrip() {
+        rebuild(new Object[] { 5L, TRIP_ID }, new Object[] { 2L, TRIP_ID }, new Object[] { 3L, OTHER_TRIP_ID },
+                new Object[] { 9L, TRIP_ID });
+        stubWaiting(2L, 5L, 9L);
+
+        assertThat(waitlistService.getPosition(TRIP_ID, 2L)).isEqualTo(1);
+        assertThat(waitlistService.getPosition(TRIP_ID, 5L)).isEqualTo(2);
+        assertThat(waitlistService.getPosition(TRIP_ID, 9L)).isEqualTo(3);
+        assertThat(waitlistService.getPosition(TRIP_ID, 3L)).isZero();
+        assertThat(pollAll()).containsExactly(2L, 5L, 9L);
+        assertThat(waitlistService.hasWaiting(TRIP_ID)).isFalse();
+        assertThat(waitlistService.hasWaiting(OTHER_TRIP_ID)).isTrue();
+    }
+
+    @Test
+    void pollSkipsEntriesThatAreNoLongerWaiting() {
+        rebuild(new Object[] { 1L, TRIP_ID }, new Object[] { 2L, TRIP_ID });
+        WaitlistEntry left = entry(1L);
+        left.setStatus(WaitlistService.STATUS_CANCELLED);
+        when(waitlistRepository.findById(1L)).thenReturn(Optional.of(left));
+        stubWaiting(2L);
+
+        assertThat(waitlistService.pollNext(TRIP_ID)).map(WaitlistEntry::getId).contains(2L);
+    }
+
+    @Test
+    void insertAfterPollingCompactsAndGrowsInOrder() {
+        // ความจุเริ่มต้น 8 ช่อง: เติมเต็มแล้วดึงออก 5 รายการ การ insert ครั้งถัดไปต้องเลื่อนข้อมูลไปต้น array
+        Object[][] rows = new Object[8][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] { (long) i + 1, TRIP_ID };
+        }
+        rebuild(rows);
+        stubWaiting(1L, 2L, 3L, 4L, 5L);
+        for (int i = 0; i < 5; i++) {
+            waitlistService.pollNext(TRIP_ID);
+        }
+
+        waitlistService.putBack(entry(4L));
+        waitlistService.putBack(entry(20L));
+        assertThat(positions(4L, 6L, 7L, 8L, 20L)).containsExactly(1, 2, 3, 4, 5);
+
+        // เกินความจุ: ขยาย array โดยลำดับคงเดิม
+        for (long id = 9; id <= 19; id++) {
+            waitlistService.putBack(entry(id));
+        }
+        assertThat(waitlistService.getPosition(TRIP_ID, 4L)).isEqualTo(1);
+        assertThat(waitlistService.getPosition(TRIP_ID, 9L)).isEqualTo(5);
+        assertThat(waitlistService.getPosition(TRIP_ID, 20L)).isEqualTo(16);
+    }
+
+    @Test
+    void rollbackReinsertsPolledEntryAtOriginalPosition() {
+        rebuild(new Object[] { 1L, TRIP_ID }, new Object[] { 2L, TRIP_ID }, new Object[] { 3L, TRIP_ID });
+        stubWaiting(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(waitlistService.pollNext(TRIP_ID)).map(WaitlistEntry::getId).contains(1L);
+        assertThat(waitlistService.getPosition(TRIP_ID, 1L)).isZero();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(positions(1L, 2L, 3L)).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void commitKeepsPolledEntryOutOfQueue() {
+        rebuild(new Object[] { 1L, TRIP_ID }, new Object[] { 2L, TRIP_ID });
+        stubWaiting(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        waitlistService.pollNext(TRIP_ID);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(positions(1L, 2L)).containsExactly(0, 1);
+    }
+
+    private void rebuild(Object[]... rows) {
+        when(waitlistRepository.findWaitingQueue()).thenReturn(List.of(rows));
+        waitlistService.rebuildQueues();
+    }
+
+    private void stubWaiting(Long... entryIds) {
+        for (Long entryId : entryIds) {
+            when(waitlistRepository.findById(entryId)).thenReturn(Optional.of(entry(entryId)));
+        }
+    }
+
+    private List<Long> pollAll() {
+        List<Long> polled = new ArrayList<>();
+        Optional<WaitlistEntry> next;
+        while ((next = waitlistService.pollNext(TRIP_ID)).isPresent()) {
+            polled.add(next.get().getId());
+        }
+        return polled;
+    }
+
+    private List<Integer> positions(Long... entryIds) {
+        List<Integer> positions = new ArrayList<>();
+        for (Long entryId : entryIds) {
+            positions.add(waitlistService.getPosition(TRIP_ID, entryId));
+        }
+        return positions;
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private WaitlistEntry entry(Long id) {
+        WaitlistEntry entry = new WaitlistEntry(trip, null);
+        entry.setId(id);
+        return entry;
+    }
+}
@@ -0,0 +1,106 @@
+package com.yeep.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yeep.service.BusTripService.TripTime;
+import com.yeep.util.RouteScheduleConfig.RouteColor;
+
+class BinaryTimetableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compiledFileReadsBackSameTrips() throws IOException {
+        Path csv = writeCsv(
+                "route_color,trip_number,departure_time,arrival_time",
+                "# ตารางเวลาทดสอบ",
+                "green,2,08:00,08:20",
+                "",
+                "green,1,07:07,07:27",
+                "red,5,23:40,23:59");
+        Path bin = dir.resolve("timetable/timetable.bin");
+
+        BinaryTimetable.compile(csv, bin);
+        Map<RouteColor, List<TripTime>> schedules = BinaryTimetable.read(bin);
+
+        assertThat(schedules).containsOnlyKeys(RouteColor.GREEN, RouteColor.RED);
+        assertTrip(schedules.get(RouteColor.GREEN).get(0), 1, "07:07", "07:27");
+        assertTrip(schedules.get(RouteColor.GREEN).get(1), 2, "08:00", "08:20");
+        // เลขเที่ยวจาก CSV ถูกเก็บไว้ตามเดิม ไม่ใช่ลำดับในรายการ
+        assertTrip(schedules.get(RouteColor.RED).get(0), 5, "23:40", "23:59");
+        try (Stream<Path> files = Files.list(bin.getParent())) {
+            assertThat(files).containsExactly(bin); // ไม่เหลือไฟล์ชั่วคราว
+        }
+    }
+
+    @Test
+    void readsVersionOneFileWithPositionalTripNumbers() throws IOException {
+        Path bin = dir.resolve("v1.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(bin))) {
+            out.writeInt(0x59545431); // "YTT1"
+            out.writeShort(1);
+            out.writeByte(RouteColor.BLUE.ordinal());
+            out.writeShort(2);
+            out.writeShort(9 * 60);
+            out.writeShort(9 * 60 + 30);
+            out.writeShort(10 * 60);
+            out.writeShort(10 * 60 + 30);
+        }
+
+        List<TripTime> blue = BinaryTimetable.read(bin).get(RouteColor.BLUE);
+
+        assertTrip(blue.get(0), 1, "09:00", "09:30");
+        assertTrip(blue.get(1), 2, "10:00", "10:30");
+    }
+
+    @Test
+    void rejectsCsvWithDuplicateTripNumber() throws IOException {
+        Path csv = writeCsv("green,1,07:00,07:20", "green,1,08:00,08:20");
+
+        assertThatThrownBy(() -> BinaryTimetable.compile(csv, dir.resolve("out.bin")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Line 2:");
+        assertThat(Files.exists(dir.resolve("out.bin"))).isFalse();
+    }
+
+    @Test
+    void rejectsCsvWithArrivalBeforeDeparture() throws IOException {
+        Path csv = writeCsv("purple,1,09:00,08:00");
+
+        assertThatThrownBy(() -> BinaryTimetable.compile(csv, dir.resolve("out.bin")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Line 1");
+    }
+
+    @Test
+    void rejectsFileThatIsNotATimetable() throws IOException {
+        Path bin = dir.resolve("other.bin");
+        Files.write(bin, new byte[] { 1, 2, 3, 4, 5, 6 });
+
+        assertThatThrownBy(() -> BinaryTimetable.read(bin)).isInstanceOf(IOException.class);
+    }
+
+    private Path writeCsv(String... lines) throws IOException {
+        return Files.write(dir.resolve("timetable.csv"), List.of(lines));
+    }
+
+    private static void assertTrip(TripTime time, int tripNumber, String departure, String arrival) {
+        assertThat(time.tripNumber).isEqualTo(tripNumber);
+        assertThat(time.departure).isEqualTo(LocalTime.parse(departure));
+        assertThat(time.arrival).isEqualTo(LocalTime.parse(arrival));
+    }
+}
@@ -0,0 +1,87 @@
+package com.yeep.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HashedTimingWheelTest {
+
+    private HashedTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 8 buckets x 10 ms: timeouts longer than 80 ms need more than one round of the wheel
+        wheel = new HashedTimingWheel("test-wheel", 10, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void runsTaskAfterDelay() throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule(expired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(expired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    void runsTaskLongerThanOneRound() throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule(expired::countDown, 250, TimeUnit.MILLISECONDS);
+
+        assertThat(expired.await(3, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(250);
+    }
+
+    @Test
+    void runsTasksInDeadlineOrder() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch expired = new CountDownLatch(3);
+
+        wheel.schedule(() -> { order.add(3); expired.countDown(); }, 150, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(1); expired.countDown(); }, 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(2); expired.countDown(); }, 90, TimeUnit.MILLISECONDS);
+
+        assertThat(expired.await(3, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void cancelledTaskDoesNotRun() throws Exception {
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch laterRan = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(cancelledRan::countDown, 30, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        wheel.schedule(laterRan::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertThat(laterRan.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isCancelled()).isTrue();
+        assertThat(cancelledRan.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failingTaskDoesNotStopWorker() throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+
+        wheel.schedule(() -> { throw new IllegalStateException("boom"); }, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(expired::countDown, 40, TimeUnit.MILLISECONDS);
+
+        assertThat(expired.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+}